@@ -0,0 +1,47 @@
+package com.codeamatic;
+
+import com.codeamatic.exceptions.DateRangeException;
+import com.codeamatic.exceptions.DateStringNotSupportedException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the AMAZON.DATE and DATE_STRING slots.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DateBenchmark {
+
+  @Param({"2017-03-02", "2017-03", "201X", "2017-W23", "2017-W23-WE", "2017-WI", "PRESENT_REF"})
+  public String alexaDate;
+
+  @Benchmark
+  public String getFormattedDate() {
+    return AlexaDateUtil.getFormattedDate(alexaDate);
+  }
+
+  @Benchmark
+  public DateRange parse() {
+    return AlexaDateUtil.parse(alexaDate);
+  }
+
+  @Benchmark
+  public String[] getFormattedDates() throws DateStringNotSupportedException, DateRangeException {
+    return DateStringUtil.getFormattedDates("Since Last Week");
+  }
+}
@@ -0,0 +1,43 @@
+package com.codeamatic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of spoken neighborhood slot values.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NeighborhoodBenchmark {
+
+  /**
+   * Exact, abbreviated, alias, near miss and unknown values.
+   */
+  @Param({"Avondale", "Mount Washington", "OTR", "Madisonvile", "Montgomery"})
+  public String spoken;
+
+  @Benchmark
+  public String getNeighborhood() {
+    return Neighborhoods.getNeighborhood(spoken);
+  }
+
+  @Benchmark
+  public List<NeighborhoodMatch> getCandidates() {
+    return Neighborhoods.getCandidates(spoken, 3);
+  }
+}
@@ -0,0 +1,62 @@
+package com.codeamatic;
+
+import com.amazon.speech.ui.SimpleCard;
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReportSummary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of the crime report speech and card for summaries of different widths.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpeechOutputBenchmark {
+
+  /**
+   * Number of distinct offenses in the summary.
+   */
+  @Param({"1", "10", "40"})
+  public int offenses;
+
+  private CincyDataSpeechlet speechlet;
+  private CrimeReportSummary summary;
+
+  @Setup
+  public void setUp() {
+    CrimeReportSummary.Builder builder = new CrimeReportSummary.Builder(CrimeField.OFFENSE);
+
+    for(int i = 0; i < offenses; i++) {
+      builder.add(i + 1, CrimeField.OFFENSE.encode("OFFENSE-TYPE " + i));
+    }
+
+    speechlet = new CincyDataSpeechlet(null);
+    summary = builder.build();
+  }
+
+  @Benchmark
+  public String generateSpeechOutput() {
+    return speechlet.generateSpeechOutput(summary, "Westwood");
+  }
+
+  @Benchmark
+  public SimpleCard generateSpeechCard() {
+    return speechlet.generateSpeechCard(summary, "Westwood");
+  }
+}
@@ -0,0 +1,117 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReportSummary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of {@link IncidentAggregator} with the number of pool threads, over five
+ * years of synthetic incidents with Cincinnati's rough cardinalities.  Compare the
+ * scores across the threads parameter; the 1 thread run is the sequential baseline.
+ * Thread counts above the machine's cores only measure overhead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IncidentAggregatorBenchmark {
+
+  private static final LocalDate FIRST_DAY = LocalDate.of(2012, 1, 1);
+  private static final int YEARS = 5;
+
+  @Param({"1", "2", "4", "8"})
+  public int threads;
+
+  @Param({"2000000"})
+  public int rows;
+
+  private ForkJoinPool pool;
+  private IncidentAggregator aggregator;
+  private IncidentTable table;
+  private int fromMinute;
+  private int toMinute;
+
+  @Setup
+  public void setUp() {
+    pool = new ForkJoinPool(threads);
+    aggregator = new IncidentAggregator(pool, IncidentAggregator.DEFAULT_CHUNK_ROWS);
+    table = generate(rows);
+    fromMinute = EpochMinutes.of(FIRST_DAY);
+    toMinute = EpochMinutes.of(FIRST_DAY.plusYears(YEARS));
+  }
+
+  @TearDown
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public CrimeReportSummary byNeighborhoodAndOffense() {
+    return aggregator.aggregate(table, -1, fromMinute, toMinute, CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE);
+  }
+
+  @Benchmark
+  public CrimeReportSummary byDistrictBeatAndUcr() {
+    return aggregator.aggregate(table, -1, fromMinute, toMinute, CrimeField.DISTRICT, CrimeField.BEAT, CrimeField.UCR);
+  }
+
+  /**
+   * Builds the columns directly; the incident keys aren't needed for aggregation.
+   */
+  private static IncidentTable generate(int rows) {
+    Random random = new Random(42);
+    int[] offenses = encode(CrimeField.OFFENSE, "OFFENSE ", 60);
+    int[] neighborhoods = encode(CrimeField.NEIGHBORHOOD, "NEIGHBORHOOD ", 52);
+    int[] districts = encode(CrimeField.DISTRICT, "", 6);
+    int[] beats = encode(CrimeField.BEAT, "", 40);
+    int[] ucrs = encode(CrimeField.UCR, "", 120);
+
+    int[] occurredOn = new int[rows];
+    int[] reportedOn = new int[rows];
+    int[][] codes = new int[CrimeField.values().length][rows];
+    int firstMinute = EpochMinutes.of(FIRST_DAY);
+    int minutes = EpochMinutes.of(FIRST_DAY.plusYears(YEARS)) - firstMinute;
+
+    for(int row = 0; row < rows; row++) {
+      // Evenly spread and already sorted
+      occurredOn[row] = firstMinute + (int) ((long) row * minutes / rows);
+      reportedOn[row] = occurredOn[row] + random.nextInt(60 * 24);
+      codes[CrimeField.OFFENSE.ordinal()][row] = offenses[random.nextInt(offenses.length)];
+      codes[CrimeField.NEIGHBORHOOD.ordinal()][row] = neighborhoods[random.nextInt(neighborhoods.length)];
+      codes[CrimeField.DISTRICT.ordinal()][row] = districts[random.nextInt(districts.length)];
+      codes[CrimeField.BEAT.ordinal()][row] = beats[random.nextInt(beats.length)];
+      codes[CrimeField.UCR.ordinal()][row] = ucrs[random.nextInt(ucrs.length)];
+    }
+
+    return IncidentTable.fromSortedColumns(occurredOn, reportedOn, codes, new String[rows]);
+  }
+
+  private static int[] encode(CrimeField field, String prefix, int count) {
+    int[] codes = new int[count];
+
+    for(int i = 0; i < count; i++) {
+      codes[i] = field.encode(prefix + (i + 1));
+    }
+
+    return codes;
+  }
+}
@@ -0,0 +1,93 @@
+package com.codeamatic.socrata.support;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of Socrata responses.  Payloads are built by repeating the sample rows in
+ * src/jmh/resources, which have the shape of the crime dataset's responses, until
+ * the requested number of rows is reached.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CrimeReportDecodeBenchmark {
+
+  @Param({"10", "1000", "10000"})
+  public int rows;
+
+  private final Gson adapterGson = new GsonBuilder()
+          .registerTypeAdapter(CrimeReport.class, new CrimeReportTypeAdapter())
+          .create();
+  private final Gson reflectiveGson = new Gson();
+
+  private String reportsJson;
+  private String summaryJson;
+
+  @Setup
+  public void setUp() throws IOException {
+    reportsJson = repeat(load("/crime-reports.json"), rows);
+    summaryJson = repeat(load("/crime-report-summary.json"), rows);
+  }
+
+  @Benchmark
+  public CrimeReport[] decodeWithAdapter() {
+    return adapterGson.fromJson(reportsJson, CrimeReport[].class);
+  }
+
+  @Benchmark
+  public CrimeReport[] decodeReflectively() {
+    return reflectiveGson.fromJson(reportsJson, CrimeReport[].class);
+  }
+
+  @Benchmark
+  public CrimeReportSummary streamSummary() throws IOException {
+    return SocrataClient.readSummary(new JsonReader(new StringReader(summaryJson)));
+  }
+
+  private static JsonArray load(String resource) throws IOException {
+    try(InputStream in = CrimeReportDecodeBenchmark.class.getResourceAsStream(resource);
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      return new JsonParser().parse(reader).getAsJsonArray();
+    }
+  }
+
+  private static String repeat(JsonArray sample, int rows) {
+    JsonArray payload = new JsonArray();
+
+    for(int i = 0; i < rows; i++) {
+      payload.add(sample.get(i % sample.size()));
+    }
+
+    return payload.toString();
+  }
+}
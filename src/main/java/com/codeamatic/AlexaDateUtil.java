@@ -1,96 +1,221 @@
 package com.codeamatic;
 
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
 
 /**
  * Provides date and time utilities to convert Alexa date strings to a
  * format that Socrarta can handle.
+ *
+ * Values are read by a single pass scanner over the AMAZON.DATE grammar:
+ *
+ * <ul>
+ *   <li>Normal Date: YYYY-MM-DD</li>
+ *   <li>Month: YYYY-MM</li>
+ *   <li>Year: YYYY</li>
+ *   <li>Decade: YYYX</li>
+ *   <li>Week: YYYY-Www</li>
+ *   <li>Weekend: YYYY-Www-WE</li>
+ *   <li>Season: YYYY-SP, YYYY-SU, YYYY-FA or YYYY-WI</li>
+ *   <li>Right now: PRESENT_REF</li>
+ * </ul>
+ *
+ * A year of XXXX (e.g. "XXXX-12-25", a date spoken without a year) is taken to be
+ * the current year.
  */
 public class AlexaDateUtil {
 
-  /**
-   *  Normal Date: YYYY-MM-DD
-   */
-  private static final String REGEX_DATE_NORMAL = "^\\d{4}-\\d{2}-\\d{2}$";
+  private static final String PRESENT_REF = "PRESENT_REF";
 
-  /**
-   *  This month: YYYY-MM
-   */
-  private static final String REGEX_DATE_MONTH = "^\\d{4}-\\d{2}$";
+  private static final char UNSPECIFIED = 'X';
 
   /**
-   *  This decade: YYYX
+   * Takes an Alexa date and converts it to a basic YYYY-MM-DD format.  If
+   * the date is already in the required format, it is returned. as is.
+   *
+   * If not in the desired format, the first day of the period it names is returned.
+   *
+   * Example: 2016-03 => 2016-03-01
+   *
+   * @param alexaDate String date from Alexa
+   * @return String formatted date or null if date can't be formatted
    */
-  private static final String REGEX_DATE_DECADE = "^\\d{3}X$";
+  static String getFormattedDate(String alexaDate) {
+    DateRange range = parse(alexaDate);
 
-  /**
-   * Year: YYYY
-   */
-  private static final String REGEX_DATE_YEAR = "^\\d{4}";
+    return (range != null) ? range.getStart().toString() : null;
+  }
 
   /**
-   * Week: YYYY-Www
+   * Parses an Alexa date using the system clock, in the city's time zone, for
+   * relative values.
+   *
+   * @param alexaDate String date from Alexa
+   * @return the days the value covers, or null if it can't be parsed
    */
-  private static final String REGEX_DATE_WEEK = "^\\d{4}-W\\d{2}$";
+  public static DateRange parse(String alexaDate) {
+    return parse(alexaDate, Clock.system(DateStringUtil.ZONE));
+  }
 
   /**
-   * Weekend: YYYY-Www-WE
-   * Date ranges aren't supported by this utility.  This REGEX is just a placeholder.
+   * Parses an Alexa date into the range of days it covers.
+   *
+   * Example: 2017-W23-WE => 2017-06-10..2017-06-11
+   * Example: 201X => 2010-01-01..2019-12-31
+   *
+   * @param alexaDate String date from Alexa
+   * @param clock Clock used for PRESENT_REF and unspecified years
+   * @return the days the value covers, or null if it can't be parsed
    */
-  private static final String REGEX_DATE_WEEK_WEEKEND = "^\\d{4}-W\\d{2}-WE$";
+  public static DateRange parse(String alexaDate, Clock clock) {
+    if(alexaDate == null || alexaDate.length() < 4) {
+      return null;
+    }
+    if(PRESENT_REF.equals(alexaDate)) {
+      return DateRange.ofDay(LocalDate.now(clock));
+    }
 
-  /**
-   *  Seasonal: YYYY-JJ (where JJ represents a two letter season specification)
-   *  Future dates aren't supported.  This REGEX is just a placeholder.
-   */
-  private static final String REGEX_DATE_SEASON = "^\\d{4}-[A-Z]{2}$";
+    try {
+      return scan(alexaDate, clock);
+    } catch(DateTimeException ex) {
+      // Well formed but out of range, e.g. month 13 or week 54
+      return null;
+    }
+  }
 
-  /**
-   *  Right now: PRESENT_REF
-   */
-  private static final String REGEX_DATE_NOW = "^PRESENT_REF$";
+  private static DateRange scan(String value, Clock clock) {
+    int length = value.length();
+    int year;
+
+    if(isUnspecified(value, 0, 4)) {
+      year = LocalDate.now(clock).getYear();
+    } else if(length == 4 && value.charAt(3) == UNSPECIFIED) {
+      int decade = digits(value, 0, 3);
+      if(decade < 0) {
+        return null;
+      }
+      LocalDate start = LocalDate.of(decade * 10, 1, 1);
+      return DateRange.of(start, start.plusYears(10).minusDays(1));
+    } else {
+      year = digits(value, 0, 4);
+      if(year < 0) {
+        return null;
+      }
+    }
+
+    if(length == 4) {
+      LocalDate start = LocalDate.of(year, 1, 1);
+      return DateRange.of(start, start.with(TemporalAdjusters.lastDayOfYear()));
+    }
+    if(value.charAt(4) != '-' || length < 7) {
+      return null;
+    }
+
+    char next = value.charAt(5);
+
+    if(next == 'W' && Character.isDigit(value.charAt(6))) {
+      return scanWeek(value, year);
+    }
+    if(Character.isDigit(next)) {
+      return scanMonthOrDay(value, year);
+    }
+    if(length == 7) {
+      return season(year, value.charAt(5), value.charAt(6));
+    }
+
+    return null;
+  }
+
+  private static DateRange scanWeek(String value, int year) {
+    int length = value.length();
+    int week = (length >= 8) ? digits(value, 6, 8) : -1;
+
+    if(week < 0) {
+      return null;
+    }
+
+    LocalDate monday = LocalDate.of(year, 1, 4)
+            .with(IsoFields.WEEK_OF_WEEK_BASED_YEAR, week)
+            .with(DayOfWeek.MONDAY);
+
+    if(length == 8) {
+      return DateRange.of(monday, monday.plusDays(6));
+    }
+    if(length == 11 && value.startsWith("-WE", 8)) {
+      return DateRange.of(monday.plusDays(5), monday.plusDays(6));
+    }
+
+    return null;
+  }
+
+  private static DateRange scanMonthOrDay(String value, int year) {
+    int length = value.length();
+    int month = digits(value, 5, 7);
+
+    if(month < 0) {
+      return null;
+    }
+    if(length == 7) {
+      LocalDate start = LocalDate.of(year, month, 1);
+      return DateRange.of(start, start.with(TemporalAdjusters.lastDayOfMonth()));
+    }
+
+    int day = (length == 10 && value.charAt(7) == '-') ? digits(value, 8, 10) : -1;
+
+    return (day < 0) ? null : DateRange.ofDay(LocalDate.of(year, month, day));
+  }
 
   /**
-   * Characters to be added (if necessary) to a date string in order to
-   * fulfill the requirements of a full date string.
+   * Meteorological seasons; winter runs from December of the given year into February.
    */
-  private static final String MONTH_DAY_CONST = "-01";
+  private static DateRange season(int year, char first, char second) {
+    int startMonth;
+
+    if(first == 'S' && second == 'P') {
+      startMonth = 3;
+    } else if(first == 'S' && second == 'U') {
+      startMonth = 6;
+    } else if(first == 'F' && second == 'A') {
+      startMonth = 9;
+    } else if(first == 'W' && second == 'I') {
+      startMonth = 12;
+    } else {
+      return null;
+    }
+
+    LocalDate start = LocalDate.of(year, startMonth, 1);
+    return DateRange.of(start, start.plusMonths(3).minusDays(1));
+  }
 
   /**
-   * Takes an Alexa date and converts it to a basic YYYY-MM-DD format.  If
-   * the date is already in the required format, it is returned. as is.
-   *
-   * If not in the desired format, it is manipulated so that the day represents the first
-   * day of the month or of the year or both.
-   *
-   * Example: 2016-03 => 2016-03-01
-   *
-   * @param alexaDate String date from Alexa
-   * @return String formatted date or null if date can't be formatted
+   * @return the decimal value of the characters in [from, to), or -1 if any isn't a digit
    */
-  static String getFormattedDate(String alexaDate) {
-    String formattedDate = null;
-
-    if(alexaDate.matches(REGEX_DATE_NORMAL)) {
-      // Already in the necessary format
-      formattedDate = alexaDate;
-    } else if(alexaDate.matches(REGEX_DATE_NOW)) {
-      formattedDate = LocalDate.now().toString();
-    } else if(alexaDate.matches(REGEX_DATE_MONTH)) {
-      // YYYY-MM + -01
-      formattedDate = alexaDate + MONTH_DAY_CONST;
-    } else if(alexaDate.matches(REGEX_DATE_DECADE)) {
-      String currentYear = Integer.toString(LocalDate.now().getYear());
-      formattedDate = currentYear + MONTH_DAY_CONST + MONTH_DAY_CONST;
-    } else if(alexaDate.matches(REGEX_DATE_YEAR)) {
-      formattedDate = alexaDate + MONTH_DAY_CONST + MONTH_DAY_CONST;
-    } else if(alexaDate.matches(REGEX_DATE_WEEK)) {
-      // Default to first day of the week (Monday)
-      LocalDate parsedDate = LocalDate.parse(alexaDate + "-1", DateTimeFormatter.ISO_WEEK_DATE);
-      formattedDate = parsedDate.toString();
-    }
-
-    return formattedDate;
+  private static int digits(String value, int from, int to) {
+    int result = 0;
+
+    for(int i = from; i < to; i++) {
+      char c = value.charAt(i);
+
+      if(c < '0' || c > '9') {
+        return -1;
+      }
+      result = result * 10 + (c - '0');
+    }
+
+    return result;
+  }
+
+  private static boolean isUnspecified(String value, int from, int to) {
+    for(int i = from; i < to; i++) {
+      if(value.charAt(i) != UNSPECIFIED) {
+        return false;
+      }
+    }
+
+    return true;
   }
 }
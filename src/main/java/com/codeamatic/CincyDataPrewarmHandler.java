@@ -0,0 +1,161 @@
+package com.codeamatic;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.ReportStore;
+import com.codeamatic.socrata.support.FileReportStore;
+import com.codeamatic.socrata.support.QueryKey;
+import com.codeamatic.socrata.support.SocrataClient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Second Lambda entry point, triggered on a schedule shortly after midnight, that
+ * precomputes yesterday's report for every neighborhood and the whole city.
+ *
+ * All of them come from one request grouped by neighborhood and offense rather
+ * than one request per neighborhood, and are written to the {@link ReportStore}
+ * the skill reads before asking Socrata.  The scheduled event itself is ignored,
+ * so the handler can also be invoked directly, or locally through {@link #main}.
+ */
+public final class CincyDataPrewarmHandler implements RequestHandler<Object, String> {
+  private static final Logger log = LoggerFactory.getLogger(CincyDataPrewarmHandler.class);
+
+  private static final String SOCRATA_TOKEN = System.getenv("SOCRATA_CINCY_TOKEN");
+  private static final String SOCRATA_CRIME_API = System.getenv("SOCRATA_CINCY_CRIME_API");
+  private static final String REPORT_STORE_DIR = System.getenv("CINCY_REPORT_STORE_DIR");
+
+  private final SocrataClient socrataClient;
+  private final ReportStore reportStore;
+  private final Clock clock;
+
+  public CincyDataPrewarmHandler() {
+    this(new SocrataClient(SOCRATA_TOKEN, SOCRATA_CRIME_API), createReportStore(), Clock.system(DateStringUtil.ZONE));
+  }
+
+  /**
+   * @param socrataClient SocrataClient to query
+   * @param reportStore ReportStore the reports are written to
+   * @param clock Clock used to determine yesterday
+   */
+  CincyDataPrewarmHandler(SocrataClient socrataClient, ReportStore reportStore, Clock clock) {
+    this.socrataClient = socrataClient;
+    this.reportStore = reportStore;
+    this.clock = clock;
+  }
+
+  /**
+   * @return the store shared by this handler and the skill, in the directory named by
+   *         the CINCY_REPORT_STORE_DIR environment variable
+   * @throws IllegalStateException if CINCY_REPORT_STORE_DIR isn't set
+   */
+  static ReportStore createReportStore() {
+    return createReportStore(REPORT_STORE_DIR);
+  }
+
+  /**
+   * There is deliberately no default: each Lambda function has a /tmp of its own, so
+   * a store there would never be seen by the skill.
+   *
+   * @param directory String directory on storage shared by both functions, such as an EFS mount
+   * @return the store in the directory
+   * @throws IllegalStateException if the directory is null
+   */
+  static ReportStore createReportStore(String directory) {
+    if(directory == null) {
+      throw new IllegalStateException("CINCY_REPORT_STORE_DIR must name a directory shared by the skill "
+              + "and the prewarm function, such as an EFS mount");
+    }
+
+    return new FileReportStore(Paths.get(directory));
+  }
+
+  @Override
+  public String handleRequest(Object event, Context context) {
+    LocalDate yesterday = LocalDate.now(clock).minusDays(1);
+
+    try {
+      int stored = prewarm(yesterday);
+      log.info("Stored {} reports for {}", stored, yesterday);
+
+      return "Stored " + stored + " reports for " + yesterday;
+    } catch(IOException ex) {
+      // Fail the invocation so the schedule's retries and alarms apply
+      throw new UncheckedIOException("Precomputing reports for " + yesterday + " failed", ex);
+    }
+  }
+
+  /**
+   * Computes and stores the day's report for every known neighborhood, every other
+   * neighborhood that had incidents, and the whole city.  Known neighborhoods without
+   * incidents get an empty report, which is an answer too.
+   *
+   * @param day LocalDate the day to report on
+   * @return the number of reports stored
+   * @throws IOException if the day can't be retrieved or stored
+   */
+  int prewarm(LocalDate day) throws IOException {
+    String[] dates = {day.toString(), day.toString()};
+    CrimeReportSummary grouped = socrataClient.getGroupedSummary(dates, CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE);
+
+    Map<String, CrimeReportSummary.Builder> builders = new HashMap<String, CrimeReportSummary.Builder>();
+    for(String neighborhood : Neighborhoods.getNeighborhoods()) {
+      builders.put(QueryKey.normalizeNeighborhood(neighborhood), new CrimeReportSummary.Builder(CrimeField.OFFENSE));
+    }
+    CrimeReportSummary.Builder citywide = new CrimeReportSummary.Builder(CrimeField.OFFENSE);
+
+    for(int row = 0; row < grouped.size(); row++) {
+      String neighborhood = QueryKey.normalizeNeighborhood(grouped.getValue(CrimeField.NEIGHBORHOOD, row));
+      int offense = grouped.getCode(CrimeField.OFFENSE, row);
+      int count = grouped.getCount(row);
+
+      if(neighborhood != null) {
+        CrimeReportSummary.Builder builder = builders.get(neighborhood);
+        if(builder == null) {
+          builder = new CrimeReportSummary.Builder(CrimeField.OFFENSE);
+          builders.put(neighborhood, builder);
+        }
+        builder.add(count, offense);
+      }
+      citywide.add(count, offense);
+    }
+
+    Map<String, CrimeReportSummary> summaries = new HashMap<String, CrimeReportSummary>();
+    for(Map.Entry<String, CrimeReportSummary.Builder> entry : builders.entrySet()) {
+      summaries.put(entry.getKey(), entry.getValue().build());
+    }
+    summaries.put(null, citywide.build());
+
+    reportStore.putDay(day, summaries);
+
+    return summaries.size();
+  }
+
+  /**
+   * Precomputes reports locally, for yesterday or the day given as the first argument.
+   *
+   * @param args optional day as YYYY-MM-DD
+   * @throws IOException if the day can't be retrieved or stored
+   */
+  public static void main(String[] args) throws IOException {
+    CincyDataPrewarmHandler handler = new CincyDataPrewarmHandler();
+
+    if(args.length > 0) {
+      LocalDate day = LocalDate.parse(args[0]);
+      System.out.println("Stored " + handler.prewarm(day) + " reports for " + day);
+    } else {
+      System.out.println(handler.handleRequest(null, null));
+    }
+  }
+}
@@ -14,28 +14,66 @@ import com.amazon.speech.ui.SimpleCard;
 import com.amazon.speech.ui.SsmlOutputSpeech;
 import com.codeamatic.exceptions.DateRangeException;
 import com.codeamatic.exceptions.DateStringNotSupportedException;
-import com.codeamatic.socrata.CrimeReport;
-import com.codeamatic.socrata.support.SocrataClient;
+import com.codeamatic.metrics.EmfPublisher;
+import com.codeamatic.metrics.Metrics;
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.SocrataException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import static com.amazon.speech.speechlet.SpeechletResponse.newAskResponse;
 import static com.amazon.speech.speechlet.SpeechletResponse.newTellResponse;
 
 /**
  * Cinci Data Speechlet for handling Alexa Speechlet requests.
+ *
+ * The speechlet keeps no per-request state, so one instance can serve concurrent
+ * requests as long as the {@link Socrata} it is given is thread-safe.
  */
 public class CincyDataSpeechlet implements Speechlet {
   private static final Logger log = LoggerFactory.getLogger(CincyDataSpeechlet.class);
 
-  private static final String SOCRATA_TOKEN = System.getenv("SOCRATA_CINCY_TOKEN");
-  private static final String SOCRATA_CRIME_API = System.getenv("SOCRATA_CINCY_CRIME_API");
   private static final String SKILL_NAME = "Cincy Data";
+  private static final String LAUNCH_REQUEST = "LaunchRequest";
+
+  /**
+   * Alexa waits 8 seconds for a response; the rest is left for everything around the
+   * Socrata request.
+   */
+  public static final long DEFAULT_BUDGET_MILLIS = 5000;
+
+  private static final DateTimeFormatter AS_OF_TIME = DateTimeFormatter.ofPattern("h:mm a", Locale.US);
+  private static final DateTimeFormatter AS_OF_DAY = DateTimeFormatter.ofPattern("MMMM d", Locale.US);
+
+  private final Socrata socrata;
+  private final long budgetMillis;
+
+  /**
+   * @param socrata long-lived, thread-safe Socrata client shared across requests
+   */
+  public CincyDataSpeechlet(Socrata socrata) {
+    this(socrata, DEFAULT_BUDGET_MILLIS);
+  }
+
+  /**
+   * @param socrata long-lived, thread-safe Socrata client shared across requests
+   * @param budgetMillis long time an intent may spend waiting on Socrata
+   */
+  public CincyDataSpeechlet(Socrata socrata, long budgetMillis) {
+    this.socrata = socrata;
+    this.budgetMillis = budgetMillis;
+  }
 
   @Override
   public void onSessionStarted(SessionStartedRequest request, Session session) throws SpeechletException {
@@ -45,33 +83,47 @@ public class CincyDataSpeechlet implements Speechlet {
   @Override
   public SpeechletResponse onLaunch(LaunchRequest request, Session session) throws SpeechletException {
     log.info("onLaunch requestId={}, sessionId={}", request.getRequestId(), session.getSessionId());
+    long start = System.nanoTime();
 
-    return getWelcomeResponse();
+    try {
+      return getWelcomeResponse();
+    } finally {
+      Metrics.intentLatency(LAUNCH_REQUEST).record((System.nanoTime() - start) / 1000);
+      EmfPublisher.flush();
+    }
   }
 
   @Override
   public SpeechletResponse onIntent(IntentRequest request, Session session) throws SpeechletException {
     log.info("onIntent requestId={}, sessionId={}", request.getRequestId(), session.getSessionId());
 
+    long start = System.nanoTime();
+    Deadline deadline = Deadline.after(budgetMillis, TimeUnit.MILLISECONDS);
     Intent intent = request.getIntent();
     String intentName = (intent != null) ? intent.getName() : "";
 
-    switch(intentName) {
-      case "CrimeReportIntent":
-        return getCrimeReportResponse(intent);
-      case "AMAZON.HelpIntent":
-        return getHelpResponse();
-      case "AMAZON.StopIntent":
-      case "AMAZON.CancelIntent":
-        return buildTellResponse("Goodbye", null);
-      default:
-        throw new SpeechletException("Invalid Intent");
+    try {
+      switch(intentName) {
+        case "CrimeReportIntent":
+          return getCrimeReportResponse(intent, deadline);
+        case "AMAZON.HelpIntent":
+          return getHelpResponse();
+        case "AMAZON.StopIntent":
+        case "AMAZON.CancelIntent":
+          return buildTellResponse("Goodbye", null);
+        default:
+          throw new SpeechletException("Invalid Intent");
+      }
+    } finally {
+      Metrics.intentLatency(intentName).record((System.nanoTime() - start) / 1000);
+      EmfPublisher.flush();
     }
   }
 
   @Override
   public void onSessionEnded(SessionEndedRequest request, Session session) throws SpeechletException {
     log.info("onSessionEnded requestId={}, sessionId={}", request.getRequestId(), session.getSessionId());
+    EmfPublisher.flush();
   }
 
   /**
@@ -103,16 +155,23 @@ public class CincyDataSpeechlet implements Speechlet {
    *  Creates and returns a {@code SpeechletResponse} with a message and card.
    *
    * @param intent current intent
+   * @param deadline Deadline by which the answer is needed
    * @return SpeechletResponse  spoken and visual response for crime report intent
    */
-  private SpeechletResponse getCrimeReportResponse(final Intent intent) {
+  private SpeechletResponse getCrimeReportResponse(final Intent intent, Deadline deadline) {
     String neighborhood = null;
+    CrimeReportSummary summary;
+
+    try {
+      summary = socrata.getCrimeReportSummary(neighborhood, null, deadline);
+    } catch(SocrataException ex) {
+      log.warn("No crime report for neighborhood {} in time", neighborhood, ex);
+      return buildTellResponse("Sorry, the Cincinnati crime data isn't available right now. "
+              + "Please try again in a few minutes.", null);
+    }
 
-    SocrataClient socrataClient = new SocrataClient(SOCRATA_TOKEN, SOCRATA_CRIME_API);
-    List<CrimeReport> crimeReports = socrataClient.getCrimeReports(neighborhood, null);
-
-    String outputVerbiage = this.generateSpeechOutput(crimeReports, neighborhood);
-    SimpleCard card = this.generateSpeechCard(crimeReports, neighborhood);
+    String outputVerbiage = this.generateSpeechOutput(summary, neighborhood);
+    SimpleCard card = this.generateSpeechCard(summary, neighborhood);
 
     return buildTellResponse(outputVerbiage, card);
   }
@@ -167,45 +226,52 @@ public class CincyDataSpeechlet implements Speechlet {
   }
 
   /**
-   * Retrieve the total number of incidents across all offenses.
+   * Generates the verbiage output for a successful crime report query.
    *
-   * @param crimeReports List of crime reports reported
-   * @return a total count of incidents
+   * @param summary CrimeReportSummary of the crime reports
+   * @param neighborhood String the neighborhood queried
+   * @return String
    */
-  private int getCrimeReportCount(List<CrimeReport> crimeReports) {
-    int count = 0;
+  String generateSpeechOutput(CrimeReportSummary summary, String neighborhood) {
+      int numReports = summary.getTotal();
+      String reportCount = (numReports > 0) ? Integer.toString(numReports) : "no";
+      String location = (neighborhood != null) ? neighborhood : "Cincinnati";
 
-    for(CrimeReport crimeReport : crimeReports) {
-      count += Integer.parseInt(crimeReport.getCount());
-    }
+      if(summary.getAsOf() != null) {
+        return generateAsOf(summary.getAsOf(), ZonedDateTime.now(DateStringUtil.ZONE)) + ", there were "
+                + reportCount + " crimes reported in " + location + " yesterday.";
+      }
 
-    return count;
+      return "There were " + reportCount + " crimes reported in " + location + " yesterday.";
   }
 
   /**
-   * Generates the verbiage output for a successful crime report query.
+   * Phrases when an older answer was retrieved, leaving out the day if it was today.
    *
-   * @param crimeReports List of crime reports
-   * @param neighborhood String the neighborhood queried
-   * @return String
+   * @param asOf Instant the answer was retrieved
+   * @param now ZonedDateTime current time in Cincinnati
+   * @return String e.g. "As of 3:15 PM" or "As of June 9 at 3:15 PM"
    */
-  private String generateSpeechOutput(List<CrimeReport> crimeReports, String neighborhood) {
-      int numReports = getCrimeReportCount(crimeReports);
-      String reportCount = (numReports > 0) ? Integer.toString(numReports) : "no";
-      String location = (neighborhood != null) ? neighborhood : "Cincinnati";
+  static String generateAsOf(Instant asOf, ZonedDateTime now) {
+    ZonedDateTime retrieved = asOf.atZone(now.getZone());
+    String time = retrieved.format(AS_OF_TIME);
 
-      return "There were " + reportCount + " crimes reported in " + location + " yesterday.";
+    if(retrieved.toLocalDate().equals(now.toLocalDate())) {
+      return "As of " + time;
+    }
+
+    return "As of " + retrieved.format(AS_OF_DAY) + " at " + time;
   }
 
   /**
-   * Generate a SimpleCard from a list of crime reports and a neighborhood.
+   * Generate a SimpleCard from a crime report summary and a neighborhood.
    *
-   * @param crimeReports List of crime reports
+   * @param summary CrimeReportSummary of the crime reports
    * @param neighborhood String neighborhood being requested
    * @return a SimpleCard
    */
-  private SimpleCard generateSpeechCard(List<CrimeReport> crimeReports, String neighborhood) {
-    int numReports = getCrimeReportCount(crimeReports);
+  SimpleCard generateSpeechCard(CrimeReportSummary summary, String neighborhood) {
+    int numReports = summary.getTotal();
     String reportCount = (numReports > 0) ? Integer.toString(numReports) : "no";
     String location = (neighborhood != null) ? neighborhood : "Cincinnati";
 
@@ -214,12 +280,17 @@ public class CincyDataSpeechlet implements Speechlet {
     stringBuilder.append(" crimes were reported yesterday:");
     stringBuilder.append("\n\n");
 
-    for(CrimeReport crimeReport : crimeReports) {
-      String offense = crimeReport.getOffense();
+    if(summary.getAsOf() != null) {
+      stringBuilder.append(generateAsOf(summary.getAsOf(), ZonedDateTime.now(DateStringUtil.ZONE)));
+      stringBuilder.append(", the latest data available:\n\n");
+    }
+
+    for(int row = 0; row < summary.size(); row++) {
+      String offense = summary.getValue(CrimeField.OFFENSE, row);
       offense = offense.replaceAll("-", "");
       offense = offense.substring(0, 1) + offense.substring(1).toLowerCase();
 
-      stringBuilder.append(crimeReport.getCount());
+      stringBuilder.append(summary.getCount(row));
       stringBuilder.append(" - ");
       stringBuilder.append(offense);
       stringBuilder.append("\n");
@@ -1,21 +1,142 @@
 package com.codeamatic;
 
 import com.amazon.speech.speechlet.lambda.SpeechletRequestStreamHandler;
+import com.codeamatic.metrics.EmfPublisher;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.support.CachingSocrata;
+import com.codeamatic.socrata.support.CoalescingSocrata;
+import com.codeamatic.socrata.support.DiskCachingSocrata;
+import com.codeamatic.socrata.support.HedgingSocrata;
+import com.codeamatic.socrata.support.PrecomputedSocrata;
+import com.codeamatic.socrata.support.ShardedSocrata;
+import com.codeamatic.socrata.support.SocrataClient;
+import com.codeamatic.socrata.support.UrlConnectionTransport;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
  * This class is the handler for the AWS Lambda function powering this skills kit.
+ *
+ * Lambda may create a new handler per container, so the Socrata client (along with
+ * its cache and connections) is built once per JVM and shared by every handler.
+ * Reports precomputed by {@link CincyDataPrewarmHandler} are read before any of it,
+ * from the directory named by CINCY_REPORT_STORE_DIR, and summaries are also kept on
+ * disk so a re-initialized handler in the same container starts with them.
+ *
+ * Lambda creates the handler in its init phase, before the first invocation, so that
+ * is where the shared client is built, where a missing report store fails the
+ * function, and where everything the first request would otherwise load lazily is
+ * warmed up.  Set the {@code cincy.warmup} system property to false to skip it.
  */
 public final class CincyDataSpeechletRequestStreamHandler extends SpeechletRequestStreamHandler {
+  private static final Logger log = LoggerFactory.getLogger(CincyDataSpeechletRequestStreamHandler.class);
+
+  private static final String SOCRATA_TOKEN = System.getenv("SOCRATA_CINCY_TOKEN");
+  private static final String SOCRATA_CRIME_API = System.getenv("SOCRATA_CINCY_CRIME_API");
+  private static final String RESULT_CACHE_DIR = System.getenv("CINCY_RESULT_CACHE_DIR");
+
+  private static final String WARM_UP_PROPERTY = "cincy.warmup";
+  private static final String WARM_UP_REQUEST = "/warmup/help.json";
+
   private static final Set<String> supportedApplicationIds = new HashSet<String>();
 
+  private static final UrlConnectionTransport transport = new UrlConnectionTransport();
+  private static final SocrataClient socrataClient = new SocrataClient(SOCRATA_TOKEN, SOCRATA_CRIME_API, transport);
+
   static {
     supportedApplicationIds.add("amzn1.ask.skill.39f6ac17-40f7-48e6-aa59-4a38583b728c");
   }
 
   public CincyDataSpeechletRequestStreamHandler() {
-    super(new CincyDataSpeechlet(), supportedApplicationIds);
+    this(Shared.socrata);
+  }
+
+  /**
+   * @param socrata thread-safe Socrata client to answer crime report requests with
+   */
+  CincyDataSpeechletRequestStreamHandler(Socrata socrata) {
+    super(new CincyDataSpeechlet(socrata), supportedApplicationIds);
+  }
+
+  /**
+   * @param delegate Socrata the disk cache loads missing summaries from
+   * @return the disk cache in the directory named by CINCY_RESULT_CACHE_DIR (by
+   *         default under java.io.tmpdir), or the delegate itself if it can't be opened
+   */
+  static Socrata createDiskCache(Socrata delegate) {
+    try {
+      return new DiskCachingSocrata(delegate,
+              (RESULT_CACHE_DIR != null) ? Paths.get(RESULT_CACHE_DIR) : DiskCachingSocrata.DEFAULT_DIRECTORY);
+    } catch(IOException ex) {
+      log.warn("Disk cache unavailable, continuing without it", ex);
+      return delegate;
+    }
+  }
+
+  /**
+   * Init phase: builds the lookup tables and JSON adapters, loads the HTTP client
+   * classes and sends a help request through the whole request pipeline, none of
+   * which needs the network.  Failures are logged and otherwise ignored, since the
+   * first request will simply do the same work.
+   */
+  static void warmUp(Socrata socrata) {
+    long start = System.nanoTime();
+
+    // The help request below isn't a real invocation
+    EmfPublisher.setEnabled(false);
+    try {
+      Neighborhoods.getNeighborhood("Mount Adams");
+      AlexaDateUtil.parse("2017-W23-WE");
+      DateStringUtil.getFormattedDates("last week");
+
+      socrataClient.warmUp();
+      if(SOCRATA_CRIME_API != null) {
+        transport.warmUp(SOCRATA_CRIME_API);
+      }
+
+      try(InputStream request = CincyDataSpeechletRequestStreamHandler.class.getResourceAsStream(WARM_UP_REQUEST)) {
+        new CincyDataSpeechletRequestStreamHandler(socrata).handleRequest(request, new ByteArrayOutputStream(), null);
+      }
+    } catch(Exception ex) {
+      log.warn("Warm up failed", ex);
+    } finally {
+      EmfPublisher.flush();
+      EmfPublisher.setEnabled(true);
+    }
+
+    log.info("Warm up took {} ms", (System.nanoTime() - start) / 1000000);
+  }
+
+  /**
+   * The Socrata chain of the handlers Lambda creates, built when the first one is.
+   */
+  private static final class Shared {
+    private static final Socrata socrata = new PrecomputedSocrata(CincyDataPrewarmHandler.createReportStore(),
+            new ShardedSocrata(new CachingSocrata(createDiskCache(new CoalescingSocrata(new HedgingSocrata(socrataClient))))));
+
+    static {
+      if(Boolean.parseBoolean(System.getProperty(WARM_UP_PROPERTY, "true"))) {
+        warmUp(socrata);
+      }
+    }
+  }
+
+  /**
+   * Training run for the class data sharing archive (see the cdsArchive task in
+   * build.gradle): creating a handler runs the warm up, which loads the classes a
+   * request needs.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    new CincyDataSpeechletRequestStreamHandler();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,81 @@
+package com.codeamatic;
+
+import java.time.LocalDate;
+
+/**
+ * Immutable, inclusive range of calendar days.
+ */
+public final class DateRange {
+
+  private final LocalDate start;
+  private final LocalDate end;
+
+  private DateRange(LocalDate start, LocalDate end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * @param start LocalDate first day of the range
+   * @param end LocalDate last day of the range
+   * @return the range
+   * @throws IllegalArgumentException if the range ends before it starts
+   */
+  public static DateRange of(LocalDate start, LocalDate end) {
+    if(end.isBefore(start)) {
+      throw new IllegalArgumentException("Start date: " + start + " End date: " + end);
+    }
+
+    return new DateRange(start, end);
+  }
+
+  /**
+   * @param day LocalDate the only day of the range
+   * @return the range
+   */
+  public static DateRange ofDay(LocalDate day) {
+    return new DateRange(day, day);
+  }
+
+  public LocalDate getStart() {
+    return start;
+  }
+
+  public LocalDate getEnd() {
+    return end;
+  }
+
+  public boolean contains(LocalDate day) {
+    return ! day.isBefore(start) && ! day.isAfter(end);
+  }
+
+  /**
+   * @return the start and end as YYYY-MM-DD strings, the form {@link com.codeamatic.socrata.Socrata} takes
+   */
+  public String[] toDates() {
+    return new String[] { start.toString(), end.toString() };
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if(this == o) {
+      return true;
+    }
+    if(! (o instanceof DateRange)) {
+      return false;
+    }
+
+    DateRange that = (DateRange) o;
+    return start.equals(that.start) && end.equals(that.end);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * start.hashCode() + end.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return start + ".." + end;
+  }
+}
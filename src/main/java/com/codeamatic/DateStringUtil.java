@@ -3,34 +3,35 @@ package com.codeamatic;
 import com.codeamatic.exceptions.DateRangeException;
 import com.codeamatic.exceptions.DateStringNotSupportedException;
 
+import java.time.Clock;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.temporal.TemporalAdjusters;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
+/**
+ * Resolves the DATE_STRING slot ("last week", "since monday", ...) to date ranges.
+ *
+ * Every supported value is an entry of {@link RelativeRange}.  Ranges only change
+ * when the day changes, so all of them are computed together once per day in
+ * Cincinnati's time zone and served from an immutable map until the next day.
+ */
 public class DateStringUtil {
 
-  private static final List<String> dateStrings = new ArrayList<String>();
+  /**
+   * The city's time zone, which decides when "today" starts regardless of the JVM's zone.
+   */
+  public static final ZoneId ZONE = ZoneId.of("America/New_York");
 
-  private DateStringUtil() {}
+  private static final Clock systemClock = Clock.system(ZONE);
 
-  static {
-    dateStrings.add("last week");
-    dateStrings.add("last weekend");
-    dateStrings.add("last month");
-    dateStrings.add("last year");
-    dateStrings.add("since last year");
-    dateStrings.add("since last month");
-    dateStrings.add("since last week");
-    dateStrings.add("since sunday");
-    dateStrings.add("since monday");
-    dateStrings.add("since tuesday");
-    dateStrings.add("since wednesday");
-    dateStrings.add("since thursday");
-    dateStrings.add("since friday");
-    dateStrings.add("since saturday");
-  }
+  private static volatile DayTable dayTable = new DayTable(LocalDate.MIN, Collections.<String, DateRange>emptyMap());
+
+  private DateStringUtil() {}
 
   /**
    * Returns a start and end date for a date range given based on the date string.
@@ -41,83 +42,171 @@ public class DateStringUtil {
    * @throws DateRangeException thrown if start date is greater than end date
    */
   public static String[] getFormattedDates(String dateString) throws DateStringNotSupportedException, DateRangeException {
+    return getDateRange(dateString, systemClock).toDates();
+  }
 
-    if(! dateStringExists(dateString)) {
-      throw new DateStringNotSupportedException("Date String: " + dateString);
+  /**
+   * Resolves a date string against the current day in {@link #ZONE}.
+   *
+   * @param dateString String slot value, in any case
+   * @param clock Clock for the current instant; its zone is ignored
+   * @return the range
+   * @throws DateStringNotSupportedException if a date string is provided that is not yet supported
+   */
+  public static DateRange getDateRange(String dateString, Clock clock) throws DateStringNotSupportedException {
+    LocalDate today = LocalDate.now(clock.withZone(ZONE));
+    DayTable table = dayTable;
+
+    if(! table.day.equals(today)) {
+      // Racing threads build identical tables, so the last write winning is harmless
+      table = DayTable.build(today);
+      dayTable = table;
     }
 
-    LocalDate startDate = LocalDate.now();
-    LocalDate endDate = startDate;
-    LocalDate now = startDate;
-    int dayOfWeek = now.getDayOfWeek().getValue();
-    long minusDays = (dayOfWeek == 7) ? dayOfWeek : 7 + dayOfWeek;
-
-    switch(dateString) {
-      case "last week":
-        // Start last week on Sunday
-        startDate = now.minusDays(minusDays);
-        // End week on Saturday
-        endDate = startDate.plusDays(6);
-        break;
-      case "last weekend":
-        startDate = now.with(TemporalAdjusters.previous(DayOfWeek.FRIDAY));
-        // Adjust two days so that it reflects sunday and not the previous sunday
-        endDate = startDate.plusDays(2);
-        break;
-      case "last month":
-        startDate = now.minusMonths(1).with(TemporalAdjusters.firstDayOfMonth());
-        endDate = startDate.with(TemporalAdjusters.lastDayOfMonth());
-        break;
-      case "last year":
-        startDate = now.minusYears(1).with(TemporalAdjusters.firstDayOfYear());
-        endDate = startDate.with(TemporalAdjusters.lastDayOfYear());
-        break;
-      case "since last year":
-        startDate = now.minusYears(1).with(TemporalAdjusters.firstDayOfYear());
-        break;
-      case "since last month":
-        startDate = now.minusMonths(1).with(TemporalAdjusters.firstDayOfMonth());
-        break;
-      case "since last week":
-        // Set first day of last week to last Sunday
-        startDate = now.minusDays(minusDays);
-        break;
-      case "since sunday":
-        startDate = endDate.with(TemporalAdjusters.previous(DayOfWeek.SUNDAY));
-        break;
-      case "since monday":
-        startDate = endDate.with(TemporalAdjusters.previous(DayOfWeek.MONDAY));
-        break;
-      case "since tuesday":
-        startDate = endDate.with(TemporalAdjusters.previous(DayOfWeek.TUESDAY));
-        break;
-      case "since wednesday":
-        startDate = endDate.with(TemporalAdjusters.previous(DayOfWeek.WEDNESDAY));
-        break;
-      case "since thursday":
-        startDate = endDate.with(TemporalAdjusters.previous(DayOfWeek.THURSDAY));
-        break;
-      case "since friday":
-        startDate = endDate.with(TemporalAdjusters.previous(DayOfWeek.FRIDAY));
-        break;
-      case "since saturday":
-        startDate = endDate.with(TemporalAdjusters.previous(DayOfWeek.SATURDAY));
-        break;
+    DateRange range = (dateString != null) ? table.ranges.get(dateString.trim().toLowerCase(Locale.ROOT)) : null;
+
+    if(range == null) {
+      throw new DateStringNotSupportedException("Date String: " + dateString);
     }
 
-    // Should never be the case, but test any how
-    if(startDate.isAfter(endDate)) {
-      throw new DateRangeException("Start date: " + startDate.toString() + " End date: " + endDate.toString());
+    return range;
+  }
+
+  /**
+   * Every range resolved for one day, keyed by lower case spoken form.
+   */
+  private static final class DayTable {
+    private final LocalDate day;
+    private final Map<String, DateRange> ranges;
+
+    private DayTable(LocalDate day, Map<String, DateRange> ranges) {
+      this.day = day;
+      this.ranges = ranges;
     }
 
-    String[] dates = new String[2];
-    dates[0] = startDate.toString();
-    dates[1] = endDate.toString();
+    private static DayTable build(LocalDate today) {
+      Map<String, DateRange> ranges = new HashMap<String, DateRange>();
+
+      for(RelativeRange relativeRange : RelativeRange.values()) {
+        DateRange range = relativeRange.resolve(today);
 
-    return dates;
+        for(String spokenForm : relativeRange.spokenForms) {
+          ranges.put(spokenForm, range);
+        }
+      }
+
+      return new DayTable(today, Collections.unmodifiableMap(ranges));
+    }
   }
 
-  private static boolean dateStringExists(String dateString) {
-    return dateStrings.contains(dateString);
+  /**
+   * Supported date strings and how each resolves relative to today.
+   */
+  private enum RelativeRange {
+    LAST_WEEK("last week") {
+      DateRange resolve(LocalDate today) {
+        // Sunday through Saturday
+        LocalDate start = lastWeekSunday(today);
+        return DateRange.of(start, start.plusDays(6));
+      }
+    },
+    LAST_WEEKEND("last weekend", "last weeekend") {
+      DateRange resolve(LocalDate today) {
+        // Friday through Sunday
+        LocalDate start = today.with(TemporalAdjusters.previous(DayOfWeek.FRIDAY));
+        return DateRange.of(start, start.plusDays(2));
+      }
+    },
+    THIS_WEEKEND("this weekend") {
+      DateRange resolve(LocalDate today) {
+        LocalDate end = today.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+        return DateRange.of(end.minusDays(2), end);
+      }
+    },
+    NEXT_WEEKEND("next weekend") {
+      DateRange resolve(LocalDate today) {
+        LocalDate end = today.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY)).plusWeeks(1);
+        return DateRange.of(end.minusDays(2), end);
+      }
+    },
+    LAST_MONTH("last month") {
+      DateRange resolve(LocalDate today) {
+        LocalDate start = today.minusMonths(1).with(TemporalAdjusters.firstDayOfMonth());
+        return DateRange.of(start, start.with(TemporalAdjusters.lastDayOfMonth()));
+      }
+    },
+    LAST_YEAR("last year") {
+      DateRange resolve(LocalDate today) {
+        LocalDate start = today.minusYears(1).with(TemporalAdjusters.firstDayOfYear());
+        return DateRange.of(start, start.with(TemporalAdjusters.lastDayOfYear()));
+      }
+    },
+    SINCE_LAST_YEAR("since last year") {
+      DateRange resolve(LocalDate today) {
+        return DateRange.of(today.minusYears(1).with(TemporalAdjusters.firstDayOfYear()), today);
+      }
+    },
+    SINCE_LAST_MONTH("since last month") {
+      DateRange resolve(LocalDate today) {
+        return DateRange.of(today.minusMonths(1).with(TemporalAdjusters.firstDayOfMonth()), today);
+      }
+    },
+    SINCE_LAST_WEEK("since last week") {
+      DateRange resolve(LocalDate today) {
+        return DateRange.of(lastWeekSunday(today), today);
+      }
+    },
+    SINCE_SUNDAY("since sunday") {
+      DateRange resolve(LocalDate today) {
+        return since(today, DayOfWeek.SUNDAY);
+      }
+    },
+    SINCE_MONDAY("since monday") {
+      DateRange resolve(LocalDate today) {
+        return since(today, DayOfWeek.MONDAY);
+      }
+    },
+    SINCE_TUESDAY("since tuesday") {
+      DateRange resolve(LocalDate today) {
+        return since(today, DayOfWeek.TUESDAY);
+      }
+    },
+    SINCE_WEDNESDAY("since wednesday") {
+      DateRange resolve(LocalDate today) {
+        return since(today, DayOfWeek.WEDNESDAY);
+      }
+    },
+    SINCE_THURSDAY("since thursday") {
+      DateRange resolve(LocalDate today) {
+        return since(today, DayOfWeek.THURSDAY);
+      }
+    },
+    SINCE_FRIDAY("since friday") {
+      DateRange resolve(LocalDate today) {
+        return since(today, DayOfWeek.FRIDAY);
+      }
+    },
+    SINCE_SATURDAY("since saturday") {
+      DateRange resolve(LocalDate today) {
+        return since(today, DayOfWeek.SATURDAY);
+      }
+    };
+
+    private final String[] spokenForms;
+
+    RelativeRange(String... spokenForms) {
+      this.spokenForms = spokenForms;
+    }
+
+    abstract DateRange resolve(LocalDate today);
+
+    private static LocalDate lastWeekSunday(LocalDate today) {
+      int dayOfWeek = today.getDayOfWeek().getValue();
+      return today.minusDays((dayOfWeek == 7) ? dayOfWeek : 7 + dayOfWeek);
+    }
+
+    private static DateRange since(LocalDate today, DayOfWeek dayOfWeek) {
+      return DateRange.of(today.with(TemporalAdjusters.previous(dayOfWeek)), today);
+    }
   }
 }
@@ -0,0 +1,354 @@
+package com.codeamatic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves spoken neighborhood names to the raw names used by Socrata.
+ *
+ * Everything is built once up front.  Names and aliases are normalized to a compact
+ * key (lower case letters and digits only, with "Mt" spelled out) and stored in a hash
+ * map, so exact matches cost one pass over the input and one lookup.  Near misses from
+ * speech recognition are found through a phonetic key and a BK-tree over the
+ * normalized keys, which only visits the part of the tree within edit distance.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+public final class NeighborhoodIndex {
+
+  /**
+   * Confidence below which {@link #resolve(String)} treats a value as unknown.
+   */
+  public static final double MIN_CONFIDENCE = 0.8;
+
+  private static final double PHONETIC_CONFIDENCE = 0.9;
+  // Enough to be offered as a candidate, but never enough to pick one on its own
+  private static final double SHARED_NAME_CONFIDENCE = MIN_CONFIDENCE;
+  private static final int MAX_DISTANCE = 3;
+
+  private final Map<String, String> exact = new HashMap<String, String>();
+  private final Map<String, String> phonetic = new HashMap<String, String>();
+  private final Map<String, List<String>> shared = new HashMap<String, List<String>>();
+  private final Node root;
+  private final int maxKeyLength;
+
+  /**
+   * @param names raw neighborhood names; the first name wins if two normalize alike
+   * @param aliases map of alternative spoken forms to raw names
+   */
+  public NeighborhoodIndex(List<String> names, Map<String, String> aliases) {
+    this(names, aliases, Collections.<String, List<String>>emptyMap());
+  }
+
+  /**
+   * @param names raw neighborhood names; the first name wins if two normalize alike
+   * @param aliases map of alternative spoken forms to raw names
+   * @param sharedNames map of spoken forms that could mean any of several raw names,
+   *                    e.g. "Price Hill"; these are never resolved, only offered as candidates
+   */
+  public NeighborhoodIndex(List<String> names, Map<String, String> aliases, Map<String, List<String>> sharedNames) {
+    Node tree = null;
+    int maxLength = 0;
+
+    for(String name : names) {
+      tree = add(tree, normalize(name), name);
+    }
+    for(Map.Entry<String, String> alias : aliases.entrySet()) {
+      tree = add(tree, normalize(alias.getKey()), alias.getValue());
+    }
+    for(String key : exact.keySet()) {
+      maxLength = Math.max(maxLength, key.length());
+    }
+    for(Map.Entry<String, List<String>> sharedName : sharedNames.entrySet()) {
+      shared.put(normalize(sharedName.getKey()), new ArrayList<String>(sharedName.getValue()));
+    }
+
+    this.root = tree;
+    this.maxKeyLength = maxLength;
+  }
+
+  private Node add(Node tree, String key, String name) {
+    if(key.isEmpty() || exact.containsKey(key)) {
+      return tree;
+    }
+
+    exact.put(key, name);
+    String phoneticKey = phoneticKey(key);
+    if(! phonetic.containsKey(phoneticKey)) {
+      phonetic.put(phoneticKey, name);
+    }
+
+    if(tree == null) {
+      return new Node(key, name);
+    }
+
+    Node node = tree;
+    while(true) {
+      int distance = distance(key, node.key, new int[key.length() + 1], new int[key.length() + 1]);
+      Node child = node.child(distance);
+
+      if(child == null) {
+        node.setChild(distance, new Node(key, name));
+        return tree;
+      }
+      node = child;
+    }
+  }
+
+  /**
+   * Finds the best match for a spoken neighborhood.
+   *
+   * @param neighborhood String the neighborhood as spoken by the user
+   * @return the best match with at least {@link #MIN_CONFIDENCE}, or null
+   */
+  public NeighborhoodMatch resolve(String neighborhood) {
+    if(neighborhood == null) {
+      return null;
+    }
+
+    String key = normalize(neighborhood);
+    String name = exact.get(key);
+
+    if(name != null) {
+      return new NeighborhoodMatch(name, 1.0);
+    }
+    if(shared.containsKey(key)) {
+      // Guessing would confidently answer for the wrong place
+      return null;
+    }
+
+    // Allow roughly one edit per four characters
+    int radius = Math.max(1, Math.min(MAX_DISTANCE, key.length() / 4));
+    List<NeighborhoodMatch> matches = search(key, radius, 1);
+    return (! matches.isEmpty() && matches.get(0).getConfidence() >= MIN_CONFIDENCE) ? matches.get(0) : null;
+  }
+
+  /**
+   * Ranks the neighborhoods closest to a spoken value, looking further afield than
+   * {@link #resolve(String)} and without a minimum confidence.
+   *
+   * @param neighborhood String the neighborhood as spoken by the user
+   * @param limit int maximum number of candidates
+   * @return candidates by descending confidence, possibly empty
+   */
+  public List<NeighborhoodMatch> candidates(String neighborhood, int limit) {
+    if(neighborhood == null) {
+      return Collections.emptyList();
+    }
+
+    return search(normalize(neighborhood), MAX_DISTANCE, limit);
+  }
+
+  private List<NeighborhoodMatch> search(String key, int radius, int limit) {
+    Map<String, Double> best = new HashMap<String, Double>();
+
+    if(key.isEmpty() || root == null) {
+      return Collections.emptyList();
+    }
+
+    String name = exact.get(key);
+    if(name != null) {
+      best.put(name, 1.0);
+    }
+
+    List<String> sharedBy = shared.get(key);
+    if(sharedBy != null) {
+      for(String sharedName : sharedBy) {
+        keepBest(best, sharedName, SHARED_NAME_CONFIDENCE);
+      }
+    }
+
+    name = phonetic.get(phoneticKey(key));
+    if(name != null) {
+      keepBest(best, name, PHONETIC_CONFIDENCE);
+    }
+
+    int width = Math.max(key.length(), maxKeyLength) + 1;
+    int[] previous = new int[width];
+    int[] current = new int[width];
+    List<Node> pending = new ArrayList<Node>();
+    pending.add(root);
+
+    while(! pending.isEmpty()) {
+      Node node = pending.remove(pending.size() - 1);
+      int distance = distance(key, node.key, previous, current);
+
+      if(distance <= radius) {
+        keepBest(best, node.name, 1.0 - (double) distance / Math.max(key.length(), node.key.length()));
+      }
+
+      int low = Math.max(0, distance - radius);
+      int high = Math.min(node.children.length - 1, distance + radius);
+      for(int d = low; d <= high; d++) {
+        if(node.children[d] != null) {
+          pending.add(node.children[d]);
+        }
+      }
+    }
+
+    List<NeighborhoodMatch> matches = new ArrayList<NeighborhoodMatch>(best.size());
+    for(Map.Entry<String, Double> entry : best.entrySet()) {
+      matches.add(new NeighborhoodMatch(entry.getKey(), entry.getValue()));
+    }
+    Collections.sort(matches);
+
+    return (matches.size() > limit) ? matches.subList(0, limit) : matches;
+  }
+
+  private static void keepBest(Map<String, Double> best, String name, double confidence) {
+    Double previous = best.get(name);
+
+    if(previous == null || previous < confidence) {
+      best.put(name, confidence);
+    }
+  }
+
+  /**
+   * Reduces a name to lower case letters and digits.  Punctuation, hyphens and runs of
+   * whitespace separate words, apostrophes are dropped, "mt" becomes "mount" and a
+   * leading single letter compass point is spelled out.
+   *
+   * Example: "Mt.  Washington" and "mount washington" => "mountwashington"
+   *
+   * @param value String name or spoken value
+   * @return the normalized key
+   */
+  static String normalize(String value) {
+    StringBuilder key = new StringBuilder(value.length() + 8);
+    int wordStart = 0;
+
+    for(int i = 0; i <= value.length(); i++) {
+      char c = (i < value.length()) ? value.charAt(i) : ' ';
+
+      if(Character.isLetterOrDigit(c)) {
+        key.append(Character.toLowerCase(c));
+      } else if(c != '\'') {
+        expandWord(key, wordStart);
+        wordStart = key.length();
+      }
+    }
+
+    return key.toString();
+  }
+
+  private static void expandWord(StringBuilder key, int wordStart) {
+    int length = key.length() - wordStart;
+
+    if(length == 2 && key.charAt(wordStart) == 'm' && key.charAt(wordStart + 1) == 't') {
+      key.replace(wordStart, key.length(), "mount");
+    } else if(length == 1 && wordStart == 0) {
+      switch(key.charAt(0)) {
+        case 'n': key.replace(0, 1, "north"); break;
+        case 's': key.replace(0, 1, "south"); break;
+        case 'e': key.replace(0, 1, "east"); break;
+        case 'w': key.replace(0, 1, "west"); break;
+        default: break;
+      }
+    }
+  }
+
+  /**
+   * Soundex style key over the whole normalized name: the first letter, then the
+   * consonant class of every following letter, with vowels dropped and repeats collapsed.
+   */
+  static String phoneticKey(String key) {
+    if(key.isEmpty()) {
+      return key;
+    }
+
+    StringBuilder result = new StringBuilder(key.length());
+    char last = soundClass(key.charAt(0));
+    result.append(key.charAt(0));
+
+    for(int i = 1; i < key.length(); i++) {
+      char c = soundClass(key.charAt(i));
+
+      if(c == '-') {
+        continue;
+      }
+      if(c != '0' && c != last) {
+        result.append(c);
+      }
+      last = c;
+    }
+
+    return result.toString();
+  }
+
+  private static char soundClass(char c) {
+    switch(c) {
+      case 'b': case 'f': case 'p': case 'v':
+        return '1';
+      case 'c': case 'g': case 'j': case 'k': case 'q': case 's': case 'x': case 'z':
+        return '2';
+      case 'd': case 't':
+        return '3';
+      case 'l':
+        return '4';
+      case 'm': case 'n':
+        return '5';
+      case 'r':
+        return '6';
+      case 'h': case 'w':
+        // Like Soundex, h and w don't separate letters of the same class
+        return '-';
+      default:
+        return '0';
+    }
+  }
+
+  /**
+   * Levenshtein distance using two caller supplied rows of at least {@code a.length() + 1}.
+   */
+  private static int distance(String a, String b, int[] previous, int[] current) {
+    for(int i = 0; i <= a.length(); i++) {
+      previous[i] = i;
+    }
+
+    for(int j = 1; j <= b.length(); j++) {
+      current[0] = j;
+      char cb = b.charAt(j - 1);
+
+      for(int i = 1; i <= a.length(); i++) {
+        int cost = (a.charAt(i - 1) == cb) ? 0 : 1;
+        current[i] = Math.min(Math.min(current[i - 1] + 1, previous[i] + 1), previous[i - 1] + cost);
+      }
+
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+
+    return previous[a.length()];
+  }
+
+  /**
+   * BK-tree node; children are indexed by their distance to this node's key.
+   */
+  private static final class Node {
+    private final String key;
+    private final String name;
+    private Node[] children = new Node[0];
+
+    private Node(String key, String name) {
+      this.key = key;
+      this.name = name;
+    }
+
+    private Node child(int distance) {
+      return (distance < children.length) ? children[distance] : null;
+    }
+
+    private void setChild(int distance, Node child) {
+      if(distance >= children.length) {
+        Node[] grown = new Node[distance + 1];
+        System.arraycopy(children, 0, grown, 0, children.length);
+        children = grown;
+      }
+      children[distance] = child;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package com.codeamatic;
+
+/**
+ * A candidate neighborhood for a spoken value, with how confident the match is.
+ */
+public final class NeighborhoodMatch implements Comparable<NeighborhoodMatch> {
+
+  private final String name;
+  private final double confidence;
+
+  public NeighborhoodMatch(String name, double confidence) {
+    this.name = name;
+    this.confidence = confidence;
+  }
+
+  /**
+   * @return the raw neighborhood name as used by Socrata
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return 1.0 for an exact or alias match, lower the further the spoken value was off
+   */
+  public double getConfidence() {
+    return confidence;
+  }
+
+  /**
+   * Orders by descending confidence, then by name.
+   */
+  @Override
+  public int compareTo(NeighborhoodMatch other) {
+    int result = Double.compare(other.confidence, confidence);
+    return (result != 0) ? result : name.compareTo(other.name);
+  }
+
+  @Override
+  public String toString() {
+    return name + " (" + confidence + ")";
+  }
+}
@@ -1,11 +1,17 @@
 package com.codeamatic;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public final class Neighborhoods {
 
   private static final List<String> neighborhoods = new ArrayList<String>();
+  private static final Map<String, String> aliases = new HashMap<String, String>();
+  private static final Map<String, List<String>> sharedNames = new HashMap<String, List<String>>();
+  private static final NeighborhoodIndex index;
 
   private Neighborhoods() {}
 
@@ -71,6 +77,22 @@ public final class Neighborhoods {
     neighborhoods.add("West Price Hill");
     neighborhoods.add("Westwood");
     neighborhoods.add("Winton Hills");
+
+    // Common local names that don't normalize to the raw name
+    aliases.put("OTR", "Over-The-Rhine");
+    aliases.put("Central Business District", "CBD");
+    aliases.put("The Banks", "Riverfront");
+    aliases.put("Camp Washington", "Camp  Washington");
+    aliases.put("UC", "CUF");
+    aliases.put("Clifton Heights", "CUF");
+    aliases.put("Lower Price Hill", "Lower Price  Hill");
+    aliases.put("Roll Hill", "Villages at Roll Hill");
+    aliases.put("Columbia Tusculum", "Columbia / Tusculum");
+
+    // Spoken names that several neighborhoods share; the user has to pick one
+    sharedNames.put("Price Hill", Arrays.asList("East Price Hill", "West Price Hill", "Lower Price  Hill"));
+
+    index = new NeighborhoodIndex(neighborhoods, aliases, sharedNames);
   }
 
   public static List<String> getNeighborhoods() {
@@ -83,21 +105,27 @@ public final class Neighborhoods {
    *
    * Example: Mount Washington => Mt.  Washington (with two spaces and abbreviation)
    * Example: Mount Adams => Mount  Adams (with two spaces)
+   * Example: OTR => Over-The-Rhine (alias)
+   * Example: Madisonvile => Madisonville (near miss)
    *
    * @param neighborhood String the neighborhood as spoken by the user
    * @return The raw neighborhood or null if it can't be found
    */
   public static String getNeighborhood(String neighborhood) {
+    NeighborhoodMatch match = index.resolve(neighborhood);
 
-    for(String rawNeighborhood : neighborhoods) {
-      String replNeighborhood = rawNeighborhood.replaceAll("[ -]+", " ");
-      replNeighborhood = replNeighborhood.replaceAll("(?i)mt.", "mount");
-
-      if(neighborhood.equalsIgnoreCase(replNeighborhood)) {
-        return rawNeighborhood;
-      }
-    }
+    return (match != null) ? match.getName() : null;
+  }
 
-    return null;
+  /**
+   * Ranks the neighborhoods that most closely match the spoken "neighborhood",
+   * e.g. to ask the user which one they meant.
+   *
+   * @param neighborhood String the neighborhood as spoken by the user
+   * @param limit int maximum number of candidates
+   * @return candidates by descending confidence, possibly empty
+   */
+  public static List<NeighborhoodMatch> getCandidates(String neighborhood, int limit) {
+    return index.candidates(neighborhood, limit);
   }
 }
@@ -0,0 +1,171 @@
+package com.codeamatic.metrics;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes drained {@link Metrics} as CloudWatch Embedded Metric Format documents, one
+ * JSON object per log line, which CloudWatch turns into metrics without any API calls.
+ *
+ * Upstream and cache metrics go into one document without dimensions, and each intent
+ * that was answered gets a document with an Intent dimension.  The logger needs a
+ * layout that writes the bare message (see log4j.properties).
+ */
+public final class EmfPublisher {
+  private static final Logger log = LoggerFactory.getLogger(EmfPublisher.class);
+
+  public static final String NAMESPACE = "CincyData";
+
+  /**
+   * CloudWatch accepts at most 100 distinct values per metric in a document.
+   */
+  private static final int MAX_VALUES = 100;
+
+  private static volatile boolean enabled = true;
+
+  private EmfPublisher() {}
+
+  /**
+   * Drains every metric and logs the documents.  Nothing is logged if nothing was
+   * recorded, and the metrics are discarded if publishing is disabled.
+   */
+  public static void flush() {
+    List<String> documents = drain(System.currentTimeMillis());
+
+    if(enabled) {
+      for(String document : documents) {
+        log.info(document);
+      }
+    }
+  }
+
+  /**
+   * @param enabled boolean false to discard metrics instead of logging them, e.g. for
+   *                requests the skill sends itself while warming up
+   */
+  public static void setEnabled(boolean enabled) {
+    EmfPublisher.enabled = enabled;
+  }
+
+  /**
+   * @param timestamp long epoch milliseconds of the documents
+   * @return the documents, possibly none
+   */
+  static List<String> drain(long timestamp) {
+    List<String> documents = new ArrayList<String>();
+    Document service = new Document(timestamp, null, null);
+
+    for(Map.Entry<String, Histogram> entry : Metrics.getHistograms().entrySet()) {
+      service.addLatency(entry.getKey(), entry.getValue().drain());
+    }
+    for(Map.Entry<String, LongAdder> entry : Metrics.getCounters().entrySet()) {
+      long value = entry.getValue().sumThenReset();
+      String unit = entry.getKey().endsWith("Bytes") ? "Bytes" : "Count";
+      service.add(entry.getKey(), unit, new JsonPrimitive(value), value != 0);
+    }
+    if(service.hasData) {
+      documents.add(service.toString());
+    }
+
+    for(Map.Entry<String, Histogram> entry : Metrics.getIntentLatencies().entrySet()) {
+      Document intent = new Document(timestamp, "Intent", entry.getKey());
+      intent.addLatency(Metrics.INTENT_LATENCY, entry.getValue().drain());
+      if(intent.hasData) {
+        documents.add(intent.toString());
+      }
+    }
+
+    return documents;
+  }
+
+  /**
+   * One EMF document under construction.
+   */
+  private static final class Document {
+    private final JsonObject root = new JsonObject();
+    private final JsonArray definitions = new JsonArray();
+    private boolean hasData;
+
+    private Document(long timestamp, String dimension, String dimensionValue) {
+      JsonArray dimensionSet = new JsonArray();
+      if(dimension != null) {
+        dimensionSet.add(new JsonPrimitive(dimension));
+        root.addProperty(dimension, dimensionValue);
+      }
+      JsonArray dimensions = new JsonArray();
+      dimensions.add(dimensionSet);
+
+      JsonObject directive = new JsonObject();
+      directive.addProperty("Namespace", NAMESPACE);
+      directive.add("Dimensions", dimensions);
+      directive.add("Metrics", definitions);
+
+      JsonArray directives = new JsonArray();
+      directives.add(directive);
+
+      JsonObject aws = new JsonObject();
+      aws.addProperty("Timestamp", timestamp);
+      aws.add("CloudWatchMetrics", directives);
+      root.add("_aws", aws);
+    }
+
+    /**
+     * Adds a microsecond histogram as millisecond values with counts, one per bucket;
+     * empty histograms are left out.  Past the limit, neighbouring buckets are merged
+     * at their mean so that the whole range, tail included, is still reported.
+     */
+    private void addLatency(String name, Histogram.Snapshot snapshot) {
+      if(snapshot.isEmpty()) {
+        return;
+      }
+
+      long[] buckets = snapshot.getValues();
+      long[] bucketCounts = snapshot.getCounts();
+      int perValue = (buckets.length + MAX_VALUES - 1) / MAX_VALUES;
+
+      JsonArray values = new JsonArray();
+      JsonArray counts = new JsonArray();
+      for(int i = 0; i < buckets.length; i += perValue) {
+        long count = 0;
+        long sum = 0;
+
+        for(int j = i; j < Math.min(i + perValue, buckets.length); j++) {
+          count += bucketCounts[j];
+          sum += bucketCounts[j] * buckets[j];
+        }
+        values.add(new JsonPrimitive(sum / count / 1000.0));
+        counts.add(new JsonPrimitive(count));
+      }
+
+      JsonObject distribution = new JsonObject();
+      distribution.add("Values", values);
+      distribution.add("Counts", counts);
+      add(name, "Milliseconds", distribution, true);
+    }
+
+    private void add(String name, String unit, JsonElement value, boolean recorded) {
+      JsonObject definition = new JsonObject();
+      definition.addProperty("Name", name);
+      definition.addProperty("Unit", unit);
+      definitions.add(definition);
+
+      root.add(name, value);
+      hasData |= recorded;
+    }
+
+    @Override
+    public String toString() {
+      return root.toString();
+    }
+  }
+}
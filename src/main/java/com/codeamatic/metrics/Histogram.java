@@ -0,0 +1,183 @@
+package com.codeamatic.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values with log-linear buckets.
+ *
+ * Values below 16 get a bucket each; above that every power of two is split into 16
+ * buckets, so a bucket is at most 1/16th (about 6%) of its value wide.  Recording is
+ * a bucket index computation and one atomic increment, with no allocation.
+ */
+public final class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  /**
+   * @param value long value to record; negative values are recorded as 0
+   */
+  public void record(long value) {
+    counts.incrementAndGet(bucket(Math.max(0, value)));
+  }
+
+  /**
+   * @return the counts recorded so far, leaving them in place
+   */
+  public Snapshot snapshot() {
+    long[] copy = new long[BUCKETS];
+
+    for(int i = 0; i < BUCKETS; i++) {
+      copy[i] = counts.get(i);
+    }
+
+    return new Snapshot(copy);
+  }
+
+  /**
+   * Takes the counts recorded so far and resets them.  Values recorded concurrently
+   * end up in either this snapshot or the next one.
+   *
+   * @return the counts since the previous drain
+   */
+  public Snapshot drain() {
+    long[] copy = new long[BUCKETS];
+
+    for(int i = 0; i < BUCKETS; i++) {
+      if(counts.get(i) != 0) {
+        copy[i] = counts.getAndSet(i, 0);
+      }
+    }
+
+    return new Snapshot(copy);
+  }
+
+  static int bucket(long value) {
+    if(value < SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return the middle of the values a bucket covers
+   */
+  static long representative(int bucket) {
+    if(bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+
+    return lowerBound + ((1L << shift) >> 1);
+  }
+
+  /**
+   * Immutable copy of a histogram's counts.
+   */
+  public static final class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+
+    private Snapshot(long[] counts) {
+      long total = 0;
+      long weighted = 0;
+
+      for(int i = 0; i < counts.length; i++) {
+        total += counts[i];
+        weighted += counts[i] * representative(i);
+      }
+
+      this.counts = counts;
+      this.count = total;
+      this.sum = weighted;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public boolean isEmpty() {
+      return count == 0;
+    }
+
+    /**
+     * @return the sum of the recorded values, to bucket precision
+     */
+    public long getSum() {
+      return sum;
+    }
+
+    /**
+     * @param percentile double between 0 and 100
+     * @return the value at the percentile, to bucket precision, or 0 if empty
+     */
+    public long getPercentile(double percentile) {
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long seen = 0;
+
+      for(int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if(seen >= rank) {
+          return representative(i);
+        }
+      }
+
+      return 0;
+    }
+
+    /**
+     * @return the representative of every bucket something was recorded in, in
+     *         ascending order; {@link #getCounts()} has the matching counts
+     */
+    public long[] getValues() {
+      long[] values = new long[buckets()];
+      int n = 0;
+
+      for(int i = 0; i < counts.length; i++) {
+        if(counts[i] > 0) {
+          values[n++] = representative(i);
+        }
+      }
+
+      return values;
+    }
+
+    /**
+     * @return how many values were recorded in each bucket listed by {@link #getValues()}
+     */
+    public long[] getCounts() {
+      long[] nonEmpty = new long[buckets()];
+      int n = 0;
+
+      for(long c : counts) {
+        if(c > 0) {
+          nonEmpty[n++] = c;
+        }
+      }
+
+      return nonEmpty;
+    }
+
+    private int buckets() {
+      int n = 0;
+
+      for(long c : counts) {
+        if(c > 0) {
+          n++;
+        }
+      }
+
+      return n;
+    }
+  }
+}
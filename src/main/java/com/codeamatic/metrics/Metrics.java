@@ -0,0 +1,110 @@
+package com.codeamatic.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JVM-wide registry of the skill's metrics.
+ *
+ * Instrumented classes hold on to their {@link Histogram}s and counters in static
+ * fields, so the hot path never touches the registry.  {@link EmfPublisher} drains
+ * everything once per invocation; Lambda runs one invocation per JVM at a time, so a
+ * drain holds exactly that invocation's metrics.
+ */
+public final class Metrics {
+
+  /** Upstream connect time, microseconds. */
+  public static final String SOCRATA_CONNECT = "SocrataConnect";
+  /** Upstream time from connected to response headers, microseconds. */
+  public static final String SOCRATA_FIRST_BYTE = "SocrataFirstByte";
+  /** Time spent reading and decoding a response body, microseconds. */
+  public static final String SOCRATA_DECODE = "SocrataDecode";
+  /** Response body bytes received, as sent on the wire. */
+  public static final String SOCRATA_PAYLOAD_BYTES = "SocrataPayloadBytes";
+  /** Rows decoded from responses. */
+  public static final String SOCRATA_ROWS = "SocrataRows";
+  /** Upstream calls that failed. */
+  public static final String SOCRATA_ERRORS = "SocrataErrors";
+  /** Duplicate requests sent because the first was slow. */
+  public static final String SOCRATA_HEDGES = "SocrataHedges";
+  /** Upstream calls abandoned at their deadline. */
+  public static final String SOCRATA_TIMEOUTS = "SocrataTimeouts";
+  /** Calls rejected because the circuit breaker was open. */
+  public static final String SOCRATA_CIRCUIT_OPEN = "SocrataCircuitOpen";
+  /** Answers served from the query cache. */
+  public static final String CACHE_HITS = "CacheHits";
+  /** Answers the query cache had to fetch. */
+  public static final String CACHE_MISSES = "CacheMisses";
+  /** Answers read from the on-disk result cache. */
+  public static final String DISK_CACHE_HITS = "DiskCacheHits";
+  /** Queries the on-disk result cache couldn't answer. */
+  public static final String DISK_CACHE_MISSES = "DiskCacheMisses";
+  /** Expired cached answers served because no current one could be had in time. */
+  public static final String STALE_ANSWERS = "StaleAnswers";
+  /** Calls that shared another caller's in-flight request. */
+  public static final String COALESCED_CALLS = "CoalescedCalls";
+  /** Time to answer an intent, microseconds; one histogram per intent. */
+  public static final String INTENT_LATENCY = "IntentLatency";
+
+  private static final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+  private static final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+  private static final ConcurrentMap<String, Histogram> intentLatencies = new ConcurrentHashMap<String, Histogram>();
+
+  private Metrics() {}
+
+  /**
+   * @param name String metric name
+   * @return the histogram, created on first use
+   */
+  public static Histogram histogram(String name) {
+    return getOrCreate(histograms, name);
+  }
+
+  /**
+   * @param name String metric name
+   * @return the counter, created on first use
+   */
+  public static LongAdder counter(String name) {
+    LongAdder counter = counters.get(name);
+
+    if(counter == null) {
+      counters.putIfAbsent(name, new LongAdder());
+      counter = counters.get(name);
+    }
+
+    return counter;
+  }
+
+  /**
+   * @param intent String intent name
+   * @return the latency histogram of the intent, created on first use
+   */
+  public static Histogram intentLatency(String intent) {
+    return getOrCreate(intentLatencies, intent);
+  }
+
+  static Map<String, Histogram> getHistograms() {
+    return histograms;
+  }
+
+  static Map<String, LongAdder> getCounters() {
+    return counters;
+  }
+
+  static Map<String, Histogram> getIntentLatencies() {
+    return intentLatencies;
+  }
+
+  private static Histogram getOrCreate(ConcurrentMap<String, Histogram> map, String name) {
+    Histogram histogram = map.get(name);
+
+    if(histogram == null) {
+      map.putIfAbsent(name, new Histogram());
+      histogram = map.get(name);
+    }
+
+    return histogram;
+  }
+}
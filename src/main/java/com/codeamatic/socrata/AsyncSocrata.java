@@ -0,0 +1,35 @@
+package com.codeamatic.socrata;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking counterpart of {@link Socrata}.
+ *
+ * Returned futures complete exceptionally with a {@link java.util.concurrent.TimeoutException}
+ * once their deadline passes, and cancelling a future stops the underlying request
+ * where possible.
+ */
+public interface AsyncSocrata {
+
+  /**
+   * Asynchronously retrieves {@link CrimeReport} objects filtered by neighborhood and dates.
+   *
+   * @param timeout long time allowed before the future times out
+   * @param unit TimeUnit of the timeout
+   * @return a future list of crime reports
+   */
+  CompletableFuture<List<CrimeReport>> getCrimeReportsAsync(String neighborhood, String[] dates,
+                                                            long timeout, TimeUnit unit);
+
+  /**
+   * Asynchronously retrieves the offense summary for a neighborhood and dates.
+   *
+   * @param timeout long time allowed before the future times out
+   * @param unit TimeUnit of the timeout
+   * @return a future offense summary
+   */
+  CompletableFuture<CrimeReportSummary> getCrimeReportSummaryAsync(String neighborhood, String[] dates,
+                                                                   long timeout, TimeUnit unit);
+}
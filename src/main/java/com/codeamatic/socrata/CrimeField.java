@@ -0,0 +1,63 @@
+package com.codeamatic.socrata;
+
+/**
+ * Categorical crime report fields that are dictionary encoded.  Each field has
+ * one JVM-wide {@link Dictionary} so that codes can be compared across results.
+ */
+public enum CrimeField {
+  OFFENSE("offense"),
+  NEIGHBORHOOD("neighborhood"),
+  DISTRICT("district"),
+  BEAT("beat"),
+  UCR("ucr");
+
+  /**
+   * Stand-in for values that Socrata leaves empty.
+   */
+  public static final String UNKNOWN = "UNKNOWN";
+
+  private final String fieldName;
+  private final Dictionary dictionary = new Dictionary();
+
+  CrimeField(String fieldName) {
+    this.fieldName = fieldName;
+  }
+
+  /**
+   * @return the Socrata column name
+   */
+  public String getFieldName() {
+    return fieldName;
+  }
+
+  public Dictionary getDictionary() {
+    return dictionary;
+  }
+
+  /**
+   * @param value String raw value, null is encoded as {@link #UNKNOWN}
+   * @return the value's code
+   */
+  public int encode(String value) {
+    return dictionary.encode((value != null) ? value : UNKNOWN);
+  }
+
+  public String decode(int code) {
+    return dictionary.decode(code);
+  }
+
+  /**
+   * @param fieldName String Socrata column name
+   * @return the matching field or null if the column isn't dictionary encoded
+   */
+  public static CrimeField forFieldName(String fieldName) {
+    switch(fieldName) {
+      case "offense": return OFFENSE;
+      case "neighborhood": return NEIGHBORHOOD;
+      case "district": return DISTRICT;
+      case "beat": return BEAT;
+      case "ucr": return UCR;
+      default: return null;
+    }
+  }
+}
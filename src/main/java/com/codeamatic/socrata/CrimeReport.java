@@ -7,7 +7,10 @@ import com.google.gson.annotations.SerializedName;
  */
 public class CrimeReport {
 
-  private String count;
+  /**
+   * Number of incidents for grouped queries, 0 for individual incidents.
+   */
+  private int count;
 
   @SerializedName("addressstate")
   private String addressState;
@@ -58,9 +61,13 @@ public class CrimeReport {
 
   private String ucr;
 
-  public String getCount() { return count; }
+  public String getCount() { return Integer.toString(count); }
 
-  public void setCount(String count) { this.count = count; }
+  public void setCount(String count) { this.count = Integer.parseInt(count); }
+
+  public int getCountValue() { return count; }
+
+  public void setCountValue(int count) { this.count = count; }
 
   public String getAddressState() {
     return addressState;
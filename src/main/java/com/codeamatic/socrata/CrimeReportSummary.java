@@ -0,0 +1,342 @@
+package com.codeamatic.socrata;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, compact aggregate of a crime report query.
+ *
+ * Each row is a group (by default one per offense) whose categorical values are
+ * stored as {@link CrimeField} dictionary codes in primitive arrays, alongside
+ * an int count.  The total across all rows is computed once when the summary is built.
+ *
+ * A summary served in place of an answer that couldn't be had in time carries the
+ * time it was originally retrieved, see {@link #getAsOf()}.
+ */
+public final class CrimeReportSummary {
+
+  public static final CrimeReportSummary EMPTY = new Builder(CrimeField.OFFENSE).build();
+
+  private final CrimeField[] groupBy;
+  private final int[][] codes;
+  private final int[] counts;
+  private final int total;
+  private final Instant asOf;
+
+  private CrimeReportSummary(CrimeField[] groupBy, int[][] codes, int[] counts) {
+    int sum = 0;
+
+    for(int count : counts) {
+      sum += count;
+    }
+
+    this.groupBy = groupBy;
+    this.codes = codes;
+    this.counts = counts;
+    this.total = sum;
+    this.asOf = null;
+  }
+
+  private CrimeReportSummary(CrimeReportSummary summary, Instant asOf) {
+    this.groupBy = summary.groupBy;
+    this.codes = summary.codes;
+    this.counts = summary.counts;
+    this.total = summary.total;
+    this.asOf = asOf;
+  }
+
+  /**
+   * Boundary adapter that folds {@link CrimeReport} objects into a summary.
+   * Reports without a count are individual incidents and count as one.
+   *
+   * @param crimeReports List of crime reports
+   * @param groupBy the fields to group on
+   * @return the summary
+   */
+  public static CrimeReportSummary fromCrimeReports(List<CrimeReport> crimeReports, CrimeField... groupBy) {
+    Builder builder = new Builder(groupBy);
+    int[] rowCodes = new int[groupBy.length];
+
+    for(CrimeReport crimeReport : crimeReports) {
+      for(int i = 0; i < groupBy.length; i++) {
+        rowCodes[i] = groupBy[i].encode(valueOf(crimeReport, groupBy[i]));
+      }
+
+      int count = crimeReport.getCountValue();
+      builder.add((count > 0) ? count : 1, rowCodes);
+    }
+
+    return builder.build();
+  }
+
+  private static String valueOf(CrimeReport crimeReport, CrimeField field) {
+    switch(field) {
+      case OFFENSE: return crimeReport.getOffense();
+      case NEIGHBORHOOD: return crimeReport.getNeighborhood();
+      case DISTRICT: return crimeReport.getDistrict();
+      case BEAT: return crimeReport.getBeat();
+      case UCR: return crimeReport.getUcr();
+      default: return null;
+    }
+  }
+
+  /**
+   * Marks a previously retrieved summary as standing in for a current answer.
+   * The rows are shared, not copied.
+   *
+   * @param asOf Instant the summary was retrieved
+   * @return the marked summary
+   */
+  public CrimeReportSummary withAsOf(Instant asOf) {
+    return new CrimeReportSummary(this, asOf);
+  }
+
+  /**
+   * @return when a stand-in summary was retrieved, null for a current answer
+   */
+  public Instant getAsOf() {
+    return asOf;
+  }
+
+  /**
+   * @return the total number of incidents across all rows
+   */
+  public int getTotal() {
+    return total;
+  }
+
+  /**
+   * @return the number of rows (groups)
+   */
+  public int size() {
+    return counts.length;
+  }
+
+  public boolean isEmpty() {
+    return counts.length == 0;
+  }
+
+  /**
+   * @return a copy of the fields rows are grouped on
+   */
+  public CrimeField[] getGroupBy() {
+    return groupBy.clone();
+  }
+
+  public boolean isGroupedBy(CrimeField field) {
+    return column(field) >= 0;
+  }
+
+  /**
+   * @param row int row index
+   * @return the number of incidents in the row
+   */
+  public int getCount(int row) {
+    return counts[row];
+  }
+
+  /**
+   * @param field CrimeField a field the summary is grouped on
+   * @param row int row index
+   * @return the dictionary code of the field in the row
+   */
+  public int getCode(CrimeField field, int row) {
+    return codes[requireColumn(field)][row];
+  }
+
+  /**
+   * @param field CrimeField a field the summary is grouped on
+   * @param row int row index
+   * @return the decoded value of the field in the row
+   */
+  public String getValue(CrimeField field, int row) {
+    return field.decode(getCode(field, row));
+  }
+
+  /**
+   * Sums the counts of every row where the field has the given value.
+   *
+   * @param field CrimeField a field the summary is grouped on
+   * @param value String raw value
+   * @return the number of incidents, 0 if the value never occurs
+   */
+  public int getCount(CrimeField field, String value) {
+    int[] column = codes[requireColumn(field)];
+    int code = field.getDictionary().find(value);
+    int sum = 0;
+
+    for(int row = 0; row < column.length; row++) {
+      if(column[row] == code) {
+        sum += counts[row];
+      }
+    }
+
+    return sum;
+  }
+
+  /**
+   * Collapses the summary onto a single field, adding up rows that share a value.
+   *
+   * @param field CrimeField a field the summary is grouped on
+   * @return map of decoded value to count, in first-seen order of the rows
+   */
+  public Map<String, Integer> getCounts(CrimeField field) {
+    int[] column = codes[requireColumn(field)];
+    Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+
+    for(int row = 0; row < column.length; row++) {
+      String value = field.decode(column[row]);
+      Integer previous = result.get(value);
+      result.put(value, (previous != null) ? previous + counts[row] : counts[row]);
+    }
+
+    return result;
+  }
+
+  private int column(CrimeField field) {
+    for(int i = 0; i < groupBy.length; i++) {
+      if(groupBy[i] == field) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  private int requireColumn(CrimeField field) {
+    int column = column(field);
+
+    if(column < 0) {
+      throw new IllegalArgumentException("Summary is not grouped by " + field);
+    }
+
+    return column;
+  }
+
+  @Override
+  public String toString() {
+    return "CrimeReportSummary{groupBy=" + Arrays.toString(groupBy) + ", rows=" + counts.length + ", total=" + total
+            + ((asOf != null) ? ", asOf=" + asOf : "") + "}";
+  }
+
+  /**
+   * Accumulates rows for a {@link CrimeReportSummary}.  Rows with the same codes
+   * are added together and rows keep the order in which they were first seen.
+   * Builders are not thread-safe.
+   */
+  public static final class Builder {
+    private final CrimeField[] groupBy;
+    private final Map<RowKey, Integer> rowIndexes = new HashMap<RowKey, Integer>();
+    private int[][] codes;
+    private int[] counts;
+    private int size;
+
+    /**
+     * @param groupBy the fields rows are grouped on, in column order
+     */
+    public Builder(CrimeField... groupBy) {
+      if(groupBy.length == 0) {
+        throw new IllegalArgumentException("At least one group by field is required");
+      }
+
+      this.groupBy = groupBy.clone();
+      this.codes = new int[groupBy.length][16];
+      this.counts = new int[16];
+    }
+
+    /**
+     * @param count int number of incidents
+     * @param rowCodes dictionary codes, one per group by field
+     * @return this builder
+     */
+    public Builder add(int count, int... rowCodes) {
+      if(rowCodes.length != groupBy.length) {
+        throw new IllegalArgumentException("Expected " + groupBy.length + " codes, got " + rowCodes.length);
+      }
+
+      RowKey key = new RowKey(rowCodes);
+      Integer row = rowIndexes.get(key);
+
+      if(row != null) {
+        counts[row] += count;
+        return this;
+      }
+
+      if(size == counts.length) {
+        counts = Arrays.copyOf(counts, size * 2);
+        for(int i = 0; i < codes.length; i++) {
+          codes[i] = Arrays.copyOf(codes[i], size * 2);
+        }
+      }
+
+      for(int i = 0; i < codes.length; i++) {
+        codes[i][size] = rowCodes[i];
+      }
+      counts[size] = count;
+      rowIndexes.put(key, size);
+      size++;
+
+      return this;
+    }
+
+    /**
+     * Adds every row of another summary grouped on the same fields.
+     *
+     * @param summary CrimeReportSummary to merge in
+     * @return this builder
+     */
+    public Builder addAll(CrimeReportSummary summary) {
+      if(! Arrays.equals(groupBy, summary.groupBy)) {
+        throw new IllegalArgumentException("Mismatched group by fields: " + summary);
+      }
+
+      int[] rowCodes = new int[groupBy.length];
+
+      for(int row = 0; row < summary.size(); row++) {
+        for(int i = 0; i < rowCodes.length; i++) {
+          rowCodes[i] = summary.codes[i][row];
+        }
+        add(summary.counts[row], rowCodes);
+      }
+
+      return this;
+    }
+
+    public CrimeReportSummary build() {
+      int[][] builtCodes = new int[codes.length][];
+
+      for(int i = 0; i < codes.length; i++) {
+        builtCodes[i] = Arrays.copyOf(codes[i], size);
+      }
+
+      return new CrimeReportSummary(groupBy, builtCodes, Arrays.copyOf(counts, size));
+    }
+  }
+
+  /**
+   * Hash key for a row's codes.
+   */
+  private static final class RowKey {
+    private final int[] codes;
+    private final int hash;
+
+    private RowKey(int[] codes) {
+      this.codes = codes.clone();
+      this.hash = Arrays.hashCode(this.codes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return (o instanceof RowKey) && Arrays.equals(codes, ((RowKey) o).codes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.codeamatic.socrata;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable point in time by which an answer is needed, measured on the monotonic
+ * {@link System#nanoTime()} clock.
+ *
+ * A deadline is created once per request and handed down through every layer, so
+ * each layer sees the time actually left rather than a fixed timeout of its own.
+ */
+public final class Deadline {
+
+  private final long expiresAtNanos;
+
+  private Deadline(long expiresAtNanos) {
+    this.expiresAtNanos = expiresAtNanos;
+  }
+
+  /**
+   * @param budget long time allowed from now
+   * @param unit TimeUnit of the budget
+   * @return the deadline
+   */
+  public static Deadline after(long budget, TimeUnit unit) {
+    return new Deadline(System.nanoTime() + unit.toNanos(budget));
+  }
+
+  /**
+   * @return the milliseconds left, 0 once the deadline has passed
+   */
+  public long remainingMillis() {
+    return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+  }
+
+  public boolean isExpired() {
+    return expiresAtNanos - System.nanoTime() <= 0;
+  }
+
+  @Override
+  public String toString() {
+    return "Deadline{remaining=" + remainingMillis() + "ms}";
+  }
+}
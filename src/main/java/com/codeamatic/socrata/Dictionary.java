@@ -0,0 +1,87 @@
+package com.codeamatic.socrata;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only, thread-safe dictionary that interns string values to small,
+ * dense integer codes starting at zero.
+ *
+ * Codes are never reassigned, so they can be stored in primitive arrays and
+ * compared directly instead of comparing strings.
+ */
+public final class Dictionary {
+
+  private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<String, Integer>();
+
+  // Written under "this", read without locking
+  private volatile String[] values = new String[16];
+
+  /**
+   * Returns the code for a value, assigning the next free code if the value is new.
+   *
+   * @param value String non-null value
+   * @return the value's code
+   */
+  public int encode(String value) {
+    Integer code = codes.get(value);
+
+    return (code != null) ? code : add(value);
+  }
+
+  /**
+   * Returns the code for a value without assigning one.
+   *
+   * @param value String value
+   * @return the value's code or -1 if it has never been encoded
+   */
+  public int find(String value) {
+    Integer code = (value != null) ? codes.get(value) : null;
+
+    return (code != null) ? code : -1;
+  }
+
+  /**
+   * @param code int a code returned by {@link #encode(String)}
+   * @return the value for the code
+   * @throws IllegalArgumentException if the code was never assigned
+   */
+  public String decode(int code) {
+    String[] current = values;
+    String value = (code >= 0 && code < current.length) ? current[code] : null;
+
+    if(value == null) {
+      throw new IllegalArgumentException("Unknown code: " + code);
+    }
+
+    return value;
+  }
+
+  /**
+   * @return the number of codes assigned so far
+   */
+  public int size() {
+    return codes.size();
+  }
+
+  private synchronized int add(String value) {
+    Integer existing = codes.get(value);
+
+    if(existing != null) {
+      return existing;
+    }
+
+    int code = codes.size();
+    String[] current = values;
+
+    if(code == current.length) {
+      current = Arrays.copyOf(current, current.length * 2);
+    }
+
+    current[code] = value;
+    values = current;
+    codes.put(value, code);
+
+    return code;
+  }
+}
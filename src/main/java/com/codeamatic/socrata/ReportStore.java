@@ -0,0 +1,33 @@
+package com.codeamatic.socrata;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Persistent store of precomputed daily offense summaries, keyed by day and
+ * neighborhood.
+ *
+ * Neighborhoods are keyed in the normalized form used by the query caches: trimmed
+ * and lower cased, with null standing for the whole city.  Implementations must be
+ * thread-safe.
+ */
+public interface ReportStore {
+
+  /**
+   * @param day LocalDate the day reported on
+   * @param neighborhood String normalized neighborhood, null for the whole city
+   * @return the precomputed summary or null if the day or neighborhood wasn't precomputed
+   * @throws IOException if the store can't be read
+   */
+  CrimeReportSummary get(LocalDate day, String neighborhood) throws IOException;
+
+  /**
+   * Stores every summary for a day at once, replacing whatever was stored for it.
+   *
+   * @param day LocalDate the day reported on
+   * @param summaries Map of normalized neighborhood (null for the whole city) to summary
+   * @throws IOException if the store can't be written
+   */
+  void putDay(LocalDate day, Map<String, CrimeReportSummary> summaries) throws IOException;
+}
@@ -21,4 +21,29 @@ public interface Socrata {
    * @return a list of crime reports
    */
   List<CrimeReport> getCrimeReports(String neighborhood, String[] dates);
+
+  /**
+   * Retrieves the offense to count aggregate for the given neighborhood and
+   * date range without materializing individual {@link CrimeReport} objects.
+   *
+   * @return an offense summary, empty if nothing could be retrieved
+   */
+  CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates);
+
+  /**
+   * Retrieves the offense summary like {@link #getCrimeReportSummary(String, String[])},
+   * but gives up once the deadline passes and reports failures instead of answering
+   * with an empty summary.  Implementations that don't do any I/O may simply ignore
+   * the deadline, which is what the default does.
+   *
+   * The result may be an older answer standing in for one that couldn't be had in
+   * time, in which case {@link CrimeReportSummary#getAsOf()} says when it was retrieved.
+   *
+   * @param deadline Deadline by which the answer is needed
+   * @return an offense summary
+   * @throws SocrataException if no answer could be had before the deadline
+   */
+  default CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates, Deadline deadline) {
+    return getCrimeReportSummary(neighborhood, dates);
+  }
 }
@@ -0,0 +1,16 @@
+package com.codeamatic.socrata;
+
+/**
+ * Thrown by the {@link Deadline} aware {@link Socrata} methods when no answer could
+ * be had in time: the upstream failed, the deadline passed or calls to the upstream
+ * are suspended.
+ */
+public class SocrataException extends RuntimeException {
+  public SocrataException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public SocrataException(String message) {
+    super(message);
+  }
+}
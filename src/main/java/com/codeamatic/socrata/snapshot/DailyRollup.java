@@ -0,0 +1,183 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+
+import java.time.LocalDate;
+
+/**
+ * Immutable pre-aggregated index of incident counts per neighborhood, offense and day.
+ *
+ * Every (neighborhood, offense) cell that has at least one incident holds an array of
+ * cumulative daily counts, where {@code prefix[d]} is the number of incidents on the
+ * days before day {@code d}.  The count for any inclusive day range is then
+ * {@code prefix[end + 1] - prefix[start]}: two array reads per cell no matter how long
+ * the range is.  Citywide cells per offense are kept as well, so whole-city queries
+ * don't have to add up every neighborhood.
+ *
+ * Memory grows with (non-empty cells) x (days covered) x 4 bytes.
+ */
+public final class DailyRollup {
+
+  public static final DailyRollup EMPTY = new DailyRollup(0, 0, 0, 0, new int[0][], new int[0][]);
+
+  private final int firstDay;
+  private final int days;
+  private final int neighborhoodCount;
+  private final int offenseCount;
+  private final int[][] cells;
+  private final int[][] cityCells;
+
+  private DailyRollup(int firstDay, int days, int neighborhoodCount, int offenseCount,
+                      int[][] cells, int[][] cityCells) {
+    this.firstDay = firstDay;
+    this.days = days;
+    this.neighborhoodCount = neighborhoodCount;
+    this.offenseCount = offenseCount;
+    this.cells = cells;
+    this.cityCells = cityCells;
+  }
+
+  /**
+   * Builds a rollup covering every day from the first to the last incident.
+   *
+   * @param incidents Incidents sorted by occurrence
+   * @return the rollup
+   */
+  public static DailyRollup build(Incidents incidents) {
+    return EMPTY.update(incidents, Integer.MIN_VALUE);
+  }
+
+  /**
+   * Returns a rollup that reuses this one's cumulative counts for the days before
+   * {@code fromDay} and recounts everything from that day on.  After a sync, pass
+   * the earliest day touched by the new incidents.
+   *
+   * @param incidents Incidents the whole rollup is based on, sorted by occurrence
+   * @param fromDay int first epoch day that may have changed
+   * @return the updated rollup
+   */
+  public DailyRollup update(Incidents incidents, int fromDay) {
+    int size = incidents.size();
+
+    if(size == 0) {
+      return EMPTY;
+    }
+
+    int newFirstDay = EpochMinutes.toEpochDay(incidents.getOccurredOn(0));
+    int newDays = EpochMinutes.toEpochDay(incidents.getOccurredOn(size - 1)) - newFirstDay + 1;
+    int newNeighborhoodCount = CrimeField.NEIGHBORHOOD.getDictionary().size();
+    int newOffenseCount = CrimeField.OFFENSE.getDictionary().size();
+
+    // Days before "keep" are copied, everything from "keep" on is recounted
+    int keep = (days == 0 || newFirstDay != firstDay) ? 0 : clamp(fromDay - firstDay, 0, Math.min(days, newDays));
+
+    int[][] newCells = new int[newNeighborhoodCount * newOffenseCount][];
+    int[][] newCityCells = new int[newOffenseCount][];
+
+    if(keep > 0) {
+      for(int neighborhood = 0; neighborhood < neighborhoodCount; neighborhood++) {
+        for(int offense = 0; offense < offenseCount; offense++) {
+          int[] cell = cells[neighborhood * offenseCount + offense];
+          if(cell != null) {
+            newCells[neighborhood * newOffenseCount + offense] = copyPrefix(cell, keep, newDays);
+          }
+        }
+      }
+      for(int offense = 0; offense < offenseCount; offense++) {
+        if(cityCells[offense] != null) {
+          newCityCells[offense] = copyPrefix(cityCells[offense], keep, newDays);
+        }
+      }
+    }
+
+    // Daily counts go into prefix[day + 1], then are accumulated from "keep" on
+    int startMinute = EpochMinutes.of(LocalDate.ofEpochDay(newFirstDay + keep));
+    for(int row = incidents.lowerBound(startMinute); row < size; row++) {
+      int day = EpochMinutes.toEpochDay(incidents.getOccurredOn(row)) - newFirstDay;
+      int neighborhood = incidents.getCode(CrimeField.NEIGHBORHOOD, row);
+      int offense = incidents.getCode(CrimeField.OFFENSE, row);
+      int cell = neighborhood * newOffenseCount + offense;
+
+      if(newCells[cell] == null) {
+        newCells[cell] = new int[newDays + 1];
+      }
+      if(newCityCells[offense] == null) {
+        newCityCells[offense] = new int[newDays + 1];
+      }
+
+      newCells[cell][day + 1]++;
+      newCityCells[offense][day + 1]++;
+    }
+
+    accumulate(newCells, keep);
+    accumulate(newCityCells, keep);
+
+    return new DailyRollup(newFirstDay, newDays, newNeighborhoodCount, newOffenseCount, newCells, newCityCells);
+  }
+
+  private static int[] copyPrefix(int[] cell, int keep, int newDays) {
+    int[] copy = new int[newDays + 1];
+    // Entries past "keep" are recounted as daily counts on top of this base
+    System.arraycopy(cell, 0, copy, 0, keep + 1);
+
+    return copy;
+  }
+
+  private static void accumulate(int[][] cells, int keep) {
+    for(int[] cell : cells) {
+      if(cell == null) {
+        continue;
+      }
+      for(int d = keep + 1; d < cell.length; d++) {
+        cell[d] += cell[d - 1];
+      }
+    }
+  }
+
+  private static int clamp(int value, int min, int max) {
+    return Math.max(min, Math.min(max, value));
+  }
+
+  /**
+   * @return the first epoch day covered
+   */
+  public int getFirstDay() {
+    return firstDay;
+  }
+
+  /**
+   * @return the number of days covered
+   */
+  public int getDays() {
+    return days;
+  }
+
+  /**
+   * Counts incidents per offense in an inclusive day range.  Days outside the
+   * rollup's coverage contribute nothing.
+   *
+   * @param neighborhood int neighborhood code, -1 for the whole city
+   * @param startDay int first epoch day
+   * @param endDay int last epoch day
+   * @return counts indexed by offense code
+   */
+  public int[] countByOffense(int neighborhood, int startDay, int endDay) {
+    int[] counts = new int[offenseCount];
+    int from = clamp(startDay - firstDay, 0, days);
+    int to = clamp(endDay - firstDay + 1, 0, days);
+
+    if(from >= to || neighborhood >= neighborhoodCount) {
+      return counts;
+    }
+
+    for(int offense = 0; offense < offenseCount; offense++) {
+      int[] cell = (neighborhood < 0) ? cityCells[offense] : cells[neighborhood * offenseCount + offense];
+
+      if(cell != null) {
+        counts[offense] = cell[to] - cell[from];
+      }
+    }
+
+    return counts;
+  }
+}
@@ -0,0 +1,49 @@
+package com.codeamatic.socrata.snapshot;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Converts Socrata's floating (zone-less, Cincinnati local) timestamps to and from
+ * int minutes since 1970-01-01T00:00 local time.  Ints cover dates well past 5000.
+ */
+public final class EpochMinutes {
+
+  private static final int SECONDS_PER_MINUTE = 60;
+  private static final int MINUTES_PER_DAY = 24 * 60;
+
+  private EpochMinutes() {}
+
+  /**
+   * @param timestamp String Socrata timestamp, e.g. 2017-03-01T10:15:00.000
+   * @return minutes since the epoch
+   */
+  public static int parse(String timestamp) {
+    return of(LocalDateTime.parse(timestamp));
+  }
+
+  public static int of(LocalDateTime dateTime) {
+    return (int) (dateTime.toEpochSecond(ZoneOffset.UTC) / SECONDS_PER_MINUTE);
+  }
+
+  /**
+   * @param date LocalDate a day
+   * @return the minute the day starts at
+   */
+  public static int of(LocalDate date) {
+    return (int) (date.toEpochDay() * MINUTES_PER_DAY);
+  }
+
+  public static LocalDateTime toLocalDateTime(int minutes) {
+    return LocalDateTime.ofEpochSecond((long) minutes * SECONDS_PER_MINUTE, 0, ZoneOffset.UTC);
+  }
+
+  /**
+   * @param minutes int minutes since the epoch
+   * @return the day the minute falls on, as days since the epoch
+   */
+  public static int toEpochDay(int minutes) {
+    return Math.floorDiv(minutes, MINUTES_PER_DAY);
+  }
+}
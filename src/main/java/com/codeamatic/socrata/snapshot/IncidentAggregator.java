@@ -0,0 +1,221 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReportSummary;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts incidents in a time range grouped on any combination of {@link CrimeField}s,
+ * in parallel on a {@link ForkJoinPool}.
+ *
+ * Each group is a cell of a dense int array, addressed by combining the group's
+ * dictionary codes with the dictionary sizes as strides.  The rows of the range
+ * (found by binary search, see {@link Incidents#lowerBound(int)}) are split in halves
+ * until a chunk is small enough to count on its own; each chunk counts into an array
+ * of its own and the arrays are added together as the halves are joined.  Ranges of
+ * a single chunk are counted in the calling thread.
+ *
+ * Instances are immutable and thread-safe.
+ */
+public final class IncidentAggregator {
+
+  public static final int DEFAULT_CHUNK_ROWS = 1 << 15;
+
+  /**
+   * Largest number of cells a grouping may have, 4 MB of counts per chunk.
+   */
+  static final int MAX_CELLS = 1 << 20;
+
+  private final ForkJoinPool pool;
+  private final int chunkRows;
+
+  /**
+   * Runs on the common pool, which has one thread fewer than there are processors.
+   */
+  public IncidentAggregator() {
+    this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_ROWS);
+  }
+
+  /**
+   * @param pool ForkJoinPool chunks are counted on
+   * @param chunkRows int number of rows at or below which a chunk isn't split further
+   */
+  public IncidentAggregator(ForkJoinPool pool, int chunkRows) {
+    if(chunkRows < 1) {
+      throw new IllegalArgumentException("chunkRows must be positive: " + chunkRows);
+    }
+
+    this.pool = pool;
+    this.chunkRows = chunkRows;
+  }
+
+  /**
+   * Counts incidents within a time range.
+   *
+   * @param incidents Incidents to scan
+   * @param neighborhood int neighborhood code, -1 for every neighborhood or -2 for none
+   * @param fromMinute int inclusive start of the range
+   * @param toMinute int exclusive end of the range
+   * @param groupBy the fields to group on
+   * @return summary ordered by ascending count, like the live API
+   * @throws IllegalArgumentException if the fields have more than {@link #MAX_CELLS} combinations
+   */
+  public CrimeReportSummary aggregate(Incidents incidents, int neighborhood, int fromMinute, int toMinute,
+                                      CrimeField... groupBy) {
+    Grouping grouping = new Grouping(groupBy);
+
+    if(neighborhood < -1) {
+      return new CrimeReportSummary.Builder(groupBy).build();
+    }
+
+    int start = incidents.lowerBound(fromMinute);
+    int end = Math.max(start, incidents.lowerBound(toMinute));
+    CountTask task = new CountTask(incidents, neighborhood, grouping, start, end);
+
+    return grouping.toSummary((end - start <= chunkRows) ? task.compute() : pool.invoke(task));
+  }
+
+  /**
+   * Turns counts indexed by offense code into a summary ordered by ascending count.
+   *
+   * @param counts int[] counts indexed by offense code
+   * @return summary grouped by offense
+   */
+  static CrimeReportSummary toOffenseSummary(int[] counts) {
+    return new Grouping(new int[] {counts.length}, CrimeField.OFFENSE).toSummary(counts);
+  }
+
+  /**
+   * Counts one chunk of rows, splitting it first if it's too large.
+   */
+  private final class CountTask extends RecursiveTask<int[]> {
+    private final Incidents incidents;
+    private final int neighborhood;
+    private final Grouping grouping;
+    private final int start;
+    private final int end;
+
+    private CountTask(Incidents incidents, int neighborhood, Grouping grouping, int start, int end) {
+      this.incidents = incidents;
+      this.neighborhood = neighborhood;
+      this.grouping = grouping;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected int[] compute() {
+      if(end - start <= chunkRows) {
+        return countRows();
+      }
+
+      int mid = (start + end) >>> 1;
+      CountTask left = new CountTask(incidents, neighborhood, grouping, start, mid);
+      left.fork();
+
+      int[] counts = new CountTask(incidents, neighborhood, grouping, mid, end).compute();
+      int[] leftCounts = left.join();
+      for(int cell = 0; cell < counts.length; cell++) {
+        counts[cell] += leftCounts[cell];
+      }
+
+      return counts;
+    }
+
+    private int[] countRows() {
+      CrimeField[] fields = grouping.fields;
+      int[] strides = grouping.strides;
+      int[] counts = new int[grouping.cells];
+
+      for(int row = start; row < end; row++) {
+        if(neighborhood != -1 && incidents.getCode(CrimeField.NEIGHBORHOOD, row) != neighborhood) {
+          continue;
+        }
+
+        int cell = 0;
+        for(int i = 0; i < fields.length; i++) {
+          cell += incidents.getCode(fields[i], row) * strides[i];
+        }
+        counts[cell]++;
+      }
+
+      return counts;
+    }
+  }
+
+  /**
+   * Maps combinations of group by codes to cells.  Dictionary sizes are taken when
+   * the query starts; every code in the incidents was assigned before that.
+   */
+  private static final class Grouping {
+    private final CrimeField[] fields;
+    private final int[] radixes;
+    private final int[] strides;
+    private final int cells;
+
+    private Grouping(CrimeField... fields) {
+      this(dictionarySizes(fields), fields);
+    }
+
+    private Grouping(int[] radixes, CrimeField... fields) {
+      if(fields.length == 0) {
+        throw new IllegalArgumentException("At least one group by field is required");
+      }
+
+      long product = 1;
+      this.fields = fields.clone();
+      this.radixes = radixes;
+      this.strides = new int[fields.length];
+
+      // Last field varies fastest
+      for(int i = fields.length - 1; i >= 0; i--) {
+        strides[i] = (int) product;
+        product *= Math.max(radixes[i], 1);
+        if(product > MAX_CELLS) {
+          throw new IllegalArgumentException("Too many groups for " + Arrays.toString(fields));
+        }
+      }
+
+      this.cells = (int) product;
+    }
+
+    private static int[] dictionarySizes(CrimeField[] fields) {
+      int[] sizes = new int[fields.length];
+
+      for(int i = 0; i < fields.length; i++) {
+        sizes[i] = fields[i].getDictionary().size();
+      }
+
+      return sizes;
+    }
+
+    private CrimeReportSummary toSummary(int[] counts) {
+      // Sort (count, cell) pairs packed into longs
+      long[] order = new long[counts.length];
+      int rows = 0;
+
+      for(int cell = 0; cell < counts.length; cell++) {
+        if(counts[cell] > 0) {
+          order[rows++] = ((long) counts[cell] << 32) | cell;
+        }
+      }
+      Arrays.sort(order, 0, rows);
+
+      CrimeReportSummary.Builder builder = new CrimeReportSummary.Builder(fields);
+      int[] rowCodes = new int[fields.length];
+
+      for(int i = 0; i < rows; i++) {
+        int cell = (int) order[i];
+        for(int f = 0; f < fields.length; f++) {
+          rowCodes[f] = (cell / strides[f]) % Math.max(radixes[f], 1);
+        }
+        builder.add((int) (order[i] >>> 32), rowCodes);
+      }
+
+      return builder.build();
+    }
+  }
+}
@@ -0,0 +1,272 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable, heap resident, columnar table of incidents sorted by occurrence time.
+ *
+ * Every column is a primitive array; the only objects per row are the incident
+ * keys (case report number and offense number) needed to deduplicate syncs.
+ */
+public final class IncidentTable implements Incidents {
+
+  public static final IncidentTable EMPTY = new Builder().build();
+
+  private static final int FIELD_COUNT = CrimeField.values().length;
+
+  private final int[] occurredOn;
+  private final int[] reportedOn;
+  private final int[][] codes;
+  private final String[] incidentKeys;
+
+  private IncidentTable(int[] occurredOn, int[] reportedOn, int[][] codes, String[] incidentKeys) {
+    this.occurredOn = occurredOn;
+    this.reportedOn = reportedOn;
+    this.codes = codes;
+    this.incidentKeys = incidentKeys;
+  }
+
+  /**
+   * Wraps columns that are already sorted by occurrence time without copying them.
+   */
+  static IncidentTable fromSortedColumns(int[] occurredOn, int[] reportedOn, int[][] codes, String[] incidentKeys) {
+    return new IncidentTable(occurredOn, reportedOn, codes, incidentKeys);
+  }
+
+  /**
+   * Builds the key incidents are deduplicated on.  Incidents missing either number
+   * can't be told apart from each other, so they get no key and are never deduplicated.
+   *
+   * @param caseReportNo String case report number
+   * @param offenseNo String offense number within the case
+   * @return the incident key or null if either number is missing
+   */
+  public static String incidentKey(String caseReportNo, String offenseNo) {
+    if(caseReportNo == null || offenseNo == null) {
+      return null;
+    }
+
+    return caseReportNo + "/" + offenseNo;
+  }
+
+  @Override
+  public int size() {
+    return occurredOn.length;
+  }
+
+  @Override
+  public int getOccurredOn(int row) {
+    return occurredOn[row];
+  }
+
+  @Override
+  public int getReportedOn(int row) {
+    return reportedOn[row];
+  }
+
+  @Override
+  public int getCode(CrimeField field, int row) {
+    return codes[field.ordinal()][row];
+  }
+
+  /**
+   * @param row int row index
+   * @return the case report number / offense number key of the incident, null if it has none
+   */
+  public String getIncidentKey(int row) {
+    return incidentKeys[row];
+  }
+
+  @Override
+  public int lowerBound(int minute) {
+    int low = 0;
+    int high = occurredOn.length;
+
+    while(low < high) {
+      int mid = (low + high) >>> 1;
+
+      if(occurredOn[mid] < minute) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    return low;
+  }
+
+  /**
+   * Merges newly fetched incidents into an existing table.  An incident in the
+   * delta replaces any incident in the base with the same key, and repeats within
+   * the delta are dropped.  Incidents without a key are always kept.  Both tables
+   * are already sorted so the merge is a single linear pass.
+   *
+   * @param base IncidentTable existing incidents
+   * @param delta IncidentTable new or updated incidents
+   * @return the merged table
+   */
+  public static IncidentTable merge(IncidentTable base, IncidentTable delta) {
+    Set<String> replaced = new HashSet<String>(Arrays.asList(delta.incidentKeys));
+    Set<String> merged = new HashSet<String>();
+    replaced.remove(null);
+    Builder builder = new Builder();
+    int b = 0;
+    int d = 0;
+
+    while(b < base.size() || d < delta.size()) {
+      if(b < base.size() && replaced.contains(base.incidentKeys[b])) {
+        b++;
+      } else if(d >= delta.size() || (b < base.size() && base.occurredOn[b] <= delta.occurredOn[d])) {
+        builder.add(base, b++);
+      } else {
+        if(delta.incidentKeys[d] == null || merged.add(delta.incidentKeys[d])) {
+          builder.add(delta, d);
+        }
+        d++;
+      }
+    }
+
+    return builder.buildSorted();
+  }
+
+  /**
+   * @return the latest reported on minute, or {@link Integer#MIN_VALUE} if the table is empty
+   */
+  public int getMaxReportedOn() {
+    int max = Integer.MIN_VALUE;
+
+    for(int minute : reportedOn) {
+      max = Math.max(max, minute);
+    }
+
+    return max;
+  }
+
+  /**
+   * Accumulates incidents in any order; {@link #build()} sorts them by occurrence.
+   * Builders are not thread-safe.
+   */
+  public static final class Builder {
+    private int[] occurredOn = new int[1024];
+    private int[] reportedOn = new int[1024];
+    private int[][] codes = new int[FIELD_COUNT][1024];
+    private String[] incidentKeys = new String[1024];
+    private int size;
+
+    /**
+     * @param incidentKey String see {@link IncidentTable#incidentKey(String, String)}, may be null
+     * @param occurred int minute the incident occurred
+     * @param reported int minute the incident was reported
+     * @param fieldCodes dictionary codes indexed by {@link CrimeField#ordinal()}
+     * @return this builder
+     */
+    public Builder add(String incidentKey, int occurred, int reported, int[] fieldCodes) {
+      if(fieldCodes.length != FIELD_COUNT) {
+        throw new IllegalArgumentException("Expected " + FIELD_COUNT + " codes, got " + fieldCodes.length);
+      }
+
+      ensureCapacity(size + 1);
+
+      occurredOn[size] = occurred;
+      reportedOn[size] = reported;
+      incidentKeys[size] = incidentKey;
+      for(int i = 0; i < FIELD_COUNT; i++) {
+        codes[i][size] = fieldCodes[i];
+      }
+      size++;
+
+      return this;
+    }
+
+    /**
+     * Copies one row of an existing table.
+     *
+     * @param table IncidentTable the source table
+     * @param row int row index in the source table
+     * @return this builder
+     */
+    public Builder add(IncidentTable table, int row) {
+      ensureCapacity(size + 1);
+
+      occurredOn[size] = table.occurredOn[row];
+      reportedOn[size] = table.reportedOn[row];
+      incidentKeys[size] = table.incidentKeys[row];
+      for(int i = 0; i < FIELD_COUNT; i++) {
+        codes[i][size] = table.codes[i][row];
+      }
+      size++;
+
+      return this;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if(capacity <= occurredOn.length) {
+        return;
+      }
+
+      int newLength = Math.max(capacity, occurredOn.length * 2);
+      occurredOn = Arrays.copyOf(occurredOn, newLength);
+      reportedOn = Arrays.copyOf(reportedOn, newLength);
+      incidentKeys = Arrays.copyOf(incidentKeys, newLength);
+      for(int i = 0; i < FIELD_COUNT; i++) {
+        codes[i] = Arrays.copyOf(codes[i], newLength);
+      }
+    }
+
+    /**
+     * @return a table of the rows exactly as added, which must already be sorted
+     */
+    IncidentTable buildSorted() {
+      return new IncidentTable(Arrays.copyOf(occurredOn, size), Arrays.copyOf(reportedOn, size),
+              trimmedCodes(), Arrays.copyOf(incidentKeys, size));
+    }
+
+    private int[][] trimmedCodes() {
+      int[][] trimmed = new int[FIELD_COUNT][];
+
+      for(int i = 0; i < FIELD_COUNT; i++) {
+        trimmed[i] = Arrays.copyOf(codes[i], size);
+      }
+
+      return trimmed;
+    }
+
+    /**
+     * @return a table sorted by occurrence time; ties keep their insertion order
+     */
+    public IncidentTable build() {
+      // Sort (minute, index) pairs packed into longs, then permute every column
+      long[] order = new long[size];
+      for(int row = 0; row < size; row++) {
+        order[row] = ((long) occurredOn[row] << 32) | row;
+      }
+      Arrays.sort(order);
+
+      int[] sortedOccurred = new int[size];
+      int[] sortedReported = new int[size];
+      int[][] sortedCodes = new int[FIELD_COUNT][size];
+      String[] sortedKeys = new String[size];
+
+      for(int i = 0; i < size; i++) {
+        int row = (int) order[i];
+
+        sortedOccurred[i] = occurredOn[row];
+        sortedReported[i] = reportedOn[row];
+        sortedKeys[i] = incidentKeys[row];
+        for(int f = 0; f < FIELD_COUNT; f++) {
+          sortedCodes[f][i] = codes[f][row];
+        }
+      }
+
+      return new IncidentTable(sortedOccurred, sortedReported, sortedCodes, sortedKeys);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+
+/**
+ * Read access to a local, time sorted collection of individual incidents.
+ *
+ * Categorical values are {@link CrimeField} dictionary codes and times are
+ * {@link EpochMinutes}.  Rows are sorted by the time the incident occurred.
+ */
+public interface Incidents {
+
+  /**
+   * @return the number of incidents
+   */
+  int size();
+
+  /**
+   * @param row int row index
+   * @return the minute the incident occurred
+   */
+  int getOccurredOn(int row);
+
+  /**
+   * @param row int row index
+   * @return the minute the incident was reported
+   */
+  int getReportedOn(int row);
+
+  /**
+   * @param field CrimeField the field
+   * @param row int row index
+   * @return the field's dictionary code for the incident
+   */
+  int getCode(CrimeField field, int row);
+
+  /**
+   * @param minute int minutes since the epoch
+   * @return the index of the first incident that occurred at or after the minute
+   */
+  int lowerBound(int minute);
+}
@@ -0,0 +1,256 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Immutable, off heap incident history read straight from a memory mapped file.
+ *
+ * The file holds a header, then one fixed width record per incident sorted by
+ * occurrence time, then the string table of every {@link CrimeField} dictionary:
+ *
+ * <pre>
+ *   header   magic, version, row count, record width, dictionary offset
+ *   record   occurred on | reported on | offense | neighborhood | district &lt;&lt; 16 + beat | ucr
+ * </pre>
+ *
+ * Every record field is an int, so row {@code r} starts at a fixed offset and the
+ * occurrence time leading each record is the column range scans binary search on.
+ * Nothing but the small string table is read when the file is opened; rows stay in
+ * the page cache, not the heap, which lets years of history fit a small Lambda.  The
+ * file's codes are translated to this JVM's dictionary codes through one int array
+ * per field.
+ *
+ * The mapping is released when the instance is garbage collected.
+ */
+public final class MappedIncidents implements Incidents {
+
+  private static final int MAGIC = 0x43494E43;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 24;
+
+  private static final int OCCURRED_ON = 0;
+  private static final int REPORTED_ON = 4;
+  private static final int OFFENSE = 8;
+  private static final int NEIGHBORHOOD = 12;
+  private static final int DISTRICT_BEAT = 16;
+  private static final int UCR = 20;
+  private static final int RECORD_BYTES = 24;
+
+  // District and beat codes share an int
+  private static final int MAX_PACKED_CODE = 0xFFFF;
+  // Values are stored with an unsigned short byte length; 3 bytes per char at most
+  private static final int MAX_VALUE_CHARS = 0xFFFF / 3;
+
+  private final ByteBuffer buffer;
+  private final int size;
+  private final int[][] remap;
+
+  private MappedIncidents(ByteBuffer buffer, int size, int[][] remap) {
+    this.buffer = buffer;
+    this.size = size;
+    this.remap = remap;
+  }
+
+  /**
+   * Maps a file written by {@link #write(Incidents, Path)}.
+   *
+   * @param path Path of the file
+   * @return the incidents
+   * @throws IOException if the file can't be mapped or isn't an incident history
+   */
+  public static MappedIncidents open(Path path) throws IOException {
+    MappedByteBuffer buffer;
+
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if(channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Incident history too large to map: " + channel.size() + " bytes");
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if(buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not an incident history");
+    }
+    int version = buffer.getInt(4);
+    if(version != VERSION || buffer.getInt(12) != RECORD_BYTES) {
+      throw new IOException("Unsupported incident history version: " + version);
+    }
+
+    int size = buffer.getInt(8);
+    int dictionaryOffset = buffer.getInt(16);
+    if(size < 0 || dictionaryOffset != HEADER_BYTES + (long) size * RECORD_BYTES || dictionaryOffset > buffer.capacity()) {
+      throw new IOException("Truncated incident history");
+    }
+
+    return new MappedIncidents(buffer, size, readDictionaries(buffer, dictionaryOffset));
+  }
+
+  /**
+   * Encodes the file's string table into this JVM's dictionaries.
+   *
+   * @return per field, JVM codes indexed by file code
+   */
+  private static int[][] readDictionaries(ByteBuffer buffer, int offset) throws IOException {
+    ByteBuffer in = buffer.duplicate();
+    CrimeField[] fields = CrimeField.values();
+    int[][] remap = new int[fields.length][];
+
+    try {
+      in.position(offset);
+      for(CrimeField field : fields) {
+        remap[field.ordinal()] = new int[in.getInt()];
+        for(int code = 0; code < remap[field.ordinal()].length; code++) {
+          byte[] value = new byte[in.getShort() & 0xFFFF];
+          in.get(value);
+          remap[field.ordinal()][code] = field.encode(new String(value, StandardCharsets.UTF_8));
+        }
+      }
+    } catch(RuntimeException ex) {
+      // Buffer underflow or a bad position
+      throw new IOException("Truncated incident history", ex);
+    }
+
+    return remap;
+  }
+
+  /**
+   * Writes incidents to a temporary file and atomically moves it into place.  A file
+   * that is mapped stays valid, since the old file lives on until it is unmapped.
+   *
+   * @param incidents Incidents sorted by occurrence
+   * @param path Path of the file
+   * @throws IOException if the file can't be written
+   * @throws IllegalArgumentException if there are too many incidents, districts or beats
+   */
+  public static void write(Incidents incidents, Path path) throws IOException {
+    Path directory = path.toAbsolutePath().getParent();
+    Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
+    try {
+      try(OutputStream out = Files.newOutputStream(temp)) {
+        write(incidents, out);
+      }
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  public static void write(Incidents incidents, OutputStream outputStream) throws IOException {
+    int size = incidents.size();
+    long dictionaryOffset = HEADER_BYTES + (long) size * RECORD_BYTES;
+
+    if(dictionaryOffset > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many incidents to map: " + size);
+    }
+    if(CrimeField.DISTRICT.getDictionary().size() > MAX_PACKED_CODE + 1
+            || CrimeField.BEAT.getDictionary().size() > MAX_PACKED_CODE + 1) {
+      throw new IllegalArgumentException("Too many districts or beats to pack");
+    }
+    for(CrimeField field : CrimeField.values()) {
+      for(int code = 0; code < field.getDictionary().size(); code++) {
+        if(field.decode(code).length() > MAX_VALUE_CHARS) {
+          throw new IllegalArgumentException(field + " value too long: " + field.decode(code));
+        }
+      }
+    }
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(size);
+    out.writeInt(RECORD_BYTES);
+    out.writeInt((int) dictionaryOffset);
+    out.writeInt(0);
+
+    for(int row = 0; row < size; row++) {
+      out.writeInt(incidents.getOccurredOn(row));
+      out.writeInt(incidents.getReportedOn(row));
+      out.writeInt(incidents.getCode(CrimeField.OFFENSE, row));
+      out.writeInt(incidents.getCode(CrimeField.NEIGHBORHOOD, row));
+      out.writeInt((incidents.getCode(CrimeField.DISTRICT, row) << 16) | incidents.getCode(CrimeField.BEAT, row));
+      out.writeInt(incidents.getCode(CrimeField.UCR, row));
+    }
+
+    // Snapshot of each dictionary; codes added after this point can't be in the records
+    for(CrimeField field : CrimeField.values()) {
+      int dictionarySize = field.getDictionary().size();
+      out.writeInt(dictionarySize);
+      for(int code = 0; code < dictionarySize; code++) {
+        byte[] value = field.decode(code).getBytes(StandardCharsets.UTF_8);
+        out.writeShort(value.length);
+        out.write(value);
+      }
+    }
+
+    out.flush();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int getOccurredOn(int row) {
+    return buffer.getInt(offset(row) + OCCURRED_ON);
+  }
+
+  @Override
+  public int getReportedOn(int row) {
+    return buffer.getInt(offset(row) + REPORTED_ON);
+  }
+
+  @Override
+  public int getCode(CrimeField field, int row) {
+    int offset = offset(row);
+    int code;
+
+    switch(field) {
+      case OFFENSE: code = buffer.getInt(offset + OFFENSE); break;
+      case NEIGHBORHOOD: code = buffer.getInt(offset + NEIGHBORHOOD); break;
+      case DISTRICT: code = buffer.getInt(offset + DISTRICT_BEAT) >>> 16; break;
+      case BEAT: code = buffer.getInt(offset + DISTRICT_BEAT) & MAX_PACKED_CODE; break;
+      case UCR: code = buffer.getInt(offset + UCR); break;
+      default: throw new IllegalArgumentException("Unknown field " + field);
+    }
+
+    return remap[field.ordinal()][code];
+  }
+
+  @Override
+  public int lowerBound(int minute) {
+    int low = 0;
+    int high = size;
+
+    while(low < high) {
+      int mid = (low + high) >>> 1;
+
+      if(buffer.getInt(offset(mid) + OCCURRED_ON) < minute) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    return low;
+  }
+
+  private static int offset(int row) {
+    return HEADER_BYTES + row * RECORD_BYTES;
+  }
+}
@@ -0,0 +1,76 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.support.QueryKey;
+
+import java.time.Clock;
+import java.util.List;
+
+/**
+ * {@link Socrata} implementation that answers crime report queries from a
+ * {@link DailyRollup}, in constant time per offense regardless of the range length.
+ *
+ * The rollup is immutable and swapped atomically by {@link #refresh(Incidents, int)},
+ * so the implementation is thread-safe.
+ */
+public class RollupSocrata implements Socrata {
+
+  private final Clock clock;
+  private volatile DailyRollup rollup;
+
+  public RollupSocrata(Incidents incidents) {
+    this(DailyRollup.build(incidents), Clock.systemDefaultZone());
+  }
+
+  public RollupSocrata(DailyRollup rollup, Clock clock) {
+    this.rollup = rollup;
+    this.clock = clock;
+  }
+
+  /**
+   * Incrementally rebuilds the rollup after new incidents arrived.
+   *
+   * @param incidents Incidents the rollup is based on
+   * @param fromDay int earliest epoch day touched by the new incidents
+   */
+  public synchronized void refresh(Incidents incidents, int fromDay) {
+    rollup = rollup.update(incidents, fromDay);
+  }
+
+  public DailyRollup getRollup() {
+    return rollup;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports() {
+    return this.getCrimeReports(null, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+    return SnapshotSocrata.toCrimeReports(getCrimeReportSummary(neighborhood, dates));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+    QueryKey key = QueryKey.of(neighborhood, dates, clock);
+    int neighborhoodCode = SnapshotSocrata.neighborhoodCode(key);
+
+    if(neighborhoodCode < -1) {
+      return CrimeReportSummary.EMPTY;
+    }
+
+    int[] counts = rollup.countByOffense(neighborhoodCode,
+            (int) key.getStart().toEpochDay(), (int) key.getEnd().toEpochDay());
+
+    return SnapshotSocrata.toSummary(counts);
+  }
+}
@@ -0,0 +1,187 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Reads and writes {@link IncidentTable} snapshots.
+ *
+ * The file holds the string table of every {@link CrimeField} dictionary followed
+ * by one column after another: occurrence minutes delta encoded against the previous
+ * row, reported minutes delta encoded against occurrence, dictionary codes, and
+ * finally the incident keys.  Integers are written as variable length quantities so
+ * that sorted times and small codes mostly take one or two bytes.
+ */
+public final class SnapshotFile {
+
+  private static final int MAGIC = 0x43534E50;
+  private static final int VERSION = 1;
+  // Real keys always contain a separator, so the empty string can't be one
+  private static final String NO_KEY = "";
+
+  private SnapshotFile() {}
+
+  /**
+   * Writes a snapshot to a temporary file and atomically moves it into place, so
+   * readers never observe a partially written snapshot.
+   *
+   * @param table IncidentTable to write
+   * @param path Path of the snapshot
+   * @throws IOException if the snapshot can't be written
+   */
+  public static void write(IncidentTable table, Path path) throws IOException {
+    Path directory = path.toAbsolutePath().getParent();
+    Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
+    try {
+      try(OutputStream out = Files.newOutputStream(temp)) {
+        write(table, out);
+      }
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  public static void write(IncidentTable table, OutputStream outputStream) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+    int size = table.size();
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+
+    for(CrimeField field : CrimeField.values()) {
+      int dictionarySize = field.getDictionary().size();
+      writeVarInt(out, dictionarySize);
+      for(int code = 0; code < dictionarySize; code++) {
+        out.writeUTF(field.decode(code));
+      }
+    }
+
+    writeVarInt(out, size);
+
+    int previous = 0;
+    for(int row = 0; row < size; row++) {
+      writeVarInt(out, zigZag(table.getOccurredOn(row) - previous));
+      previous = table.getOccurredOn(row);
+    }
+    for(int row = 0; row < size; row++) {
+      writeVarInt(out, zigZag(table.getReportedOn(row) - table.getOccurredOn(row)));
+    }
+    for(CrimeField field : CrimeField.values()) {
+      for(int row = 0; row < size; row++) {
+        writeVarInt(out, table.getCode(field, row));
+      }
+    }
+    for(int row = 0; row < size; row++) {
+      String incidentKey = table.getIncidentKey(row);
+      out.writeUTF((incidentKey != null) ? incidentKey : NO_KEY);
+    }
+
+    out.flush();
+  }
+
+  /**
+   * Reads a snapshot, re-encoding its values into this JVM's dictionaries.
+   *
+   * @param path Path of the snapshot
+   * @return the table
+   * @throws IOException if the file can't be read or isn't a snapshot
+   */
+  public static IncidentTable read(Path path) throws IOException {
+    try(InputStream in = Files.newInputStream(path)) {
+      return read(in);
+    }
+  }
+
+  public static IncidentTable read(InputStream inputStream) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream, 1 << 16));
+    CrimeField[] fields = CrimeField.values();
+
+    if(in.readInt() != MAGIC) {
+      throw new IOException("Not an incident snapshot");
+    }
+    int version = in.readInt();
+    if(version != VERSION) {
+      throw new IOException("Unsupported snapshot version: " + version);
+    }
+
+    int[][] remap = new int[fields.length][];
+    for(CrimeField field : fields) {
+      int dictionarySize = readVarInt(in);
+      remap[field.ordinal()] = new int[dictionarySize];
+      for(int code = 0; code < dictionarySize; code++) {
+        remap[field.ordinal()][code] = field.encode(in.readUTF());
+      }
+    }
+
+    int size = readVarInt(in);
+    int[] occurredOn = new int[size];
+    int[] reportedOn = new int[size];
+    int[][] codes = new int[fields.length][size];
+
+    int previous = 0;
+    for(int row = 0; row < size; row++) {
+      occurredOn[row] = previous + unZigZag(readVarInt(in));
+      previous = occurredOn[row];
+    }
+    for(int row = 0; row < size; row++) {
+      reportedOn[row] = occurredOn[row] + unZigZag(readVarInt(in));
+    }
+    for(CrimeField field : fields) {
+      int[] fieldRemap = remap[field.ordinal()];
+      for(int row = 0; row < size; row++) {
+        codes[field.ordinal()][row] = fieldRemap[readVarInt(in)];
+      }
+    }
+
+    String[] incidentKeys = new String[size];
+    for(int row = 0; row < size; row++) {
+      String incidentKey = in.readUTF();
+      incidentKeys[row] = NO_KEY.equals(incidentKey) ? null : incidentKey;
+    }
+
+    // Rows were written in order, so they don't need sorting again
+    return IncidentTable.fromSortedColumns(occurredOn, reportedOn, codes, incidentKeys);
+  }
+
+  private static int zigZag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  private static int unZigZag(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    while((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0;
+
+    for(int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if((b & 0x80) == 0) {
+        return value;
+      }
+    }
+
+    throw new IOException("Malformed variable length integer");
+  }
+}
@@ -0,0 +1,72 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.support.SocrataClient;
+import com.codeamatic.socrata.support.UrlConnectionTransport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line tool that pages the whole Cincinnati crime dataset out of Socrata
+ * into a local snapshot file.
+ *
+ * Usage: {@code SnapshotIngest <snapshot file>}, with {@code SOCRATA_CINCY_CRIME_API}
+ * and optionally {@code SOCRATA_CINCY_TOKEN} set in the environment.
+ */
+public final class SnapshotIngest {
+  private static final Logger log = LoggerFactory.getLogger(SnapshotIngest.class);
+
+  public static final int DEFAULT_PAGE_SIZE = 50000;
+
+  private final SocrataClient socrataClient;
+  private final int pageSize;
+
+  public SnapshotIngest(SocrataClient socrataClient, int pageSize) {
+    this.socrataClient = socrataClient;
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Pages every incident reported since a given time into a table builder.
+   *
+   * @param reportedSince String earliest reported on timestamp or null for the whole dataset
+   * @param builder IncidentTable.Builder the incidents are added to
+   * @return the number of rows read
+   * @throws IOException if a page can't be retrieved
+   */
+  public int ingest(String reportedSince, IncidentTable.Builder builder) throws IOException {
+    int offset = 0;
+    int read;
+
+    do {
+      read = socrataClient.fetchIncidents(reportedSince, offset, pageSize, builder);
+      offset += read;
+      log.info("Ingested {} rows", offset);
+    } while(read == pageSize);
+
+    return offset;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if(args.length != 1) {
+      System.err.println("Usage: SnapshotIngest <snapshot file>");
+      System.exit(1);
+    }
+
+    Path path = Paths.get(args[0]);
+    // Large pages take far longer than a speech request, so allow a generous read timeout
+    SocrataClient socrataClient = new SocrataClient(System.getenv("SOCRATA_CINCY_TOKEN"),
+            System.getenv("SOCRATA_CINCY_CRIME_API"), new UrlConnectionTransport(5000, 120000));
+
+    IncidentTable.Builder builder = new IncidentTable.Builder();
+    new SnapshotIngest(socrataClient, DEFAULT_PAGE_SIZE).ingest(null, builder);
+
+    IncidentTable table = builder.build();
+    SnapshotFile.write(table, path);
+    log.info("Wrote {} incidents to {}", table.size(), path);
+  }
+}
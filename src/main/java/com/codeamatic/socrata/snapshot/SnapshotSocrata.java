@@ -0,0 +1,176 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.support.QueryKey;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link Socrata} implementation that answers crime report queries from a local
+ * snapshot of incidents instead of the live API.
+ *
+ * Queries binary search the time sorted table for the range and count it with an
+ * {@link IncidentAggregator}, in parallel for long ranges, grouped by offense or,
+ * through {@link #getGroupedSummary(String, String[], CrimeField...)}, any other
+ * fields.  The table is immutable, so the implementation is thread-safe;
+ * {@link #setIncidents(Incidents)} swaps in a refreshed table atomically.
+ */
+public class SnapshotSocrata implements Socrata {
+
+  private final IncidentAggregator aggregator;
+  private final Clock clock;
+  private volatile Incidents incidents;
+
+  public SnapshotSocrata(Incidents incidents) {
+    this(incidents, Clock.systemDefaultZone());
+  }
+
+  public SnapshotSocrata(Incidents incidents, Clock clock) {
+    this(incidents, new IncidentAggregator(), clock);
+  }
+
+  /**
+   * @param incidents Incidents to answer queries from
+   * @param aggregator IncidentAggregator that counts them
+   * @param clock Clock used to resolve relative dates
+   */
+  public SnapshotSocrata(Incidents incidents, IncidentAggregator aggregator, Clock clock) {
+    this.incidents = incidents;
+    this.aggregator = aggregator;
+    this.clock = clock;
+  }
+
+  /**
+   * @param path Path of a snapshot written by {@link SnapshotFile}
+   * @return an implementation answering from the snapshot
+   * @throws IOException if the snapshot can't be read
+   */
+  public static SnapshotSocrata open(Path path) throws IOException {
+    return new SnapshotSocrata(SnapshotFile.read(path));
+  }
+
+  /**
+   * @param incidents Incidents to answer queries from
+   */
+  public void setIncidents(Incidents incidents) {
+    this.incidents = incidents;
+  }
+
+  public Incidents getIncidents() {
+    return incidents;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports() {
+    return this.getCrimeReports(null, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Mirrors the live client, which returns one report per offense carrying its count.
+   */
+  public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+    return toCrimeReports(getCrimeReportSummary(neighborhood, dates));
+  }
+
+  /**
+   * @param summary CrimeReportSummary
+   * @return one report per row carrying its group by values and count
+   */
+  static List<CrimeReport> toCrimeReports(CrimeReportSummary summary) {
+    List<CrimeReport> crimeReports = new ArrayList<CrimeReport>(summary.size());
+    CrimeField[] groupBy = summary.getGroupBy();
+
+    for(int row = 0; row < summary.size(); row++) {
+      CrimeReport crimeReport = new CrimeReport();
+      for(CrimeField field : groupBy) {
+        setValue(crimeReport, field, summary.getValue(field, row));
+      }
+      crimeReport.setCountValue(summary.getCount(row));
+      crimeReports.add(crimeReport);
+    }
+
+    return crimeReports;
+  }
+
+  private static void setValue(CrimeReport crimeReport, CrimeField field, String value) {
+    switch(field) {
+      case OFFENSE: crimeReport.setOffense(value); break;
+      case NEIGHBORHOOD: crimeReport.setNeighborhood(value); break;
+      case DISTRICT: crimeReport.setDistrict(value); break;
+      case BEAT: crimeReport.setBeat(value); break;
+      case UCR: crimeReport.setUcr(value); break;
+      default: break;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+    return getGroupedSummary(neighborhood, dates, CrimeField.OFFENSE);
+  }
+
+  /**
+   * Like {@link #getCrimeReportSummary(String, String[])}, grouped on any fields.
+   *
+   * @param neighborhood String neighborhood, "all" or null
+   * @param dates Array of two dates (YYYY-MM-DD)
+   * @param groupBy the fields to group on
+   * @return summary ordered by ascending count
+   */
+  public CrimeReportSummary getGroupedSummary(String neighborhood, String[] dates, CrimeField... groupBy) {
+    QueryKey key = QueryKey.of(neighborhood, dates, clock);
+
+    return aggregator.aggregate(incidents, neighborhoodCode(key), EpochMinutes.of(key.getStart()),
+            EpochMinutes.of(key.getEnd().plusDays(1)), groupBy);
+  }
+
+  /**
+   * Like {@link #getCrimeReports(String, String[])}, grouped on any fields: one report
+   * per group carrying the group's values and count.
+   *
+   * @param neighborhood String neighborhood, "all" or null
+   * @param dates Array of two dates (YYYY-MM-DD)
+   * @param groupBy the fields to group on
+   * @return the reports, ordered by ascending count
+   */
+  public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates, CrimeField... groupBy) {
+    return toCrimeReports(getGroupedSummary(neighborhood, dates, groupBy));
+  }
+
+  /**
+   * @param key QueryKey the query
+   * @return the neighborhood's code, -1 for the whole city or -2 if the neighborhood has never been seen
+   */
+  static int neighborhoodCode(QueryKey key) {
+    if(key.getNeighborhood() == null) {
+      return -1;
+    }
+
+    int code = CrimeField.NEIGHBORHOOD.getDictionary().find(key.getNeighborhood().toUpperCase(Locale.US));
+
+    return (code >= 0) ? code : -2;
+  }
+
+  /**
+   * Turns per offense code counts into a summary ordered by ascending count.
+   *
+   * @param counts int[] counts indexed by offense code
+   * @return summary grouped by offense
+   */
+  static CrimeReportSummary toSummary(int[] counts) {
+    return IncidentAggregator.toOffenseSummary(counts);
+  }
+}
@@ -0,0 +1,122 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.support.SocrataClient;
+import com.codeamatic.socrata.support.UrlConnectionTransport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Incrementally refreshes a snapshot with only the incidents reported since the
+ * last sync.
+ *
+ * The high-water mark is the latest {@code reportedon} seen so far and lives in a
+ * small file next to the snapshot.  Each sync fetches incidents reported at or
+ * after the mark (the overlap is removed by deduplicating on case report number and
+ * offense number), merges them into the snapshot and then records the new mark.
+ * Both files are replaced atomically and the snapshot is written first, so a crash
+ * between the two only causes some rows to be fetched again.
+ *
+ * Usage: {@code SnapshotSync <snapshot file> [<mapped history file>]}, meant to run
+ * on its own schedule.  The optional second file is rewritten for {@link MappedIncidents}.
+ */
+public final class SnapshotSync {
+  private static final Logger log = LoggerFactory.getLogger(SnapshotSync.class);
+
+  private static final String WATERMARK_SUFFIX = ".watermark";
+
+  private final SnapshotIngest ingest;
+  private final Path snapshotPath;
+  private final Path watermarkPath;
+
+  public SnapshotSync(SnapshotIngest ingest, Path snapshotPath) {
+    this.ingest = ingest;
+    this.snapshotPath = snapshotPath;
+    this.watermarkPath = Paths.get(snapshotPath.toString() + WATERMARK_SUFFIX);
+  }
+
+  /**
+   * Fetches new incidents, merges them into the snapshot and advances the watermark.
+   * A missing snapshot is treated as empty, which turns the first sync into a full ingest.
+   *
+   * @return the merged table now stored in the snapshot
+   * @throws IOException if the upstream or the local files can't be accessed
+   */
+  public IncidentTable sync() throws IOException {
+    IncidentTable base = Files.exists(snapshotPath) ? SnapshotFile.read(snapshotPath) : IncidentTable.EMPTY;
+    Integer watermark = readWatermark();
+
+    if(watermark == null && base.size() > 0) {
+      watermark = base.getMaxReportedOn();
+    }
+
+    String reportedSince = (watermark != null) ? EpochMinutes.toLocalDateTime(watermark) + ":00.000" : null;
+
+    IncidentTable.Builder builder = new IncidentTable.Builder();
+    int fetched = ingest.ingest(reportedSince, builder);
+    IncidentTable delta = builder.build();
+    IncidentTable merged = IncidentTable.merge(base, delta);
+
+    SnapshotFile.write(merged, snapshotPath);
+
+    if(merged.size() > 0) {
+      int newWatermark = merged.getMaxReportedOn();
+      writeWatermark((watermark != null) ? Math.max(watermark, newWatermark) : newWatermark);
+    }
+
+    log.info("Synced {} rows, snapshot now holds {} incidents", fetched, merged.size());
+
+    return merged;
+  }
+
+  /**
+   * @return the persisted watermark in epoch minutes or null if there isn't one
+   * @throws IOException if the watermark file can't be read
+   */
+  public Integer readWatermark() throws IOException {
+    if(! Files.exists(watermarkPath)) {
+      return null;
+    }
+
+    String value = new String(Files.readAllBytes(watermarkPath), StandardCharsets.UTF_8).trim();
+
+    return value.isEmpty() ? null : EpochMinutes.parse(value);
+  }
+
+  private void writeWatermark(int watermark) throws IOException {
+    Path directory = watermarkPath.toAbsolutePath().getParent();
+    Path temp = Files.createTempFile(directory, watermarkPath.getFileName().toString(), ".tmp");
+    byte[] bytes = EpochMinutes.toLocalDateTime(watermark).toString().getBytes(StandardCharsets.UTF_8);
+
+    try {
+      Files.write(temp, bytes);
+      Files.move(temp, watermarkPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if(args.length < 1 || args.length > 2) {
+      System.err.println("Usage: SnapshotSync <snapshot file> [<mapped history file>]");
+      System.exit(1);
+    }
+
+    SocrataClient socrataClient = new SocrataClient(System.getenv("SOCRATA_CINCY_TOKEN"),
+            System.getenv("SOCRATA_CINCY_CRIME_API"), new UrlConnectionTransport(5000, 120000));
+
+    IncidentTable merged =
+            new SnapshotSync(new SnapshotIngest(socrataClient, SnapshotIngest.DEFAULT_PAGE_SIZE), Paths.get(args[0])).sync();
+
+    if(args.length == 2) {
+      MappedIncidents.write(merged, Paths.get(args[1]));
+    }
+  }
+}
@@ -0,0 +1,252 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.DateStringUtil;
+import com.codeamatic.metrics.Metrics;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.SocrataException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process result cache in front of another {@link Socrata} implementation.
+ *
+ * Results are kept in a size bounded LRU map keyed on {@link QueryKey}.  Ranges
+ * that end before today are considered final and never expire; ranges touching
+ * today (or empty results, which may hide an upstream failure) expire after a
+ * short TTL.  A single instance is meant to be held statically so that it lives
+ * across warm Lambda invocations.
+ *
+ * Expired results stay in the map until they are evicted or replaced, so that when
+ * a {@link Deadline} bound query can't be answered in time the last known result
+ * can stand in for it, marked with the time it was retrieved.
+ */
+public class CachingSocrata implements Socrata {
+  public static final int DEFAULT_MAX_ENTRIES = 512;
+  public static final long DEFAULT_OPEN_RANGE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private final Socrata delegate;
+  private final int maxEntries;
+  private final long openRangeTtlMillis;
+  private final Clock clock;
+
+  private static final LongAdder cacheHits = Metrics.counter(Metrics.CACHE_HITS);
+  private static final LongAdder cacheMisses = Metrics.counter(Metrics.CACHE_MISSES);
+  private static final LongAdder staleAnswers = Metrics.counter(Metrics.STALE_ANSWERS);
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  // Guarded by "this"
+  private final Map<QueryKey, CacheEntry<List<CrimeReport>>> crimeReports;
+  private final Map<QueryKey, CacheEntry<CrimeReportSummary>> summaries;
+
+  public CachingSocrata(Socrata delegate) {
+    this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_OPEN_RANGE_TTL_MILLIS, Clock.system(DateStringUtil.ZONE));
+  }
+
+  /**
+   * @param delegate Socrata implementation that loads missing results
+   * @param maxEntries int maximum number of results kept per result type
+   * @param openRangeTtlMillis long lifetime of results for ranges touching today
+   * @param clock Clock used for expiry and to resolve relative dates
+   */
+  public CachingSocrata(Socrata delegate, int maxEntries, long openRangeTtlMillis, Clock clock) {
+    if(maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+    }
+
+    this.delegate = delegate;
+    this.maxEntries = maxEntries;
+    this.openRangeTtlMillis = openRangeTtlMillis;
+    this.clock = clock;
+    this.crimeReports = newLruMap();
+    this.summaries = newLruMap();
+  }
+
+  private <V> Map<QueryKey, CacheEntry<V>> newLruMap() {
+    return new LinkedHashMap<QueryKey, CacheEntry<V>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<QueryKey, CacheEntry<V>> eldest) {
+        if(size() > maxEntries) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports() {
+    return this.getCrimeReports(null, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+    QueryKey key = QueryKey.of(neighborhood, dates, clock);
+    List<CrimeReport> result = lookup(crimeReports, key);
+
+    if(result == null) {
+      result = Collections.unmodifiableList(delegate.getCrimeReports(neighborhood, dates));
+      store(crimeReports, key, result, result.isEmpty());
+    }
+
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+    QueryKey key = QueryKey.of(neighborhood, dates, clock);
+    CrimeReportSummary result = lookup(summaries, key);
+
+    if(result == null) {
+      result = delegate.getCrimeReportSummary(neighborhood, dates);
+      store(summaries, key, result, result.isEmpty());
+    }
+
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Falls back to an expired result for the same query if the delegate fails.
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates, Deadline deadline) {
+    QueryKey key = QueryKey.of(neighborhood, dates, clock);
+    CrimeReportSummary result = lookup(summaries, key);
+
+    if(result != null) {
+      return result;
+    }
+
+    try {
+      result = delegate.getCrimeReportSummary(neighborhood, dates, deadline);
+    } catch(SocrataException ex) {
+      CrimeReportSummary stale = lookupStale(summaries, key);
+
+      if(stale == null) {
+        throw ex;
+      }
+
+      staleAnswers.increment();
+      return stale;
+    }
+
+    // A stand-in from a layer below isn't worth keeping; ask again next time
+    if(result.getAsOf() == null) {
+      store(summaries, key, result, result.isEmpty());
+    }
+    return result;
+  }
+
+  /**
+   * Returns a live cached value and records a hit or miss.
+   *
+   * @param map the cache to look in
+   * @param key QueryKey the query
+   * @return cached value or null if absent or expired
+   */
+  private synchronized <V> V lookup(Map<QueryKey, CacheEntry<V>> map, QueryKey key) {
+    CacheEntry<V> entry = map.get(key);
+
+    if(entry != null) {
+      if(entry.expiresAt > clock.millis()) {
+        hits.incrementAndGet();
+        cacheHits.increment();
+        return entry.value;
+      }
+    }
+
+    misses.incrementAndGet();
+    cacheMisses.increment();
+    return null;
+  }
+
+  /**
+   * @return the cached summary for the query, expired or not, marked with the time
+   *         it was retrieved; null if there is none
+   */
+  private synchronized CrimeReportSummary lookupStale(Map<QueryKey, CacheEntry<CrimeReportSummary>> map, QueryKey key) {
+    CacheEntry<CrimeReportSummary> entry = map.get(key);
+
+    return (entry != null) ? entry.value.withAsOf(Instant.ofEpochMilli(entry.fetchedAt)) : null;
+  }
+
+  private synchronized <V> void store(Map<QueryKey, CacheEntry<V>> map, QueryKey key, V value, boolean empty) {
+    map.put(key, new CacheEntry<V>(value, clock.millis(), expiresAt(key, empty)));
+  }
+
+  /**
+   * Determines when a freshly loaded result should expire.
+   *
+   * @param key QueryKey the query
+   * @param empty boolean whether the result was empty
+   * @return expiry time in milliseconds
+   */
+  private long expiresAt(QueryKey key, boolean empty) {
+    if(key.isClosedBefore(LocalDate.now(clock)) && ! empty) {
+      return Long.MAX_VALUE;
+    }
+
+    return clock.millis() + openRangeTtlMillis;
+  }
+
+  /**
+   * Removes every cached result.
+   */
+  public synchronized void clear() {
+    crimeReports.clear();
+    summaries.clear();
+  }
+
+  public synchronized int size() {
+    return crimeReports.size() + summaries.size();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /**
+   * A cached result along with the times it was retrieved and expires.
+   */
+  private static final class CacheEntry<V> {
+    private final V value;
+    private final long fetchedAt;
+    private final long expiresAt;
+
+    private CacheEntry(V value, long fetchedAt, long expiresAt) {
+      this.value = value;
+      this.fetchedAt = fetchedAt;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
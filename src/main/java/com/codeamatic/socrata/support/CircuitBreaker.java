@@ -0,0 +1,102 @@
+package com.codeamatic.socrata.support;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consecutive failure circuit breaker for calls to one upstream.
+ *
+ * The circuit opens after a number of failures in a row and then rejects calls
+ * outright for a cool down period, so a failing upstream costs callers nothing
+ * instead of their whole time budget.  After the cool down a single trial call is
+ * let through: its success closes the circuit, its failure opens it again.
+ */
+public class CircuitBreaker {
+  public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  public static final long DEFAULT_OPEN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  public enum State { CLOSED, OPEN, HALF_OPEN }
+
+  private final int failureThreshold;
+  private final long openMillis;
+  private final Clock clock;
+
+  // Guarded by "this"
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAt;
+  private boolean trialInFlight;
+
+  public CircuitBreaker() {
+    this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS, Clock.systemUTC());
+  }
+
+  /**
+   * @param failureThreshold int failures in a row that open the circuit
+   * @param openMillis long time calls are rejected before a trial call is allowed
+   * @param clock Clock used for the cool down
+   */
+  public CircuitBreaker(int failureThreshold, long openMillis, Clock clock) {
+    if(failureThreshold < 1) {
+      throw new IllegalArgumentException("failureThreshold must be positive: " + failureThreshold);
+    }
+
+    this.failureThreshold = failureThreshold;
+    this.openMillis = openMillis;
+    this.clock = clock;
+  }
+
+  /**
+   * Asks to make a call.  Every allowed call must be followed by one of
+   * {@link #recordSuccess()}, {@link #recordFailure()} or {@link #releaseRequest()}.
+   *
+   * @return true if the call may go ahead
+   */
+  public synchronized boolean allowRequest() {
+    switch(state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if(clock.millis() - openedAt < openMillis) {
+          return false;
+        }
+        state = State.HALF_OPEN;
+        trialInFlight = true;
+        return true;
+      default:
+        if(trialInFlight) {
+          return false;
+        }
+        trialInFlight = true;
+        return true;
+    }
+  }
+
+  public synchronized void recordSuccess() {
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+    trialInFlight = false;
+  }
+
+  public synchronized void recordFailure() {
+    consecutiveFailures++;
+    trialInFlight = false;
+
+    if(state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      state = State.OPEN;
+      openedAt = clock.millis();
+    }
+  }
+
+  /**
+   * Ends an allowed call that says nothing about the upstream, e.g. one its caller
+   * gave up on.  Nothing is counted; a trial call is simply made available again.
+   */
+  public synchronized void releaseRequest() {
+    trialInFlight = false;
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+}
@@ -0,0 +1,188 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.DateStringUtil;
+import com.codeamatic.metrics.Metrics;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.SocrataException;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-flight wrapper that lets concurrent identical queries share one upstream call.
+ *
+ * The first caller for a {@link QueryKey} performs the request; callers arriving
+ * while it is in flight wait for and receive the same result, or the same failure.
+ * Nothing is kept once the call completes, so this complements rather than replaces
+ * {@link CachingSocrata}, which should sit in front of it.
+ */
+public class CoalescingSocrata implements Socrata {
+
+  private static final LongAdder coalesced = Metrics.counter(Metrics.COALESCED_CALLS);
+
+  private final Socrata delegate;
+  private final Clock clock;
+
+  private final ConcurrentMap<QueryKey, CompletableFuture<List<CrimeReport>>> inFlightReports =
+          new ConcurrentHashMap<QueryKey, CompletableFuture<List<CrimeReport>>>();
+  private final ConcurrentMap<QueryKey, CompletableFuture<CrimeReportSummary>> inFlightSummaries =
+          new ConcurrentHashMap<QueryKey, CompletableFuture<CrimeReportSummary>>();
+  // Deadline bound calls fail with SocrataException rather than returning EMPTY, so
+  // they only share requests with each other
+  private final ConcurrentMap<QueryKey, CompletableFuture<CrimeReportSummary>> inFlightDeadlineSummaries =
+          new ConcurrentHashMap<QueryKey, CompletableFuture<CrimeReportSummary>>();
+
+  private final AtomicLong upstreamCalls = new AtomicLong();
+  private final AtomicLong coalescedCalls = new AtomicLong();
+
+  public CoalescingSocrata(Socrata delegate) {
+    this(delegate, Clock.system(DateStringUtil.ZONE));
+  }
+
+  public CoalescingSocrata(Socrata delegate, Clock clock) {
+    this.delegate = delegate;
+    this.clock = clock;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports() {
+    return this.getCrimeReports(null, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports(final String neighborhood, final String[] dates) {
+    return call(inFlightReports, QueryKey.of(neighborhood, dates, clock), new Loader<List<CrimeReport>>() {
+      @Override
+      public List<CrimeReport> load() {
+        return delegate.getCrimeReports(neighborhood, dates);
+      }
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CrimeReportSummary getCrimeReportSummary(final String neighborhood, final String[] dates) {
+    return call(inFlightSummaries, QueryKey.of(neighborhood, dates, clock), new Loader<CrimeReportSummary>() {
+      @Override
+      public CrimeReportSummary load() {
+        return delegate.getCrimeReportSummary(neighborhood, dates);
+      }
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The leader's deadline goes to the delegate; callers sharing its request wait no
+   * longer than their own deadline.  Only other deadline bound calls are shared, since
+   * the two variants report failure differently.
+   */
+  public CrimeReportSummary getCrimeReportSummary(final String neighborhood, final String[] dates,
+                                                  final Deadline deadline) {
+    return call(inFlightDeadlineSummaries, QueryKey.of(neighborhood, dates, clock), new Loader<CrimeReportSummary>() {
+      @Override
+      public CrimeReportSummary load() {
+        return delegate.getCrimeReportSummary(neighborhood, dates, deadline);
+      }
+    }, deadline);
+  }
+
+  private <V> V call(ConcurrentMap<QueryKey, CompletableFuture<V>> inFlight, QueryKey key, Loader<V> loader) {
+    return call(inFlight, key, loader, null);
+  }
+
+  /**
+   * @param deadline Deadline for waiting on another caller's request, null to wait indefinitely
+   */
+  private <V> V call(ConcurrentMap<QueryKey, CompletableFuture<V>> inFlight, QueryKey key, Loader<V> loader,
+                     Deadline deadline) {
+    CompletableFuture<V> future = new CompletableFuture<V>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+
+    if(existing != null) {
+      coalescedCalls.incrementAndGet();
+      coalesced.increment();
+      return (deadline != null) ? await(existing, deadline) : await(existing);
+    }
+
+    upstreamCalls.incrementAndGet();
+    try {
+      V value = loader.load();
+      future.complete(value);
+      return value;
+    } catch(RuntimeException | Error ex) {
+      future.completeExceptionally(ex);
+      throw ex;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  private static <V> V await(CompletableFuture<V> future) {
+    try {
+      return future.join();
+    } catch(CompletionException ex) {
+      Throwable cause = ex.getCause();
+
+      if(cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if(cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw ex;
+    }
+  }
+
+  private static <V> V await(CompletableFuture<V> future, Deadline deadline) {
+    try {
+      return future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+    } catch(TimeoutException ex) {
+      throw new SocrataException("Deadline passed waiting for a shared request", ex);
+    } catch(InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new SocrataException("Interrupted waiting for a shared request", ex);
+    } catch(ExecutionException ex) {
+      // The shared request failed; rethrow its failure as the leader saw it
+      return await(future);
+    }
+  }
+
+  /**
+   * @return the number of calls that went to the delegate
+   */
+  public long getUpstreamCallCount() {
+    return upstreamCalls.get();
+  }
+
+  /**
+   * @return the number of calls that shared another caller's in-flight request
+   */
+  public long getCoalescedCallCount() {
+    return coalescedCalls.get();
+  }
+
+  /**
+   * The upstream request for one query.
+   */
+  private interface Loader<V> {
+    V load();
+  }
+}
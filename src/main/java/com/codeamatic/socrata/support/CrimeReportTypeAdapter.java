@@ -0,0 +1,179 @@
+package com.codeamatic.socrata.support;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import com.codeamatic.socrata.CrimeReport;
+
+import java.io.IOException;
+
+/**
+ * Hand written Gson {@link TypeAdapter} for {@link CrimeReport}.
+ *
+ * Fields are matched with a string switch and set through the model's setters,
+ * so no reflection is involved.  An adapter can be limited to a subset of fields;
+ * everything else is skipped without being decoded.  The count is parsed straight
+ * to an int.
+ */
+public class CrimeReportTypeAdapter extends TypeAdapter<CrimeReport> {
+
+  private static final String[] FIELD_NAMES = {
+          "count", "addressstate", "beat", "block_begin", "block_end", "casereportno", "city",
+          "datatypeid", "district", "neighborhood", "occurredon", "offense", "offenseno", "orc",
+          "reportedbyofficer", "reportedbyofficerbadgeno", "reportedon", "reportingarea", "sname", "ucr"
+  };
+
+  private static final int COUNT = 0;
+
+  private final boolean[] selected = new boolean[FIELD_NAMES.length];
+
+  /**
+   * Creates an adapter that reads every {@link CrimeReport} field.
+   */
+  public CrimeReportTypeAdapter() {
+    for(int i = 0; i < selected.length; i++) {
+      selected[i] = true;
+    }
+  }
+
+  /**
+   * Creates an adapter that only reads the given fields.
+   *
+   * @param fieldNames JSON field names, e.g. "offense" and "count"
+   * @throws IllegalArgumentException if a field name isn't part of the model
+   */
+  public CrimeReportTypeAdapter(String... fieldNames) {
+    for(String fieldName : fieldNames) {
+      int index = fieldIndex(fieldName);
+
+      if(index < 0) {
+        throw new IllegalArgumentException("Unknown crime report field: " + fieldName);
+      }
+
+      selected[index] = true;
+    }
+  }
+
+  @Override
+  public CrimeReport read(JsonReader reader) throws IOException {
+    if(reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+
+    CrimeReport crimeReport = new CrimeReport();
+
+    reader.beginObject();
+    while(reader.hasNext()) {
+      int index = fieldIndex(reader.nextName());
+
+      if(index < 0 || ! selected[index] || reader.peek() == JsonToken.NULL) {
+        reader.skipValue();
+      } else if(index == COUNT) {
+        crimeReport.setCountValue(reader.nextInt());
+      } else {
+        setField(crimeReport, index, reader.nextString());
+      }
+    }
+    reader.endObject();
+
+    return crimeReport;
+  }
+
+  @Override
+  public void write(JsonWriter writer, CrimeReport crimeReport) throws IOException {
+    if(crimeReport == null) {
+      writer.nullValue();
+      return;
+    }
+
+    writer.beginObject();
+    writer.name(FIELD_NAMES[COUNT]).value(crimeReport.getCountValue());
+    for(int i = COUNT + 1; i < FIELD_NAMES.length; i++) {
+      String value = getField(crimeReport, i);
+
+      if(value != null) {
+        writer.name(FIELD_NAMES[i]).value(value);
+      }
+    }
+    writer.endObject();
+  }
+
+  private static int fieldIndex(String name) {
+    switch(name) {
+      case "count": return 0;
+      case "addressstate": return 1;
+      case "beat": return 2;
+      case "block_begin": return 3;
+      case "block_end": return 4;
+      case "casereportno": return 5;
+      case "city": return 6;
+      case "datatypeid": return 7;
+      case "district": return 8;
+      case "neighborhood": return 9;
+      case "occurredon": return 10;
+      case "offense": return 11;
+      case "offenseno": return 12;
+      case "orc": return 13;
+      case "reportedbyofficer": return 14;
+      case "reportedbyofficerbadgeno": return 15;
+      case "reportedon": return 16;
+      case "reportingarea": return 17;
+      case "sname": return 18;
+      case "ucr": return 19;
+      default: return -1;
+    }
+  }
+
+  private static void setField(CrimeReport crimeReport, int index, String value) {
+    switch(index) {
+      case 1: crimeReport.setAddressState(value); break;
+      case 2: crimeReport.setBeat(value); break;
+      case 3: crimeReport.setBlockBegin(value); break;
+      case 4: crimeReport.setBlockEnd(value); break;
+      case 5: crimeReport.setCaseReportNo(value); break;
+      case 6: crimeReport.setCity(value); break;
+      case 7: crimeReport.setDataTypeId(value); break;
+      case 8: crimeReport.setDistrict(value); break;
+      case 9: crimeReport.setNeighborhood(value); break;
+      case 10: crimeReport.setOccurredOn(value); break;
+      case 11: crimeReport.setOffense(value); break;
+      case 12: crimeReport.setOffenseNo(value); break;
+      case 13: crimeReport.setOrc(value); break;
+      case 14: crimeReport.setReportedByOfficer(value); break;
+      case 15: crimeReport.setReportedByOfficeBadgeNo(value); break;
+      case 16: crimeReport.setReportedOn(value); break;
+      case 17: crimeReport.setReportingArea(value); break;
+      case 18: crimeReport.setSname(value); break;
+      case 19: crimeReport.setUcr(value); break;
+      default: break;
+    }
+  }
+
+  private static String getField(CrimeReport crimeReport, int index) {
+    switch(index) {
+      case 1: return crimeReport.getAddressState();
+      case 2: return crimeReport.getBeat();
+      case 3: return crimeReport.getBlockBegin();
+      case 4: return crimeReport.getBlockEnd();
+      case 5: return crimeReport.getCaseReportNo();
+      case 6: return crimeReport.getCity();
+      case 7: return crimeReport.getDataTypeId();
+      case 8: return crimeReport.getDistrict();
+      case 9: return crimeReport.getNeighborhood();
+      case 10: return crimeReport.getOccurredOn();
+      case 11: return crimeReport.getOffense();
+      case 12: return crimeReport.getOffenseNo();
+      case 13: return crimeReport.getOrc();
+      case 14: return crimeReport.getReportedByOfficer();
+      case 15: return crimeReport.getReportedByOfficeBadgeNo();
+      case 16: return crimeReport.getReportedOn();
+      case 17: return crimeReport.getReportingArea();
+      case 18: return crimeReport.getSname();
+      case 19: return crimeReport.getUcr();
+      default: return null;
+    }
+  }
+}
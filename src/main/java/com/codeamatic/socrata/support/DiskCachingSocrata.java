@@ -0,0 +1,513 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.DateStringUtil;
+import com.codeamatic.metrics.Metrics;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.SocrataException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Result cache for summaries kept in a file, in front of another {@link Socrata}
+ * implementation.
+ *
+ * Lambda keeps /tmp for the life of a container, across re-initializations of the
+ * handler, and it holds far more than the heap.  Placed behind {@link CachingSocrata},
+ * this lets a freshly initialized handler answer queries an earlier one has already
+ * made without going to the network.
+ *
+ * The file is a header followed by records that are only ever appended: the payload
+ * length, a CRC32 of the payload, then the payload itself (canonical query, retrieval
+ * and expiry times, and the summary).  A later record for the same query supersedes
+ * earlier ones.  Only the offsets of the latest records are held in memory.  When the
+ * file is opened it is scanned and cut back after the last intact record, so a write
+ * interrupted by the container being frozen or killed loses only that record.  Once
+ * the file outgrows its cap it is rewritten with the most recently used records only.
+ *
+ * Expiry follows {@link CachingSocrata}: ranges that have ended never expire, ranges
+ * touching today expire after a short TTL.  Empty summaries are never written, since
+ * they may stand for an upstream failure.  An I/O error is logged and treated as a
+ * miss; it never fails the query.
+ *
+ * An interrupt closes a {@link FileChannel} for good, and callers such as
+ * {@link ShardedSocrata} interrupt the threads they give up on.  The interrupt status
+ * is therefore cleared for the duration of each file operation and restored after,
+ * and a channel that was closed regardless is reopened by the next operation.
+ */
+public class DiskCachingSocrata implements Socrata {
+  private static final Logger log = LoggerFactory.getLogger(DiskCachingSocrata.class);
+
+  public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("java.io.tmpdir"), "cincy-cache");
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  private static final String FILE_NAME = "summaries.log";
+  private static final int MAGIC = 0x43525343;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 8;
+  private static final int RECORD_HEADER_BYTES = 8;
+
+  private static final LongAdder diskCacheHits = Metrics.counter(Metrics.DISK_CACHE_HITS);
+  private static final LongAdder diskCacheMisses = Metrics.counter(Metrics.DISK_CACHE_MISSES);
+  private static final LongAdder staleAnswers = Metrics.counter(Metrics.STALE_ANSWERS);
+
+  private final Socrata delegate;
+  private final Path path;
+  private final long maxBytes;
+  private final long openRangeTtlMillis;
+  private final Clock clock;
+
+  // Guarded by "this"; in access order, so compaction keeps the most recently used
+  private final Map<String, Slot> index = new LinkedHashMap<String, Slot>(16, 0.75f, true);
+  private FileChannel channel;
+  private boolean closed;
+
+  public DiskCachingSocrata(Socrata delegate, Path directory) throws IOException {
+    this(delegate, directory, DEFAULT_MAX_BYTES, CachingSocrata.DEFAULT_OPEN_RANGE_TTL_MILLIS, Clock.system(DateStringUtil.ZONE));
+  }
+
+  /**
+   * Opens the cache file in the directory, creating both if necessary, and recovers
+   * whatever intact records it holds.
+   *
+   * @param delegate Socrata implementation that loads missing results
+   * @param directory Path the cache file is kept in
+   * @param maxBytes long size the file may grow to before it is compacted
+   * @param openRangeTtlMillis long lifetime of results for ranges touching today
+   * @param clock Clock used for expiry and to resolve relative dates
+   * @throws IOException if the file can't be opened
+   */
+  public DiskCachingSocrata(Socrata delegate, Path directory, long maxBytes, long openRangeTtlMillis, Clock clock)
+          throws IOException {
+    this.delegate = delegate;
+    this.path = directory.resolve(FILE_NAME);
+    this.maxBytes = maxBytes;
+    this.openRangeTtlMillis = openRangeTtlMillis;
+    this.clock = clock;
+
+    Files.createDirectories(directory);
+    synchronized(this) {
+      open();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports() {
+    return delegate.getCrimeReports();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+    return delegate.getCrimeReports(neighborhood, dates);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+    QueryKey key = QueryKey.of(neighborhood, dates, clock);
+    CrimeReportSummary result = lookup(key, false);
+
+    if(result == null) {
+      result = delegate.getCrimeReportSummary(neighborhood, dates);
+      store(key, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Falls back to an expired result for the same query if the delegate fails.
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates, Deadline deadline) {
+    QueryKey key = QueryKey.of(neighborhood, dates, clock);
+    CrimeReportSummary result = lookup(key, false);
+
+    if(result != null) {
+      return result;
+    }
+
+    try {
+      result = delegate.getCrimeReportSummary(neighborhood, dates, deadline);
+    } catch(SocrataException ex) {
+      CrimeReportSummary stale = lookup(key, true);
+
+      if(stale == null) {
+        throw ex;
+      }
+
+      staleAnswers.increment();
+      return stale;
+    }
+
+    store(key, result);
+    return result;
+  }
+
+  /**
+   * @param key QueryKey the query
+   * @param stale boolean whether an expired record will do, in which case it is
+   *              marked with the time it was retrieved
+   * @return the cached summary or null if there is none
+   */
+  private CrimeReportSummary lookup(QueryKey key, boolean stale) {
+    byte[] payload;
+    Slot slot;
+
+    synchronized(this) {
+      slot = index.get(key.toString());
+
+      if(slot == null || (! stale && slot.expiresAt <= clock.millis())) {
+        if(! stale) {
+          diskCacheMisses.increment();
+        }
+        return null;
+      }
+
+      final Slot found = slot;
+      try {
+        payload = withChannel(() -> readPayload(found));
+      } catch(IOException ex) {
+        log.warn("Disk cache read failed for {}", key, ex);
+        payload = null;
+      }
+
+      if(payload == null) {
+        index.remove(key.toString());
+        return null;
+      }
+    }
+
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+      in.readUTF();
+      in.readLong();
+      in.readLong();
+      CrimeReportSummary summary = FileReportStore.readSummary(in);
+
+      if(stale) {
+        return summary.withAsOf(Instant.ofEpochMilli(slot.fetchedAt));
+      }
+
+      diskCacheHits.increment();
+      return summary;
+    } catch(IOException ex) {
+      log.warn("Disk cache record unreadable for {}", key, ex);
+      return null;
+    }
+  }
+
+  private void store(QueryKey key, CrimeReportSummary summary) {
+    if(summary.isEmpty() || summary.getAsOf() != null) {
+      return;
+    }
+
+    long now = clock.millis();
+    long expiresAt = key.isClosedBefore(LocalDate.now(clock)) ? Long.MAX_VALUE : now + openRangeTtlMillis;
+
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+
+      out.writeUTF(key.toString());
+      out.writeLong(now);
+      out.writeLong(expiresAt);
+      FileReportStore.writeSummary(summary, out);
+      out.flush();
+
+      append(key.toString(), bytes.toByteArray(), now, expiresAt);
+    } catch(IOException ex) {
+      log.warn("Disk cache write failed for {}", key, ex);
+    }
+  }
+
+  /**
+   * Opens the file and rebuilds the index, cutting off anything after the last intact
+   * record.  A file with a foreign or outdated header is started over.
+   */
+  private void open() throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    index.clear();
+
+    long size = channel.size();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+    if(size < HEADER_BYTES || readFully(header, 0) < HEADER_BYTES
+            || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+      if(size > 0) {
+        log.warn("Discarding disk cache {} with an unrecognized header", path);
+      }
+      channel.truncate(0);
+      header.clear();
+      header.putInt(MAGIC).putInt(VERSION).flip();
+      writeFully(header, 0);
+      return;
+    }
+
+    long offset = HEADER_BYTES;
+    ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+
+    while(offset + RECORD_HEADER_BYTES <= size) {
+      recordHeader.clear();
+      readFully(recordHeader, offset);
+
+      int length = recordHeader.getInt(0);
+      int checksum = recordHeader.getInt(4);
+      if(length <= 0 || offset + RECORD_HEADER_BYTES + length > size) {
+        break;
+      }
+
+      ByteBuffer payload = ByteBuffer.allocate(length);
+      readFully(payload, offset + RECORD_HEADER_BYTES);
+      if(checksum(payload.array()) != checksum) {
+        break;
+      }
+
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()));
+      String key = in.readUTF();
+      long fetchedAt = in.readLong();
+      long expiresAt = in.readLong();
+
+      index.put(key, new Slot(offset, length, fetchedAt, expiresAt));
+      offset += RECORD_HEADER_BYTES + length;
+    }
+
+    if(offset < size) {
+      log.warn("Truncating disk cache {} from {} to {} bytes", path, size, offset);
+      channel.truncate(offset);
+    }
+  }
+
+  private synchronized void append(String key, byte[] payload, long fetchedAt, long expiresAt) throws IOException {
+    withChannel(() -> {
+      long offset = channel.size();
+      ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+
+      record.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+      writeFully(record, offset);
+      index.put(key, new Slot(offset, payload.length, fetchedAt, expiresAt));
+
+      if(channel.size() > maxBytes) {
+        compact();
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Runs a file operation with the calling thread's interrupt status cleared, reopening
+   * the file first if an earlier interrupt closed it.  An operation that fails because
+   * the channel was closed under it, by an interrupt arriving part way, is tried once
+   * more on a reopened file.  Must be called holding the lock on this.
+   */
+  private <T> T withChannel(FileOperation<T> operation) throws IOException {
+    boolean interrupted = Thread.interrupted();
+
+    try {
+      try {
+        ensureOpen();
+        return operation.run();
+      } catch(ClosedChannelException ex) {
+        interrupted |= Thread.interrupted();
+        ensureOpen();
+        return operation.run();
+      }
+    } finally {
+      if(interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if(closed) {
+      throw new ClosedChannelException();
+    }
+    if(! channel.isOpen()) {
+      log.warn("Reopening disk cache {} after its channel was closed", path);
+      open();
+    }
+  }
+
+  /**
+   * Rewrites the file with the latest record of the most recently used queries, up to
+   * half the size cap, and atomically moves it into place.
+   */
+  private void compact() throws IOException {
+    List<Map.Entry<String, Slot>> entries = new ArrayList<Map.Entry<String, Slot>>(index.entrySet());
+    Collections.reverse(entries);
+
+    List<byte[]> kept = new ArrayList<byte[]>();
+    long keptBytes = HEADER_BYTES;
+
+    for(Map.Entry<String, Slot> entry : entries) {
+      Slot slot = entry.getValue();
+
+      if(keptBytes + RECORD_HEADER_BYTES + slot.length > maxBytes / 2) {
+        break;
+      }
+
+      byte[] payload = readPayload(slot);
+      if(payload != null) {
+        kept.add(payload);
+        keptBytes += RECORD_HEADER_BYTES + slot.length;
+      }
+    }
+
+    // Least recently used first, so reopening restores the access order
+    Collections.reverse(kept);
+
+    Path temp = Files.createTempFile(path.getParent(), FILE_NAME, ".tmp");
+    try {
+      try(FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while(header.hasRemaining()) {
+          out.write(header);
+        }
+
+        for(byte[] payload : kept) {
+          ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+          record.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+          while(record.hasRemaining()) {
+            out.write(record);
+          }
+        }
+      }
+
+      channel.close();
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+      if(! channel.isOpen()) {
+        open();
+      }
+    }
+
+    log.info("Compacted disk cache {} to {} records", path, index.size());
+  }
+
+  /**
+   * @return the record's payload or null if it no longer matches its checksum
+   */
+  private byte[] readPayload(Slot slot) throws IOException {
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + slot.length);
+
+    if(readFully(record, slot.offset) < record.capacity()) {
+      return null;
+    }
+
+    byte[] payload = new byte[slot.length];
+    System.arraycopy(record.array(), RECORD_HEADER_BYTES, payload, 0, slot.length);
+
+    return (checksum(payload) == record.getInt(4)) ? payload : null;
+  }
+
+  private int readFully(ByteBuffer buffer, long position) throws IOException {
+    int total = 0;
+
+    while(buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + total);
+      if(read < 0) {
+        break;
+      }
+      total += read;
+    }
+
+    return total;
+  }
+
+  private void writeFully(ByteBuffer buffer, long position) throws IOException {
+    long written = 0;
+
+    while(buffer.hasRemaining()) {
+      written += channel.write(buffer, position + written);
+    }
+  }
+
+  private static int checksum(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+
+    return (int) crc.getValue();
+  }
+
+  /**
+   * @return the size of the cache file in bytes
+   */
+  public synchronized long getFileSize() throws IOException {
+    return withChannel(() -> channel.size());
+  }
+
+  /**
+   * @return the number of queries with a record in the file
+   */
+  public synchronized int size() {
+    return index.size();
+  }
+
+  /**
+   * Closes the file; the cache can't be used afterwards.
+   */
+  public synchronized void close() throws IOException {
+    closed = true;
+    channel.close();
+  }
+
+  /**
+   * An operation on the cache file.
+   */
+  private interface FileOperation<T> {
+    T run() throws IOException;
+  }
+
+  /**
+   * Where the latest record for a query is and when it was retrieved and expires.
+   */
+  private static final class Slot {
+    private final long offset;
+    private final int length;
+    private final long fetchedAt;
+    private final long expiresAt;
+
+    private Slot(long offset, int length, long fetchedAt, long expiresAt) {
+      this.offset = offset;
+      this.length = length;
+      this.fetchedAt = fetchedAt;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
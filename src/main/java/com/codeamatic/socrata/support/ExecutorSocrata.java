@@ -0,0 +1,135 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.socrata.AsyncSocrata;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Socrata;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link AsyncSocrata} that runs a blocking {@link Socrata} on a bounded thread pool.
+ *
+ * The pool has a fixed number of threads and a bounded queue; once both are full,
+ * new requests fail fast with a {@link RejectedExecutionException} instead of piling
+ * up.  Deadlines are enforced by a single scheduler thread, and a request that times
+ * out or is cancelled has its worker interrupted.  Threads are daemons, so an idle
+ * pool never keeps the JVM alive.
+ */
+public class ExecutorSocrata implements AsyncSocrata {
+  public static final int DEFAULT_THREADS = 4;
+  public static final int DEFAULT_QUEUE_CAPACITY = 32;
+
+  private final Socrata delegate;
+  private final ThreadPoolExecutor executor;
+  private final ScheduledExecutorService scheduler;
+
+  public ExecutorSocrata(Socrata delegate) {
+    this(delegate, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * @param delegate thread-safe Socrata implementation doing the blocking work
+   * @param threads int number of worker threads
+   * @param queueCapacity int number of requests allowed to wait for a worker
+   */
+  public ExecutorSocrata(Socrata delegate, int threads, int queueCapacity) {
+    this.delegate = delegate;
+    this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueCapacity), new DaemonThreadFactory("socrata-worker"));
+    this.executor.allowCoreThreadTimeOut(true);
+
+    ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("socrata-deadline"));
+    timer.setRemoveOnCancelPolicy(true);
+    this.scheduler = timer;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CompletableFuture<List<CrimeReport>> getCrimeReportsAsync(final String neighborhood, final String[] dates,
+                                                                   long timeout, TimeUnit unit) {
+    return submit(() -> delegate.getCrimeReports(neighborhood, dates), timeout, unit);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CompletableFuture<CrimeReportSummary> getCrimeReportSummaryAsync(final String neighborhood, final String[] dates,
+                                                                          long timeout, TimeUnit unit) {
+    return submit(() -> delegate.getCrimeReportSummary(neighborhood, dates), timeout, unit);
+  }
+
+  /**
+   * Runs a call on the pool, completing the returned future with its result, its
+   * failure or a timeout, whichever happens first.
+   *
+   * @param call Callable the blocking work
+   * @param timeout long deadline relative to now, 0 or less for none
+   * @param unit TimeUnit of the timeout
+   * @return the future result
+   */
+  <T> CompletableFuture<T> submit(final Callable<T> call, long timeout, TimeUnit unit) {
+    final CompletableFuture<T> result = new CompletableFuture<T>();
+    final Future<?> task;
+
+    try {
+      task = executor.submit(() -> {
+        if(result.isDone()) {
+          return;
+        }
+        try {
+          result.complete(call.call());
+        } catch(Throwable t) {
+          result.completeExceptionally(t);
+        }
+      });
+    } catch(RejectedExecutionException ex) {
+      result.completeExceptionally(ex);
+      return result;
+    }
+
+    final ScheduledFuture<?> deadline = (timeout > 0)
+            ? scheduler.schedule(() -> result.completeExceptionally(
+                    new TimeoutException("Socrata request exceeded " + unit.toMillis(timeout) + "ms")), timeout, unit)
+            : null;
+
+    result.whenComplete((value, failure) -> {
+      if(deadline != null) {
+        deadline.cancel(false);
+      }
+      if(failure != null) {
+        // Timed out or cancelled: stop the worker if it is still running
+        task.cancel(true);
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * @return the number of requests currently running or queued
+   */
+  public int getPendingCount() {
+    return executor.getActiveCount() + executor.getQueue().size();
+  }
+
+  /**
+   * Stops accepting requests and interrupts running ones.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+    scheduler.shutdownNow();
+  }
+}
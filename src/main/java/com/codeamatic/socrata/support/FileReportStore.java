@@ -0,0 +1,274 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.ReportStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ReportStore} keeping one file per day in a directory.  Run locally, any
+ * directory will do; in Lambda the directory has to be on a file system every
+ * function mounts, such as EFS, since each function has a /tmp of its own.
+ *
+ * Day files are read once and then answered from memory, and days that haven't been
+ * written are remembered for a short while so misses don't touch the disk on every
+ * request.  Writes go to a temporary file that is atomically moved into place, so
+ * readers never see a partial day, and days older than the retention period are
+ * deleted as new days are written.
+ */
+public class FileReportStore implements ReportStore {
+  public static final int DEFAULT_RETENTION_DAYS = 7;
+  public static final long DEFAULT_MISS_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private static final int MAGIC = 0x43525054;
+  private static final int VERSION = 1;
+  private static final String PREFIX = "reports-";
+  private static final String SUFFIX = ".bin";
+  private static final String CITYWIDE = "";
+  private static final int MAX_MISSES = 1024;
+
+  private final Path directory;
+  private final int retentionDays;
+  private final long missTtlMillis;
+  private final Clock clock;
+
+  private final ConcurrentMap<LocalDate, Map<String, CrimeReportSummary>> days =
+          new ConcurrentHashMap<LocalDate, Map<String, CrimeReportSummary>>();
+
+  // Day to the time a miss stops being trusted, since another process may write the day
+  private final ConcurrentMap<LocalDate, Long> misses = new ConcurrentHashMap<LocalDate, Long>();
+
+  public FileReportStore(Path directory) {
+    this(directory, DEFAULT_RETENTION_DAYS);
+  }
+
+  /**
+   * @param directory Path the day files are kept in, created on the first write
+   * @param retentionDays int number of days kept before the newest one written
+   */
+  public FileReportStore(Path directory, int retentionDays) {
+    this(directory, retentionDays, DEFAULT_MISS_TTL_MILLIS, Clock.systemUTC());
+  }
+
+  /**
+   * @param directory Path the day files are kept in, created on the first write
+   * @param retentionDays int number of days kept before the newest one written
+   * @param missTtlMillis long time a day that hasn't been written is answered without looking again
+   * @param clock Clock used to expire misses
+   */
+  public FileReportStore(Path directory, int retentionDays, long missTtlMillis, Clock clock) {
+    this.directory = directory;
+    this.retentionDays = retentionDays;
+    this.missTtlMillis = missTtlMillis;
+    this.clock = clock;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CrimeReportSummary get(LocalDate day, String neighborhood) throws IOException {
+    Map<String, CrimeReportSummary> summaries = days.get(day);
+
+    if(summaries == null) {
+      Long missExpiresAt = misses.get(day);
+      if(missExpiresAt != null && clock.millis() < missExpiresAt) {
+        return null;
+      }
+
+      summaries = read(day);
+      if(summaries == null) {
+        // Not written yet; look again once the miss expires
+        rememberMiss(day);
+        return null;
+      }
+      days.putIfAbsent(day, summaries);
+      misses.remove(day);
+    }
+
+    return summaries.get((neighborhood != null) ? neighborhood : CITYWIDE);
+  }
+
+  private void rememberMiss(LocalDate day) {
+    long now = clock.millis();
+
+    if(misses.size() >= MAX_MISSES) {
+      misses.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+    misses.put(day, now + missTtlMillis);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void putDay(LocalDate day, Map<String, CrimeReportSummary> summaries) throws IOException {
+    Map<String, CrimeReportSummary> copy = new HashMap<String, CrimeReportSummary>();
+
+    for(Map.Entry<String, CrimeReportSummary> entry : summaries.entrySet()) {
+      copy.put((entry.getKey() != null) ? entry.getKey() : CITYWIDE, entry.getValue());
+    }
+
+    Files.createDirectories(directory);
+    Path path = pathOf(day);
+    Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
+    try {
+      try(OutputStream out = Files.newOutputStream(temp)) {
+        write(copy, out);
+      }
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+
+    days.put(day, Collections.unmodifiableMap(copy));
+    misses.remove(day);
+    expire(day.minusDays(retentionDays));
+  }
+
+  /**
+   * Deletes the files of days before the given one.
+   */
+  private void expire(LocalDate oldest) throws IOException {
+    try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+      for(Path file : files) {
+        String name = file.getFileName().toString();
+        LocalDate day;
+
+        try {
+          day = LocalDate.parse(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch(DateTimeParseException ex) {
+          continue;
+        }
+
+        if(day.isBefore(oldest)) {
+          days.remove(day);
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  private Path pathOf(LocalDate day) {
+    return directory.resolve(PREFIX + day + SUFFIX);
+  }
+
+  /**
+   * @return the day's summaries or null if the day hasn't been written
+   */
+  private Map<String, CrimeReportSummary> read(LocalDate day) throws IOException {
+    try(InputStream in = Files.newInputStream(pathOf(day))) {
+      return Collections.unmodifiableMap(read(in));
+    } catch(NoSuchFileException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes the summaries, each preceded by its neighborhood.  Values are written as
+   * strings since dictionary codes are only meaningful within one JVM.
+   */
+  static void write(Map<String, CrimeReportSummary> summaries, OutputStream outputStream) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(summaries.size());
+
+    for(Map.Entry<String, CrimeReportSummary> entry : summaries.entrySet()) {
+      out.writeUTF(entry.getKey());
+      writeSummary(entry.getValue(), out);
+    }
+
+    out.flush();
+  }
+
+  /**
+   * Writes one summary: its group by fields, then each row's decoded values and count.
+   */
+  static void writeSummary(CrimeReportSummary summary, DataOutputStream out) throws IOException {
+    CrimeField[] groupBy = summary.getGroupBy();
+
+    out.writeByte(groupBy.length);
+    for(CrimeField field : groupBy) {
+      out.writeUTF(field.name());
+    }
+
+    out.writeInt(summary.size());
+    for(int row = 0; row < summary.size(); row++) {
+      for(CrimeField field : groupBy) {
+        out.writeUTF(summary.getValue(field, row));
+      }
+      out.writeInt(summary.getCount(row));
+    }
+  }
+
+  static Map<String, CrimeReportSummary> read(InputStream inputStream) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+
+    if(in.readInt() != MAGIC) {
+      throw new IOException("Not a report store file");
+    }
+    int version = in.readInt();
+    if(version != VERSION) {
+      throw new IOException("Unsupported report store version: " + version);
+    }
+
+    int size = in.readInt();
+    Map<String, CrimeReportSummary> summaries = new HashMap<String, CrimeReportSummary>();
+
+    for(int i = 0; i < size; i++) {
+      String neighborhood = in.readUTF();
+      summaries.put(neighborhood, readSummary(in));
+    }
+
+    return summaries;
+  }
+
+  /**
+   * Reads a summary written by {@link #writeSummary(CrimeReportSummary, DataOutputStream)},
+   * encoding its values into this JVM's dictionaries.
+   */
+  static CrimeReportSummary readSummary(DataInputStream in) throws IOException {
+    CrimeField[] groupBy = new CrimeField[in.readUnsignedByte()];
+    for(int f = 0; f < groupBy.length; f++) {
+      try {
+        groupBy[f] = CrimeField.valueOf(in.readUTF());
+      } catch(IllegalArgumentException ex) {
+        throw new IOException("Unknown field in summary", ex);
+      }
+    }
+
+    CrimeReportSummary.Builder builder = new CrimeReportSummary.Builder(groupBy);
+    int[] rowCodes = new int[groupBy.length];
+    int rows = in.readInt();
+    for(int row = 0; row < rows; row++) {
+      for(int f = 0; f < groupBy.length; f++) {
+        rowCodes[f] = groupBy[f].encode(in.readUTF());
+      }
+      builder.add(in.readInt(), rowCodes);
+    }
+
+    return builder.build();
+  }
+}
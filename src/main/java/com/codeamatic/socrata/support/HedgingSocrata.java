@@ -0,0 +1,265 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.metrics.Histogram;
+import com.codeamatic.metrics.Metrics;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.SocrataException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Deadline enforcing wrapper around the upstream {@link Socrata} client.
+ *
+ * Summary requests run on a small pool so the caller can stop waiting at its
+ * deadline.  If a request is still outstanding once it has taken longer than a
+ * percentile (by default the 95th) of recent successful requests, a duplicate is
+ * sent and whichever answers first wins, which cuts off most of the latency tail
+ * for a few percent more upstream calls.  A {@link CircuitBreaker} stops calls
+ * altogether while the upstream keeps failing.
+ *
+ * Only summaries, which answer the skill's requests, are protected; crime report
+ * lists go straight to the delegate.  This belongs directly in front of the client,
+ * behind {@link CoalescingSocrata}, which would otherwise fold a hedge back into
+ * the request it duplicates.
+ */
+public class HedgingSocrata implements Socrata {
+  private static final Logger log = LoggerFactory.getLogger(HedgingSocrata.class);
+
+  public static final double DEFAULT_HEDGE_PERCENTILE = 95;
+  public static final long DEFAULT_HEDGE_DELAY_MILLIS = 1000;
+  public static final long DEFAULT_BUDGET_MILLIS = 5000;
+
+  /**
+   * Latencies needed before the percentile is trusted over the default delay.
+   */
+  static final int MIN_SAMPLES = 20;
+
+  /**
+   * Latencies after which a fresh window is started, so the delay follows the
+   * upstream's recent behavior.
+   */
+  static final int WINDOW = 1000;
+
+  /**
+   * Never hedge sooner than this; duplicating fast requests only adds load.
+   */
+  private static final long MIN_HEDGE_DELAY_MILLIS = 20;
+
+  private static final LongAdder hedges = Metrics.counter(Metrics.SOCRATA_HEDGES);
+  private static final LongAdder timeouts = Metrics.counter(Metrics.SOCRATA_TIMEOUTS);
+  private static final LongAdder rejections = Metrics.counter(Metrics.SOCRATA_CIRCUIT_OPEN);
+
+  private final Socrata delegate;
+  private final ExecutorSocrata executor;
+  private final CircuitBreaker breaker;
+  private final double hedgePercentile;
+  private final long defaultHedgeDelayMillis;
+
+  private final Histogram latencies = new Histogram();
+  private volatile long windowHedgeDelayMillis;
+
+  private final AtomicLong hedgedCalls = new AtomicLong();
+
+  public HedgingSocrata(Socrata delegate) {
+    this(delegate, new CircuitBreaker(), DEFAULT_HEDGE_PERCENTILE, DEFAULT_HEDGE_DELAY_MILLIS);
+  }
+
+  /**
+   * @param delegate thread-safe Socrata implementation doing the upstream calls
+   * @param breaker CircuitBreaker guarding the upstream
+   * @param hedgePercentile double latency percentile after which a duplicate is sent
+   * @param defaultHedgeDelayMillis long delay before a duplicate is sent while too few
+   *                                latencies are known
+   */
+  public HedgingSocrata(Socrata delegate, CircuitBreaker breaker, double hedgePercentile,
+                        long defaultHedgeDelayMillis) {
+    this.delegate = delegate;
+    this.executor = new ExecutorSocrata(delegate);
+    this.breaker = breaker;
+    this.hedgePercentile = hedgePercentile;
+    this.defaultHedgeDelayMillis = defaultHedgeDelayMillis;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports() {
+    return delegate.getCrimeReports();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+    return delegate.getCrimeReports(neighborhood, dates);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Uses a default budget of {@value #DEFAULT_BUDGET_MILLIS}ms.
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+    try {
+      return getCrimeReportSummary(neighborhood, dates, Deadline.after(DEFAULT_BUDGET_MILLIS, TimeUnit.MILLISECONDS));
+    } catch(SocrataException ex) {
+      log.error("Crime report summary request failed for neighborhood {}", neighborhood, ex);
+      return CrimeReportSummary.EMPTY;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Only upstream errors and attempts running out of time count against the circuit
+   * breaker.  A caller that is interrupted, e.g. a month {@link ShardedSocrata} no
+   * longer needs, or that arrives with its deadline already passed says nothing
+   * about the upstream.
+   */
+  public CrimeReportSummary getCrimeReportSummary(final String neighborhood, final String[] dates,
+                                                  final Deadline deadline) {
+    if(deadline.isExpired()) {
+      throw new SocrataException("Deadline passed before requesting neighborhood " + neighborhood);
+    }
+    if(! breaker.allowRequest()) {
+      rejections.increment();
+      throw new SocrataException("Socrata calls are suspended after repeated failures");
+    }
+
+    Callable<CrimeReportSummary> call = () -> delegate.getCrimeReportSummary(neighborhood, dates, deadline);
+    CompletableFuture<CrimeReportSummary> answer = attempt(call, deadline);
+    boolean recorded = false;
+
+    try {
+      CrimeReportSummary summary;
+
+      try {
+        summary = answer.get(Math.min(hedgeDelayMillis(), deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+      } catch(TimeoutException ex) {
+        if(! deadline.isExpired()) {
+          hedgedCalls.incrementAndGet();
+          hedges.increment();
+          answer = firstSuccess(answer, attempt(call, deadline));
+        }
+        // Each attempt times out by itself at the deadline
+        summary = answer.get();
+      }
+
+      breaker.recordSuccess();
+      recorded = true;
+      return summary;
+    } catch(ExecutionException ex) {
+      Throwable cause = ex.getCause();
+
+      if(cause instanceof TimeoutException) {
+        timeouts.increment();
+      }
+      breaker.recordFailure();
+      recorded = true;
+      throw (cause instanceof SocrataException) ? (SocrataException) cause
+              : new SocrataException("Crime report summary request failed for neighborhood " + neighborhood, cause);
+    } catch(InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new SocrataException("Interrupted waiting for neighborhood " + neighborhood, ex);
+    } finally {
+      // Stops whatever is still running
+      answer.cancel(true);
+      if(! recorded) {
+        breaker.releaseRequest();
+      }
+    }
+  }
+
+  /**
+   * Starts one request on the pool, recording its latency if it succeeds.
+   */
+  private CompletableFuture<CrimeReportSummary> attempt(Callable<CrimeReportSummary> call, Deadline deadline) {
+    final long start = System.nanoTime();
+    CompletableFuture<CrimeReportSummary> future =
+            executor.submit(call, Math.max(1, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+
+    future.whenComplete((value, failure) -> {
+      if(failure == null) {
+        latencies.record((System.nanoTime() - start) / 1000);
+      }
+    });
+
+    return future;
+  }
+
+  /**
+   * @return how long to wait for a request before sending a duplicate
+   */
+  long hedgeDelayMillis() {
+    Histogram.Snapshot snapshot = latencies.snapshot();
+
+    if(snapshot.getCount() >= WINDOW) {
+      Histogram.Snapshot window = latencies.drain();
+      // A concurrent caller may have just drained the window
+      if(window.getCount() >= MIN_SAMPLES) {
+        windowHedgeDelayMillis = percentileMillis(window);
+      }
+    } else if(snapshot.getCount() >= MIN_SAMPLES) {
+      return percentileMillis(snapshot);
+    }
+
+    return (windowHedgeDelayMillis > 0) ? windowHedgeDelayMillis : defaultHedgeDelayMillis;
+  }
+
+  private long percentileMillis(Histogram.Snapshot snapshot) {
+    return Math.max(MIN_HEDGE_DELAY_MILLIS, snapshot.getPercentile(hedgePercentile) / 1000);
+  }
+
+  /**
+   * @return a future completing with the first of two results to succeed, or with
+   *         the last failure if both fail; the other request is cancelled
+   */
+  private static <V> CompletableFuture<V> firstSuccess(final CompletableFuture<V> first,
+                                                       final CompletableFuture<V> second) {
+    final CompletableFuture<V> result = new CompletableFuture<V>();
+    final AtomicInteger failures = new AtomicInteger();
+
+    BiConsumer<V, Throwable> completion = (value, failure) -> {
+      if(failure == null) {
+        result.complete(value);
+      } else if(failures.incrementAndGet() == 2) {
+        result.completeExceptionally(failure);
+      }
+    };
+    first.whenComplete(completion);
+    second.whenComplete(completion);
+
+    result.whenComplete((value, failure) -> {
+      first.cancel(true);
+      second.cancel(true);
+    });
+
+    return result;
+  }
+
+  /**
+   * @return the number of duplicate requests sent
+   */
+  public long getHedgedCallCount() {
+    return hedgedCalls.get();
+  }
+
+  public CircuitBreaker getCircuitBreaker() {
+    return breaker;
+  }
+}
@@ -0,0 +1,37 @@
+package com.codeamatic.socrata.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Transport used by {@link SocrataClient} to issue HTTP GET requests.
+ *
+ * Implementations must be thread-safe; a single instance is shared by every
+ * request the client makes.
+ */
+public interface HttpTransport {
+
+  /**
+   * Issues a GET request and returns the (already decompressed) response body.
+   * The caller is responsible for closing the returned stream, which allows the
+   * underlying connection to be reused.
+   *
+   * @param url String fully encoded url
+   * @return the response body
+   * @throws IOException if the request fails or the response status isn't successful
+   */
+  InputStream get(String url) throws IOException;
+
+  /**
+   * Issues a GET request that gives up once the given time has passed, for callers
+   * working against a deadline.  The default ignores the limit.
+   *
+   * @param url String fully encoded url
+   * @param timeoutMillis long time allowed for connecting and for each read, positive
+   * @return the response body
+   * @throws IOException if the request fails, times out or the response status isn't successful
+   */
+  default InputStream get(String url, long timeoutMillis) throws IOException {
+    return get(url);
+  }
+}
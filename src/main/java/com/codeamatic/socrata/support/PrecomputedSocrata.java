@@ -0,0 +1,108 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.DateStringUtil;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
+import com.codeamatic.socrata.ReportStore;
+import com.codeamatic.socrata.Socrata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Answers single, past day summary queries from a {@link ReportStore} filled ahead
+ * of time, falling back to another {@link Socrata} implementation for anything that
+ * wasn't precomputed.
+ *
+ * This is meant to be the outermost layer, in front of {@link CachingSocrata}, so
+ * that precomputed answers don't take up cache entries.
+ */
+public class PrecomputedSocrata implements Socrata {
+  private static final Logger log = LoggerFactory.getLogger(PrecomputedSocrata.class);
+
+  private final ReportStore store;
+  private final Socrata delegate;
+  private final Clock clock;
+
+  public PrecomputedSocrata(ReportStore store, Socrata delegate) {
+    this(store, delegate, Clock.system(DateStringUtil.ZONE));
+  }
+
+  /**
+   * @param store ReportStore holding the precomputed summaries
+   * @param delegate Socrata implementation answering everything else
+   * @param clock Clock used to resolve relative dates
+   */
+  public PrecomputedSocrata(ReportStore store, Socrata delegate, Clock clock) {
+    this.store = store;
+    this.delegate = delegate;
+    this.clock = clock;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports() {
+    return delegate.getCrimeReports();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+    return delegate.getCrimeReports(neighborhood, dates);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+    QueryKey key = QueryKey.of(neighborhood, dates, clock);
+    CrimeReportSummary summary = lookup(key);
+
+    return (summary != null) ? summary : delegate.getCrimeReportSummary(neighborhood, resolve(key));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates, Deadline deadline) {
+    QueryKey key = QueryKey.of(neighborhood, dates, clock);
+    CrimeReportSummary summary = lookup(key);
+
+    return (summary != null) ? summary : delegate.getCrimeReportSummary(neighborhood, resolve(key), deadline);
+  }
+
+  /**
+   * Spells out the dates this class resolved in the city's time zone, so the layers
+   * below, which may default to another zone, can't take a running day for a past one.
+   *
+   * @return {start, end} of the key's range
+   */
+  private static String[] resolve(QueryKey key) {
+    return new String[] {key.getStart().toString(), key.getEnd().toString()};
+  }
+
+  /**
+   * @return the precomputed summary or null if the query isn't for a single past
+   *         day or the day wasn't precomputed
+   */
+  private CrimeReportSummary lookup(QueryKey key) {
+    if(! key.getStart().equals(key.getEnd()) || ! key.isClosedBefore(LocalDate.now(clock))) {
+      return null;
+    }
+
+    try {
+      return store.get(key.getStart(), key.getNeighborhood());
+    } catch(IOException ex) {
+      log.warn("Precomputed report lookup failed for {}", key, ex);
+      return null;
+    }
+  }
+}
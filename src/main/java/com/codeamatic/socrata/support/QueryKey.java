@@ -0,0 +1,119 @@
+package com.codeamatic.socrata.support;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Canonical form of a crime report query, used as the key for result caches.
+ *
+ * The neighborhood is trimmed and lower cased ("all" and null both mean the
+ * whole city) and missing dates are resolved the same way {@link SocrataClient}
+ * resolves them, so equivalent requests share one key.
+ */
+public final class QueryKey {
+
+  private final String neighborhood;
+  private final LocalDate start;
+  private final LocalDate end;
+
+  QueryKey(String neighborhood, LocalDate start, LocalDate end) {
+    this.neighborhood = neighborhood;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Builds a key for the given neighborhood and date array.
+   *
+   * @param neighborhood String neighborhood, "all" or null
+   * @param dates Array of two dates (YYYY-MM-DD), either of which may be null
+   * @param clock Clock used to resolve "yesterday" and "today"
+   * @return the canonical key
+   */
+  public static QueryKey of(String neighborhood, String[] dates, Clock clock) {
+    LocalDate today = LocalDate.now(clock);
+    LocalDate start;
+    LocalDate end;
+
+    if(dates == null || dates[0] == null) {
+      start = today.minusDays(1);
+      end = start;
+    } else {
+      start = LocalDate.parse(dates[0]);
+      end = (dates[1] == null) ? today : LocalDate.parse(dates[1]);
+    }
+
+    return new QueryKey(normalizeNeighborhood(neighborhood), start, end);
+  }
+
+  /**
+   * @param neighborhood String neighborhood, "all" or null
+   * @return the trimmed, lower cased neighborhood or null for the whole city
+   */
+  public static String normalizeNeighborhood(String neighborhood) {
+    if(neighborhood == null) {
+      return null;
+    }
+
+    String normalized = neighborhood.trim().toLowerCase(Locale.US);
+
+    return (normalized.isEmpty() || "all".equals(normalized)) ? null : normalized;
+  }
+
+  /**
+   * @return the normalized neighborhood or null for the whole city
+   */
+  public String getNeighborhood() {
+    return neighborhood;
+  }
+
+  public LocalDate getStart() {
+    return start;
+  }
+
+  public LocalDate getEnd() {
+    return end;
+  }
+
+  /**
+   * Whether or not the range ends before the given day, meaning its
+   * results are no longer expected to change.
+   *
+   * @param today LocalDate the current day
+   * @return true if the range is closed
+   */
+  public boolean isClosedBefore(LocalDate today) {
+    return end.isBefore(today);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if(this == o) {
+      return true;
+    }
+    if(!(o instanceof QueryKey)) {
+      return false;
+    }
+
+    QueryKey other = (QueryKey) o;
+
+    return (neighborhood == null ? other.neighborhood == null : neighborhood.equals(other.neighborhood))
+            && start.equals(other.start)
+            && end.equals(other.end);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = (neighborhood != null) ? neighborhood.hashCode() : 0;
+    result = 31 * result + start.hashCode();
+    result = 31 * result + end.hashCode();
+
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return ((neighborhood != null) ? neighborhood : "all") + ":" + start + ":" + end;
+  }
+}
@@ -0,0 +1,318 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.DateStringUtil;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.SocrataException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Splits summaries over long date ranges into one query per calendar month, runs
+ * them in parallel on a small fixed pool and adds the results together.
+ *
+ * This sits in front of {@link CachingSocrata}, which never expires results for
+ * ranges that are over.  Every month but the current one is therefore fetched once
+ * and then answered from memory, and a "since last year" request only goes back to
+ * the network for the month still in progress.
+ *
+ * Fetching a year of months takes far longer than the skill's budget, though.  So a
+ * request with a short deadline is only split up once every month that is over has
+ * been fetched; until then it is answered with a single query for the whole range,
+ * and the missing months are fetched in the background for the requests after it.
+ */
+public class ShardedSocrata implements Socrata {
+  private static final Logger log = LoggerFactory.getLogger(ShardedSocrata.class);
+
+  public static final int DEFAULT_THREADS = 4;
+
+  /**
+   * Enough for a year of months to queue up on the default pool.  Also the budget of
+   * each month fetched in the background.
+   */
+  public static final long DEFAULT_BUDGET_MILLIS = 30000;
+
+  /**
+   * Months known to be fetched are forgotten past this many, in case the cache behind
+   * has long since evicted them.
+   */
+  static final int MAX_FILLED_MONTHS = 4096;
+
+  /**
+   * Ranges up to a month long are cheap enough to ask for in one piece.
+   */
+  public static final int DEFAULT_MIN_SHARDED_DAYS = 32;
+
+  private final Socrata delegate;
+  private final ExecutorService executor;
+  private final int minShardedDays;
+  private final long minColdBudgetMillis;
+  private final Clock clock;
+
+  // Keys of months that are over and were fetched, and of those being fetched in the background
+  private final Set<String> filled = ConcurrentHashMap.newKeySet();
+  private final Set<String> filling = ConcurrentHashMap.newKeySet();
+
+  public ShardedSocrata(Socrata delegate) {
+    this(delegate, DEFAULT_THREADS, DEFAULT_MIN_SHARDED_DAYS, Clock.system(DateStringUtil.ZONE));
+  }
+
+  public ShardedSocrata(Socrata delegate, int threads, int minShardedDays, Clock clock) {
+    this(delegate, threads, minShardedDays, DEFAULT_BUDGET_MILLIS, clock);
+  }
+
+  /**
+   * @param delegate thread-safe Socrata implementation answering each month
+   * @param threads int maximum number of months fetched at once, across all callers
+   * @param minShardedDays int shortest range, in days, that is split up
+   * @param minColdBudgetMillis long time left, in milliseconds, that a range is split
+   *                            up with even though some of its months weren't fetched yet
+   * @param clock Clock used to resolve relative dates
+   */
+  public ShardedSocrata(Socrata delegate, int threads, int minShardedDays, long minColdBudgetMillis, Clock clock) {
+    this.delegate = delegate;
+    this.executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("socrata-shard"));
+    this.minShardedDays = minShardedDays;
+    this.minColdBudgetMillis = minColdBudgetMillis;
+    this.clock = clock;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports() {
+    return delegate.getCrimeReports();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+    return delegate.getCrimeReports(neighborhood, dates);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Long ranges are answered like the deadline variant with a default budget of
+   * {@value #DEFAULT_BUDGET_MILLIS}ms, so a month that fails empties the whole range
+   * instead of being counted as zero.
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+    List<String[]> shards = shards(neighborhood, dates);
+
+    if(shards == null) {
+      return delegate.getCrimeReportSummary(neighborhood, dates);
+    }
+
+    try {
+      return merge(neighborhood, shards, Deadline.after(DEFAULT_BUDGET_MILLIS, TimeUnit.MILLISECONDS));
+    } catch(SocrataException ex) {
+      log.error("Crime report summary request failed for neighborhood {}", neighborhood, ex);
+      return CrimeReportSummary.EMPTY;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * If any month is a stand-in for a current answer, so is the total, as of the
+   * oldest month.
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates, Deadline deadline) {
+    List<String[]> shards = shards(neighborhood, dates);
+
+    if(shards == null) {
+      return delegate.getCrimeReportSummary(neighborhood, dates, deadline);
+    }
+
+    if(deadline.remainingMillis() < minColdBudgetMillis && ! isFilled(neighborhood, shards)) {
+      // The answer goes first; the months queue up behind it
+      try {
+        return delegate.getCrimeReportSummary(neighborhood, dates, deadline);
+      } finally {
+        fill(neighborhood, shards);
+      }
+    }
+
+    return merge(neighborhood, shards, deadline);
+  }
+
+  /**
+   * @return whether every month that is over has been fetched
+   */
+  private boolean isFilled(String neighborhood, List<String[]> shards) {
+    for(String[] shard : shards) {
+      if(isOver(shard) && ! filled.contains(monthKey(neighborhood, shard))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Fetches the months that are over and weren't fetched yet on the pool, without
+   * waiting for them.
+   */
+  private void fill(final String neighborhood, List<String[]> shards) {
+    for(final String[] shard : shards) {
+      final String key = monthKey(neighborhood, shard);
+
+      if(! isOver(shard) || filled.contains(key) || ! filling.add(key)) {
+        continue;
+      }
+
+      executor.execute(() -> {
+        try {
+          Deadline deadline = Deadline.after(DEFAULT_BUDGET_MILLIS, TimeUnit.MILLISECONDS);
+          markFilled(neighborhood, shard, delegate.getCrimeReportSummary(neighborhood, shard, deadline));
+        } catch(SocrataException ex) {
+          log.debug("Background fetch of {} failed", key, ex);
+        } finally {
+          filling.remove(key);
+        }
+      });
+    }
+  }
+
+  /**
+   * Remembers a month that is over once it has been fetched; a stale stand-in doesn't count.
+   */
+  private void markFilled(String neighborhood, String[] shard, CrimeReportSummary summary) {
+    if(! isOver(shard) || summary.getAsOf() != null) {
+      return;
+    }
+
+    if(filled.size() >= MAX_FILLED_MONTHS) {
+      filled.clear();
+    }
+    filled.add(monthKey(neighborhood, shard));
+  }
+
+  private boolean isOver(String[] shard) {
+    return LocalDate.parse(shard[1]).isBefore(LocalDate.now(clock));
+  }
+
+  private String monthKey(String neighborhood, String[] shard) {
+    return QueryKey.of(neighborhood, shard, clock).toString();
+  }
+
+  /**
+   * @return the month by month date arrays or null if the range is too short to split
+   */
+  private List<String[]> shards(String neighborhood, String[] dates) {
+    QueryKey key = QueryKey.of(neighborhood, dates, clock);
+
+    if(ChronoUnit.DAYS.between(key.getStart(), key.getEnd()) + 1 < minShardedDays) {
+      return null;
+    }
+
+    List<String[]> shards = new ArrayList<String[]>();
+    for(LocalDate[] month : monthShards(key.getStart(), key.getEnd())) {
+      shards.add(new String[] {month[0].toString(), month[1].toString()});
+    }
+
+    return shards;
+  }
+
+  /**
+   * Splits an inclusive range on calendar month boundaries.  The first and last
+   * shards may be partial months.
+   *
+   * @param start LocalDate first day
+   * @param end LocalDate last day
+   * @return {first day, last day} of each shard, in order
+   */
+  static List<LocalDate[]> monthShards(LocalDate start, LocalDate end) {
+    List<LocalDate[]> shards = new ArrayList<LocalDate[]>();
+    LocalDate shardStart = start;
+
+    while(! shardStart.isAfter(end)) {
+      LocalDate monthEnd = shardStart.withDayOfMonth(shardStart.lengthOfMonth());
+      LocalDate shardEnd = monthEnd.isBefore(end) ? monthEnd : end;
+
+      shards.add(new LocalDate[] {shardStart, shardEnd});
+      shardStart = shardEnd.plusDays(1);
+    }
+
+    return shards;
+  }
+
+  /**
+   * Loads every shard on the pool and adds them up.
+   *
+   * @param deadline Deadline for the whole range
+   */
+  private CrimeReportSummary merge(final String neighborhood, List<String[]> shards, final Deadline deadline) {
+    List<Future<CrimeReportSummary>> futures = new ArrayList<Future<CrimeReportSummary>>(shards.size());
+
+    try {
+      for(final String[] shard : shards) {
+        futures.add(executor.submit(() -> delegate.getCrimeReportSummary(neighborhood, shard, deadline)));
+      }
+
+      CrimeReportSummary.Builder builder = null;
+      Instant asOf = null;
+
+      for(int i = 0; i < futures.size(); i++) {
+        CrimeReportSummary summary = futures.get(i).get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        markFilled(neighborhood, shards.get(i), summary);
+
+        if(builder == null) {
+          builder = new CrimeReportSummary.Builder(summary.getGroupBy());
+        }
+        builder.addAll(summary);
+
+        if(summary.getAsOf() != null && (asOf == null || summary.getAsOf().isBefore(asOf))) {
+          asOf = summary.getAsOf();
+        }
+      }
+
+      CrimeReportSummary merged = builder.build();
+      return (asOf != null) ? merged.withAsOf(asOf) : merged;
+    } catch(TimeoutException ex) {
+      throw new SocrataException("Deadline passed waiting for " + shards.size() + " months", ex);
+    } catch(ExecutionException ex) {
+      Throwable cause = ex.getCause();
+
+      if(cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new SocrataException("Month request failed", cause);
+    } catch(InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new SocrataException("Interrupted waiting for months", ex);
+    } finally {
+      // Stops the remaining months once one has failed
+      for(Future<CrimeReportSummary> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Stops the pool; running requests are interrupted.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -1,38 +1,84 @@
 package com.codeamatic.socrata.support;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
-import com.codeamatic.CincyDataSpeechlet;
+import com.codeamatic.DateStringUtil;
+import com.codeamatic.metrics.Histogram;
+import com.codeamatic.metrics.Metrics;
+import com.codeamatic.socrata.CrimeField;
 import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
 import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.SocrataException;
+import com.codeamatic.socrata.snapshot.EpochMinutes;
+import com.codeamatic.socrata.snapshot.IncidentTable;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.net.URL;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.Period;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Implementation of the Socrata service interface.
+ *
+ * Instances are immutable and thread-safe, so a single client (and with it the
+ * Gson type adapters and the transport's connections) is meant to be shared by
+ * every request in the JVM.
  */
 public class SocrataClient implements Socrata {
-  private static final Logger log = LoggerFactory.getLogger(CincyDataSpeechlet.class);
+  private static final Logger log = LoggerFactory.getLogger(SocrataClient.class);
   private static final String TIME_START = "T00:00:00.000";
   private static final String TIME_END = "T23:59:59.999";
+  private static final String[] INCIDENT_COLUMNS = {
+          "casereportno", "offenseno", "occurredon", "reportedon", "offense", "neighborhood", "district", "beat", "ucr"
+  };
 
-  private String token;
-  private String serviceUrl;
-  private GsonBuilder gsonBuilder = new GsonBuilder();
+  /**
+   * Rows per request for grouped summaries; neighborhoods times offenses can exceed
+   * Socrata's default page of 1000 rows.
+   */
+  static final int GROUPED_PAGE_ROWS = 50000;
+
+  /**
+   * Gson is thread-safe and caches its type adapters, so it is built once.
+   */
+  private static final Gson gson = new GsonBuilder()
+          .registerTypeAdapter(CrimeReport.class, new CrimeReportTypeAdapter())
+          .create();
+
+  private static final Histogram decodeLatency = Metrics.histogram(Metrics.SOCRATA_DECODE);
+  private static final LongAdder rowsDecoded = Metrics.counter(Metrics.SOCRATA_ROWS);
+  private static final LongAdder errors = Metrics.counter(Metrics.SOCRATA_ERRORS);
+
+  private final String token;
+  private final String serviceUrl;
+  private final HttpTransport transport;
 
   public SocrataClient(String token,  String serviceUrl) {
+    this(token, serviceUrl, new UrlConnectionTransport());
+  }
+
+  public SocrataClient(String token, String serviceUrl, HttpTransport transport) {
     this.token = token;
     this.serviceUrl = serviceUrl;
+    this.transport = transport;
   }
 
   /**
@@ -53,21 +99,345 @@ public class SocrataClient implements Socrata {
     String query = this.getServiceQuery(neighborhood, preparedDates[0], preparedDates[1]);
     String urlString = this.serviceUrl + query;
 
-    try {
-      crimeReports = gsonBuilder.create().fromJson(IOUtils.toString(new URL(urlString)), CrimeReport[].class);
-    } catch(IOException ex) {
-      log.error("Exception:" + ex);
+    try(Reader reader = new InputStreamReader(transport.get(urlString), StandardCharsets.UTF_8)) {
+      long decodeStart = System.nanoTime();
+      crimeReports = gson.fromJson(reader, CrimeReport[].class);
+      decodeLatency.record((System.nanoTime() - decodeStart) / 1000);
+    } catch(IOException | JsonParseException ex) {
+      errors.increment();
+      log.error("Crime report request failed for neighborhood {}", neighborhood, ex);
+      return Collections.emptyList();
+    }
+
+    if(crimeReports == null) {
       return Collections.emptyList();
     }
 
+    rowsDecoded.add(crimeReports.length);
     return Arrays.asList(crimeReports);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * The response is decoded as a stream, folding each row straight into the
+   * aggregate, so neither the body nor a {@code CrimeReport[]} is ever held in memory.
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+    try {
+      return fetchCrimeReportSummary(neighborhood, dates, 0);
+    } catch(IOException | JsonParseException ex) {
+      errors.increment();
+      log.error("Crime report summary request failed for neighborhood {}", neighborhood, ex);
+      return CrimeReportSummary.EMPTY;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The transport's timeouts are cut down to the time left, so an abandoned request
+   * doesn't hold on to its thread much past the deadline.
+   */
+  public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates, Deadline deadline) {
+    if(deadline.isExpired()) {
+      throw new SocrataException("Deadline passed before requesting neighborhood " + neighborhood);
+    }
+
+    try {
+      return fetchCrimeReportSummary(neighborhood, dates, Math.max(1, deadline.remainingMillis()));
+    } catch(IOException | JsonParseException ex) {
+      errors.increment();
+      throw new SocrataException("Crime report summary request failed for neighborhood " + neighborhood, ex);
+    }
+  }
+
+  /**
+   * @param timeoutMillis long transport time limit, 0 for the transport's own timeouts
+   */
+  private CrimeReportSummary fetchCrimeReportSummary(String neighborhood, String[] dates, long timeoutMillis)
+          throws IOException {
+    String[] preparedDates = prepareDates(dates);
+
+    String query = this.getServiceQuery(neighborhood, preparedDates[0], preparedDates[1]);
+    String urlString = this.serviceUrl + query;
+    InputStream body = (timeoutMillis > 0) ? transport.get(urlString, timeoutMillis) : transport.get(urlString);
+
+    try(JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+      long decodeStart = System.nanoTime();
+      CrimeReportSummary summary = readSummary(reader);
+      decodeLatency.record((System.nanoTime() - decodeStart) / 1000);
+      rowsDecoded.add(summary.size());
+
+      return summary;
+    }
+  }
+
+  /**
+   * Retrieves citywide counts for a date range grouped on several fields in a single
+   * request, e.g. offenses per neighborhood for every neighborhood at once.
+   *
+   * @param dates Array of two dates, see {@link #getCrimeReportSummary(String, String[])}
+   * @param groupBy the fields to group on
+   * @return the summary grouped on the given fields
+   * @throws IOException if the request fails or the response is malformed
+   */
+  public CrimeReportSummary getGroupedSummary(String[] dates, CrimeField... groupBy) throws IOException {
+    return getGroupedSummary(dates, GROUPED_PAGE_ROWS, groupBy);
+  }
+
+  /**
+   * Pages the grouped rows, since Socrata returns only 1000 rows unless told otherwise.
+   * Rows are ordered by count and then by every group by field, so pages don't overlap.
+   *
+   * @param pageRows int number of rows requested at a time
+   */
+  CrimeReportSummary getGroupedSummary(String[] dates, int pageRows, CrimeField... groupBy) throws IOException {
+    String[] preparedDates = prepareDates(dates);
+    CrimeReportSummary.Builder builder = new CrimeReportSummary.Builder(groupBy);
+    int offset = 0;
+    int rows;
+
+    do {
+      String urlString = this.serviceUrl + this.getGroupedQuery(preparedDates[0], preparedDates[1], offset, pageRows, groupBy);
+
+      try(JsonReader reader = new JsonReader(new InputStreamReader(transport.get(urlString), StandardCharsets.UTF_8))) {
+        long decodeStart = System.nanoTime();
+        rows = readSummaryRows(reader, builder, groupBy);
+        decodeLatency.record((System.nanoTime() - decodeStart) / 1000);
+        rowsDecoded.add(rows);
+      } catch(IOException | JsonParseException ex) {
+        errors.increment();
+        throw (ex instanceof IOException) ? (IOException) ex : new IOException("Malformed grouped summary", ex);
+      }
+
+      offset += pageRows;
+    } while(rows == pageRows);
+
+    return builder.build();
+  }
+
+  /**
+   * Runs the JSON decoding paths over a small built-in sample, without any I/O, so
+   * their classes are loaded and Gson's adapters are built before the first request.
+   */
+  public void warmUp() {
+    String sample = "[{\"offense\":\"THEFT\",\"count\":\"1\"}]";
+
+    gson.fromJson(sample, CrimeReport[].class);
+    try {
+      readSummary(new JsonReader(new StringReader(sample)));
+    } catch(IOException ex) {
+      log.warn("Warm up failed", ex);
+    }
+  }
+
+  /**
+   * Reads a JSON array of {@code {"offense": ..., "count": ...}} rows into a summary
+   * grouped by offense.
+   *
+   * @param reader JsonReader positioned before the array
+   * @return the aggregated summary
+   * @throws IOException if the stream can't be read or isn't well formed
+   */
+  static CrimeReportSummary readSummary(JsonReader reader) throws IOException {
+    return readSummary(reader, CrimeField.OFFENSE);
+  }
+
+  /**
+   * Reads a JSON array of grouped rows into a summary.  Group by values are
+   * dictionary encoded as they are read, any other fields are skipped, repeated
+   * groups are added together and missing values are encoded as {@link CrimeField#UNKNOWN}.
+   *
+   * @param reader JsonReader positioned before the array
+   * @param groupBy the fields each row is grouped on
+   * @return the aggregated summary
+   * @throws IOException if the stream can't be read or isn't well formed
+   */
+  static CrimeReportSummary readSummary(JsonReader reader, CrimeField... groupBy) throws IOException {
+    CrimeReportSummary.Builder builder = new CrimeReportSummary.Builder(groupBy);
+    readSummaryRows(reader, builder, groupBy);
+
+    return builder.build();
+  }
+
+  /**
+   * @return the number of rows read
+   */
+  private static int readSummaryRows(JsonReader reader, CrimeReportSummary.Builder builder, CrimeField... groupBy)
+          throws IOException {
+    try {
+      return readRows(reader, builder, groupBy);
+    } catch(IllegalStateException | NumberFormatException ex) {
+      // JsonReader's complaints about unexpected tokens and non-numeric counts
+      throw new IOException("Malformed summary", ex);
+    }
+  }
+
+  private static int readRows(JsonReader reader, CrimeReportSummary.Builder builder, CrimeField... groupBy)
+          throws IOException {
+    String[] values = new String[groupBy.length];
+    int rows = 0;
+    int[] rowCodes = new int[groupBy.length];
+
+    reader.beginArray();
+    while(reader.hasNext()) {
+      int count = 0;
+      Arrays.fill(values, null);
+
+      reader.beginObject();
+      while(reader.hasNext()) {
+        String name = reader.nextName();
+        int column;
+
+        if(reader.peek() == JsonToken.NULL) {
+          reader.skipValue();
+        } else if("count".equals(name)) {
+          count = reader.nextInt();
+        } else if((column = indexOf(groupBy, CrimeField.forFieldName(name))) >= 0) {
+          values[column] = reader.nextString();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+
+      for(int i = 0; i < groupBy.length; i++) {
+        rowCodes[i] = groupBy[i].encode(values[i]);
+      }
+      builder.add(count, rowCodes);
+      rows++;
+    }
+    reader.endArray();
+
+    return rows;
+  }
+
+  /**
+   * Pages individual incidents, ordered by occurrence, straight into a table
+   * builder without creating {@link CrimeReport} objects.  Only the columns the
+   * table keeps are requested.
+   *
+   * @param reportedSince String earliest reported on timestamp or null for every incident
+   * @param offset int number of matching incidents to skip
+   * @param limit int maximum number of incidents to read
+   * @param builder IncidentTable.Builder the incidents are added to
+   * @return the number of incidents read; fewer than the limit means there are no more
+   * @throws IOException if the page can't be retrieved or decoded
+   */
+  public int fetchIncidents(String reportedSince, int offset, int limit, IncidentTable.Builder builder) throws IOException {
+    SoqlBuilder query = new SoqlBuilder()
+            .select(INCIDENT_COLUMNS)
+            .orderBy("occurredon").orderBy("casereportno").orderBy("offenseno")
+            .limit(limit)
+            .offset(offset)
+            .appToken(this.token);
+
+    if(reportedSince != null) {
+      query.whereAtLeast("reportedon", reportedSince);
+    }
+
+    try(JsonReader reader = new JsonReader(new InputStreamReader(transport.get(this.serviceUrl + query.build()), StandardCharsets.UTF_8))) {
+      long decodeStart = System.nanoTime();
+      int rows = readIncidents(reader, builder);
+      decodeLatency.record((System.nanoTime() - decodeStart) / 1000);
+      rowsDecoded.add(rows);
+
+      return rows;
+    } catch(IOException | JsonParseException ex) {
+      errors.increment();
+      throw (ex instanceof IOException) ? (IOException) ex : new IOException("Malformed incident page", ex);
+    }
+  }
+
+  /**
+   * Reads a JSON array of individual incidents into a table builder.  Incidents
+   * without an occurrence time can't be placed on the timeline and are skipped;
+   * a missing reported time falls back to the occurrence time.
+   *
+   * @param reader JsonReader positioned before the array
+   * @param builder IncidentTable.Builder the incidents are added to
+   * @return the number of rows in the array
+   * @throws IOException if the stream can't be read or isn't well formed
+   */
+  static int readIncidents(JsonReader reader, IncidentTable.Builder builder) throws IOException {
+    try {
+      return readIncidentRows(reader, builder);
+    } catch(IllegalStateException | NumberFormatException | DateTimeParseException ex) {
+      throw new IOException("Malformed incidents", ex);
+    }
+  }
+
+  private static int readIncidentRows(JsonReader reader, IncidentTable.Builder builder) throws IOException {
+    CrimeField[] fields = CrimeField.values();
+    String[] values = new String[fields.length];
+    int[] fieldCodes = new int[fields.length];
+    int rows = 0;
+
+    reader.beginArray();
+    while(reader.hasNext()) {
+      String caseReportNo = null;
+      String offenseNo = null;
+      String occurredOn = null;
+      String reportedOn = null;
+      Arrays.fill(values, null);
+
+      reader.beginObject();
+      while(reader.hasNext()) {
+        String name = reader.nextName();
+        CrimeField field;
+
+        if(reader.peek() == JsonToken.NULL) {
+          reader.skipValue();
+        } else if("casereportno".equals(name)) {
+          caseReportNo = reader.nextString();
+        } else if("offenseno".equals(name)) {
+          offenseNo = reader.nextString();
+        } else if("occurredon".equals(name)) {
+          occurredOn = reader.nextString();
+        } else if("reportedon".equals(name)) {
+          reportedOn = reader.nextString();
+        } else if((field = CrimeField.forFieldName(name)) != null) {
+          values[field.ordinal()] = reader.nextString();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      rows++;
+
+      if(occurredOn == null) {
+        continue;
+      }
+
+      for(CrimeField field : fields) {
+        fieldCodes[field.ordinal()] = field.encode(values[field.ordinal()]);
+      }
+
+      int occurred = EpochMinutes.parse(occurredOn);
+      int reported = (reportedOn != null) ? EpochMinutes.parse(reportedOn) : occurred;
+      builder.add(IncidentTable.incidentKey(caseReportNo, offenseNo), occurred, reported, fieldCodes);
+    }
+    reader.endArray();
+
+    return rows;
+  }
+
+  private static int indexOf(CrimeField[] fields, CrimeField field) {
+    for(int i = 0; i < fields.length; i++) {
+      if(fields[i] == field) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
   /**
    * Prepares a date array for being used to query for crime reports.
    *
    * Ensures that dates aren't null and that we default to "yesterday" if
-   * a null set of dates have been passed.
+   * a null set of dates have been passed.  The caller's array is never modified.
    *
    * @param dates Array of two dates.
    * @return Array of dates
@@ -75,14 +445,16 @@ public class SocrataClient implements Socrata {
   private String[] prepareDates(String[] dates) {
 
     if(dates == null || dates[0] == null) {
-      LocalDate yesterday = LocalDate.now().minus(Period.ofDays(1));
+      LocalDate yesterday = LocalDate.now(DateStringUtil.ZONE).minus(Period.ofDays(1));
       dates = new String[2];
       dates[0] = yesterday.toString();
       dates[1] = dates[0];
+    } else {
+      dates = dates.clone();
     }
 
     if(dates[1] == null) {
-      dates[1] = LocalDate.now().toString();
+      dates[1] = LocalDate.now(DateStringUtil.ZONE).toString();
     }
 
     dates[0] += TIME_START;
@@ -101,21 +473,51 @@ public class SocrataClient implements Socrata {
    * @return query string for Socrata API
    */
   private String getServiceQuery(String neighborhood, String dateRangeBegin, String dateRangeEnd) {
-    String appToken = (this.token != null) ? "&$$app_token=" + this.token : "";
-    String query = "?$select=offense,COUNT(offense) as count&$group=offense&$order=count";
-    String where = "";
+    return getServiceQuery(neighborhood, dateRangeBegin, dateRangeEnd, CrimeField.OFFENSE).build();
+  }
+
+  /**
+   * Builds a url query string for one page of citywide counts grouped on the given fields.
+   *
+   * @param dateRangeBegin String the start date of a date range
+   * @param dateRangeEnd String the ending date of a date range
+   * @param offset int number of rows to skip
+   * @param limit int maximum number of rows
+   * @param groupBy the fields to group on
+   * @return query string for Socrata API
+   */
+  private String getGroupedQuery(String dateRangeBegin, String dateRangeEnd, int offset, int limit, CrimeField... groupBy) {
+    return getServiceQuery(null, dateRangeBegin, dateRangeEnd, groupBy)
+            .orderBy(groupBy)
+            .limit(limit)
+            .offset(offset)
+            .build();
+  }
+
+  /**
+   * Starts a query counting offenses grouped on the given fields.
+   *
+   * @param neighborhood String the neighborhood
+   * @param dateRangeBegin String the start date of a date range
+   * @param dateRangeEnd String the ending date of a date range
+   * @param groupBy the fields to group on
+   * @return query for Socrata API, ordered by count
+   */
+  private SoqlBuilder getServiceQuery(String neighborhood, String dateRangeBegin, String dateRangeEnd, CrimeField... groupBy) {
+    SoqlBuilder query = new SoqlBuilder()
+            .select(groupBy)
+            .selectCount("offense", "count")
+            .group(groupBy)
+            .orderBy("count")
+            .appToken(this.token);
 
     // specific neighborhood or all
     if(neighborhood != null && ! "all".equalsIgnoreCase(neighborhood)) {
-      where += "neighborhood = '" + neighborhood.toUpperCase() + "'";
+      query.whereEquals(CrimeField.NEIGHBORHOOD, neighborhood.toUpperCase());
     }
 
-    where = (where.isEmpty()) ? where : where + " AND ";
-    where += "occurredon >= '" + dateRangeBegin + "' AND occurredon <= '" + dateRangeEnd + "'";
-
-    where = (where.isEmpty()) ? where : appToken + "&$where=" + where;
-    query = query + where;
+    query.whereBetween("occurredon", dateRangeBegin, dateRangeEnd);
 
-    return query.replace(" ", "%20");
+    return query;
   }
 }
@@ -0,0 +1,264 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.socrata.CrimeField;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Typed builder for SoQL query strings.
+ *
+ * Column names must be plain identifiers and every value is written as a quoted
+ * string literal with embedded quotes doubled, so no argument can change the shape
+ * of the query.  Conditions are joined with AND.  {@link #build()} URL encodes each
+ * parameter exactly once.  Builders are not thread-safe.
+ *
+ * <pre>
+ *   new SoqlBuilder()
+ *       .select(CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE).selectCount("offense", "count")
+ *       .whereBetween("occurredon", "2017-06-09T00:00:00.000", "2017-06-09T23:59:59.999")
+ *       .group(CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE)
+ *       .build();
+ * </pre>
+ */
+public final class SoqlBuilder {
+
+  private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+  private final List<String> select = new ArrayList<String>();
+  private final List<String> where = new ArrayList<String>();
+  private final List<String> group = new ArrayList<String>();
+  private final List<String> having = new ArrayList<String>();
+  private final List<String> order = new ArrayList<String>();
+  private int limit = -1;
+  private int offset = -1;
+  private String appToken;
+
+  /**
+   * Projects only the given columns.
+   *
+   * @param columns column names
+   * @return this builder
+   */
+  public SoqlBuilder select(String... columns) {
+    for(String column : columns) {
+      select.add(identifier(column));
+    }
+
+    return this;
+  }
+
+  public SoqlBuilder select(CrimeField... fields) {
+    return select(fieldNames(fields));
+  }
+
+  /**
+   * Adds {@code COUNT(column) AS alias} to the projection.
+   *
+   * @param column String column counted
+   * @param alias String name of the count in the result
+   * @return this builder
+   */
+  public SoqlBuilder selectCount(String column, String alias) {
+    select.add("COUNT(" + identifier(column) + ") AS " + identifier(alias));
+
+    return this;
+  }
+
+  public SoqlBuilder whereEquals(String column, String value) {
+    return where(column, "=", value);
+  }
+
+  public SoqlBuilder whereEquals(CrimeField field, String value) {
+    return where(field.getFieldName(), "=", value);
+  }
+
+  /**
+   * @param column String column name
+   * @param value String inclusive lower bound
+   * @return this builder
+   */
+  public SoqlBuilder whereAtLeast(String column, String value) {
+    return where(column, ">=", value);
+  }
+
+  /**
+   * @param column String column name
+   * @param value String inclusive upper bound
+   * @return this builder
+   */
+  public SoqlBuilder whereAtMost(String column, String value) {
+    return where(column, "<=", value);
+  }
+
+  /**
+   * @param column String column name
+   * @param low String inclusive lower bound
+   * @param high String inclusive upper bound
+   * @return this builder
+   */
+  public SoqlBuilder whereBetween(String column, String low, String high) {
+    return whereAtLeast(column, low).whereAtMost(column, high);
+  }
+
+  private SoqlBuilder where(String column, String operator, String value) {
+    where.add(identifier(column) + " " + operator + " " + literal(value));
+
+    return this;
+  }
+
+  public SoqlBuilder group(String... columns) {
+    for(String column : columns) {
+      group.add(identifier(column));
+    }
+
+    return this;
+  }
+
+  public SoqlBuilder group(CrimeField... fields) {
+    return group(fieldNames(fields));
+  }
+
+  /**
+   * Keeps only groups where an aggregate, referred to by its alias, is at least a minimum.
+   *
+   * @param alias String alias given in {@link #selectCount(String, String)}
+   * @param min long inclusive minimum
+   * @return this builder
+   */
+  public SoqlBuilder havingAtLeast(String alias, long min) {
+    having.add(identifier(alias) + " >= " + min);
+
+    return this;
+  }
+
+  public SoqlBuilder orderBy(String column) {
+    order.add(identifier(column));
+
+    return this;
+  }
+
+  public SoqlBuilder orderBy(CrimeField... fields) {
+    for(String column : fieldNames(fields)) {
+      orderBy(column);
+    }
+
+    return this;
+  }
+
+  public SoqlBuilder orderByDescending(String column) {
+    order.add(identifier(column) + " DESC");
+
+    return this;
+  }
+
+  public SoqlBuilder limit(int limit) {
+    if(limit < 0) {
+      throw new IllegalArgumentException("limit must not be negative: " + limit);
+    }
+    this.limit = limit;
+
+    return this;
+  }
+
+  public SoqlBuilder offset(int offset) {
+    if(offset < 0) {
+      throw new IllegalArgumentException("offset must not be negative: " + offset);
+    }
+    this.offset = offset;
+
+    return this;
+  }
+
+  /**
+   * @param appToken String Socrata application token, null for none
+   * @return this builder
+   */
+  public SoqlBuilder appToken(String appToken) {
+    this.appToken = appToken;
+
+    return this;
+  }
+
+  /**
+   * @return the encoded query string, starting with "?", or "" if nothing was set
+   */
+  public String build() {
+    StringBuilder query = new StringBuilder();
+
+    appendParameter(query, "$select", join(select, ","));
+    appendParameter(query, "$where", join(where, " AND "));
+    appendParameter(query, "$group", join(group, ","));
+    appendParameter(query, "$having", join(having, " AND "));
+    appendParameter(query, "$order", join(order, ","));
+    appendParameter(query, "$limit", (limit >= 0) ? Integer.toString(limit) : null);
+    appendParameter(query, "$offset", (offset >= 0) ? Integer.toString(offset) : null);
+    appendParameter(query, "$$app_token", appToken);
+
+    return query.toString();
+  }
+
+  @Override
+  public String toString() {
+    return build();
+  }
+
+  private static void appendParameter(StringBuilder query, String name, String value) {
+    if(value == null) {
+      return;
+    }
+
+    query.append((query.length() == 0) ? '?' : '&').append(name).append('=').append(encode(value));
+  }
+
+  private static String join(List<String> parts, String separator) {
+    if(parts.isEmpty()) {
+      return null;
+    }
+
+    StringBuilder joined = new StringBuilder();
+    for(String part : parts) {
+      joined.append((joined.length() > 0) ? separator : "").append(part);
+    }
+
+    return joined.toString();
+  }
+
+  private static String[] fieldNames(CrimeField[] fields) {
+    String[] names = new String[fields.length];
+
+    for(int i = 0; i < fields.length; i++) {
+      names[i] = fields[i].getFieldName();
+    }
+
+    return names;
+  }
+
+  private static String identifier(String name) {
+    if(name == null || ! IDENTIFIER.matcher(name).matches()) {
+      throw new IllegalArgumentException("Not a SoQL identifier: " + name);
+    }
+
+    return name;
+  }
+
+  static String literal(String value) {
+    if(value == null) {
+      throw new IllegalArgumentException("SoQL literal must not be null");
+    }
+
+    return "'" + value.replace("'", "''") + "'";
+  }
+
+  private static String encode(String value) {
+    try {
+      // Spaces as %20 rather than "+", which not every server decodes in a query
+      return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+    } catch(UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
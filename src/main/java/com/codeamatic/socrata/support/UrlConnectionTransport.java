@@ -0,0 +1,197 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.metrics.Histogram;
+import com.codeamatic.metrics.Metrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * {@link HttpTransport} backed by the JDK's {@link HttpURLConnection}.
+ *
+ * The JDK keeps idle connections in a per-host keep-alive pool as long as
+ * response streams are read and closed, so the pool is shared by every instance
+ * in the JVM and survives across warm Lambda invocations.  The pool size is
+ * controlled by the {@code http.maxConnections} system property.  All HTTPS
+ * connections use one {@link SSLSocketFactory} so TLS sessions are resumed
+ * rather than renegotiated.  Responses are requested gzip encoded.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+  public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 2000;
+  public static final int DEFAULT_READ_TIMEOUT_MILLIS = 5000;
+
+  private static final SSLSocketFactory sslSocketFactory = createSocketFactory();
+
+  private static final Histogram connectLatency = Metrics.histogram(Metrics.SOCRATA_CONNECT);
+  private static final Histogram firstByteLatency = Metrics.histogram(Metrics.SOCRATA_FIRST_BYTE);
+  private static final LongAdder payloadBytes = Metrics.counter(Metrics.SOCRATA_PAYLOAD_BYTES);
+
+  private static final byte[] EMPTY_GZIP = {
+          0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0
+  };
+
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+
+  public UrlConnectionTransport() {
+    this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * @param connectTimeoutMillis int connect timeout in milliseconds
+   * @param readTimeoutMillis int read timeout in milliseconds
+   */
+  public UrlConnectionTransport(int connectTimeoutMillis, int readTimeoutMillis) {
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public InputStream get(String url) throws IOException {
+    return get(url, connectTimeoutMillis, readTimeoutMillis);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The limit only ever shortens the configured timeouts.  A connection that is
+   * abandoned mid-request is not interruptible, so this is also what frees the
+   * calling thread once the deadline has passed.
+   */
+  public InputStream get(String url, long timeoutMillis) throws IOException {
+    int limit = (int) Math.max(1, Math.min(Integer.MAX_VALUE, timeoutMillis));
+
+    return get(url, Math.min(connectTimeoutMillis, limit), Math.min(readTimeoutMillis, limit));
+  }
+
+  private InputStream get(String url, int connectTimeout, int readTimeout) throws IOException {
+    URLConnection urlConnection = new URL(url).openConnection();
+
+    if(! (urlConnection instanceof HttpURLConnection)) {
+      throw new IOException("Unsupported protocol: " + url);
+    }
+
+    HttpURLConnection connection = (HttpURLConnection) urlConnection;
+
+    if(connection instanceof HttpsURLConnection && sslSocketFactory != null) {
+      ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+    }
+
+    connection.setConnectTimeout(connectTimeout);
+    connection.setReadTimeout(readTimeout);
+    connection.setRequestProperty("Accept", "application/json");
+    connection.setRequestProperty("Accept-Encoding", "gzip");
+
+    long start = System.nanoTime();
+    connection.connect();
+    long connected = System.nanoTime();
+    int status = connection.getResponseCode();
+
+    connectLatency.record((connected - start) / 1000);
+    firstByteLatency.record((System.nanoTime() - connected) / 1000);
+
+    if(status < 200 || status >= 300) {
+      discard(connection.getErrorStream());
+      throw new IOException("Unexpected HTTP status " + status + " for " + url);
+    }
+
+    InputStream body = new CountingInputStream(connection.getInputStream());
+
+    if("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+      body = new GZIPInputStream(body);
+    }
+
+    return body;
+  }
+
+  /**
+   * Opens, but doesn't connect, a connection to the given URL so the protocol
+   * handler, TLS and decompression classes are loaded before the first request.
+   *
+   * @param url String URL of the service that will be called
+   * @throws IOException if the URL is malformed
+   */
+  public void warmUp(String url) throws IOException {
+    URLConnection urlConnection = new URL(url).openConnection();
+
+    if(urlConnection instanceof HttpsURLConnection && sslSocketFactory != null) {
+      ((HttpsURLConnection) urlConnection).setSSLSocketFactory(sslSocketFactory);
+    }
+    urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+    new GZIPInputStream(new ByteArrayInputStream(EMPTY_GZIP)).close();
+  }
+
+  /**
+   * Reads and closes an error stream so the connection can go back to the pool.
+   */
+  private static void discard(InputStream stream) {
+    if(stream == null) {
+      return;
+    }
+
+    byte[] buffer = new byte[1024];
+
+    try {
+      while(stream.read(buffer) != -1) {
+        // draining
+      }
+    } catch(IOException ignored) {
+      // The connection simply won't be reused
+    } finally {
+      try {
+        stream.close();
+      } catch(IOException ignored) {
+        // Nothing more to do
+      }
+    }
+  }
+
+  private static SSLSocketFactory createSocketFactory() {
+    try {
+      return SSLContext.getDefault().getSocketFactory();
+    } catch(NoSuchAlgorithmException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Counts the body bytes as they are read, before any decompression.
+   */
+  private static final class CountingInputStream extends FilterInputStream {
+    private CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if(b >= 0) {
+        payloadBytes.increment();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if(read > 0) {
+        payloadBytes.add(read);
+      }
+      return read;
+    }
+  }
+}
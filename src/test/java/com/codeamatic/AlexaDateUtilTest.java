@@ -2,9 +2,13 @@ package com.codeamatic;
 
 import org.junit.Test;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class AlexaDateUtilTest  {
 
@@ -23,7 +27,7 @@ public class AlexaDateUtilTest  {
   @Test
   public void testDecadeFormatted() {
     String testDate = "201X";
-    assertEquals("2017-01-01", AlexaDateUtil.getFormattedDate(testDate));
+    assertEquals("2010-01-01", AlexaDateUtil.getFormattedDate(testDate));
   }
 
   @Test
@@ -35,18 +39,65 @@ public class AlexaDateUtilTest  {
   @Test
   public void testWeekendFormatted() {
     String testDate = "2017-W23-WE";
-    assertEquals(null, AlexaDateUtil.getFormattedDate(testDate));
+    assertEquals("2017-06-10", AlexaDateUtil.getFormattedDate(testDate));
   }
 
   @Test
   public void testSeasonFormatted() {
     String testDate = "2017-WI";
-    assertEquals(null, AlexaDateUtil.getFormattedDate(testDate));
+    assertEquals("2017-12-01", AlexaDateUtil.getFormattedDate(testDate));
   }
 
   @Test
   public void testTodayFormatted() {
     String testDate = "PRESENT_REF";
-    assertEquals(LocalDate.now().toString(), AlexaDateUtil.getFormattedDate(testDate));
+    assertEquals(LocalDate.now(DateStringUtil.ZONE).toString(), AlexaDateUtil.getFormattedDate(testDate));
+  }
+
+  @Test
+  public void testRanges() {
+    assertEquals(range("2017-03-02", "2017-03-02"), AlexaDateUtil.parse("2017-03-02"));
+    assertEquals(range("2016-02-01", "2016-02-29"), AlexaDateUtil.parse("2016-02"));
+    assertEquals(range("2017-01-01", "2017-12-31"), AlexaDateUtil.parse("2017"));
+    assertEquals(range("2010-01-01", "2019-12-31"), AlexaDateUtil.parse("201X"));
+    assertEquals(range("2017-06-05", "2017-06-11"), AlexaDateUtil.parse("2017-W23"));
+    assertEquals(range("2017-06-10", "2017-06-11"), AlexaDateUtil.parse("2017-W23-WE"));
+    assertEquals(range("2017-03-01", "2017-05-31"), AlexaDateUtil.parse("2017-SP"));
+    assertEquals(range("2017-06-01", "2017-08-31"), AlexaDateUtil.parse("2017-SU"));
+    assertEquals(range("2017-09-01", "2017-11-30"), AlexaDateUtil.parse("2017-FA"));
+    assertEquals(range("2017-12-01", "2018-02-28"), AlexaDateUtil.parse("2017-WI"));
+  }
+
+  @Test
+  public void testRelativeDates() {
+    Clock clock = Clock.fixed(Instant.parse("2017-06-15T12:00:00Z"), ZoneOffset.UTC);
+
+    assertEquals(range("2017-06-15", "2017-06-15"), AlexaDateUtil.parse("PRESENT_REF", clock));
+    assertEquals(range("2017-12-25", "2017-12-25"), AlexaDateUtil.parse("XXXX-12-25", clock));
+  }
+
+  @Test
+  public void testRelativeDatesInCityTime() {
+    // 10:30 pm on New Year's Eve in Cincinnati, already 2018 in UTC
+    Clock clock = Clock.fixed(Instant.parse("2018-01-01T03:30:00Z"), DateStringUtil.ZONE);
+
+    assertEquals(range("2017-12-31", "2017-12-31"), AlexaDateUtil.parse("PRESENT_REF", clock));
+    assertEquals(range("2017-12-25", "2017-12-25"), AlexaDateUtil.parse("XXXX-12-25", clock));
+  }
+
+  @Test
+  public void testInvalid() {
+    assertNull(AlexaDateUtil.parse(null));
+    assertNull(AlexaDateUtil.parse(""));
+    assertNull(AlexaDateUtil.parse("2017-13"));
+    assertNull(AlexaDateUtil.parse("2017-02-30"));
+    assertNull(AlexaDateUtil.parse("2017-W54"));
+    assertNull(AlexaDateUtil.parse("2017-XY"));
+    assertNull(AlexaDateUtil.parse("2017-03-02T10"));
+    assertNull(AlexaDateUtil.parse("yesterday"));
+  }
+
+  private static DateRange range(String start, String end) {
+    return DateRange.of(LocalDate.parse(start), LocalDate.parse(end));
   }
 }
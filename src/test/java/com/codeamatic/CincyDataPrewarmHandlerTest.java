@@ -0,0 +1,124 @@
+package com.codeamatic;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.ReportStore;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.support.PrecomputedSocrata;
+import com.codeamatic.socrata.support.SocrataClient;
+import com.codeamatic.socrata.support.StubSocrataServer;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class CincyDataPrewarmHandlerTest {
+
+  private static final Clock CLOCK = Clock.fixed(LocalDate.of(2011, 9, 23).atStartOfDay(ZoneId.of("UTC")).toInstant(),
+          ZoneId.of("UTC"));
+
+  @Test
+  public void testPrecomputesYesterdayWithOneRequest() throws Exception {
+    MemoryReportStore store = new MemoryReportStore();
+
+    try(StubSocrataServer server = new StubSocrataServer(StubSocrataServer.loadFixture("/socrata/crime-fixture.json"))) {
+      CincyDataPrewarmHandler handler = new CincyDataPrewarmHandler(new SocrataClient(null, server.getUrl()), store, CLOCK);
+
+      assertTrue(handler.handleRequest(null, null).endsWith("reports for 2011-09-22"));
+      assertEquals(1, server.getRequestCount());
+
+      // The same day straight from Socrata, to compare against
+      SocrataClient client = new SocrataClient(null, server.getUrl());
+      String[] day = {"2011-09-22", "2011-09-22"};
+      Map<String, CrimeReportSummary> reports = store.days.get(LocalDate.of(2011, 9, 22));
+
+      assertEquals(client.getCrimeReportSummary(null, day).getTotal(), reports.get(null).getTotal());
+      assertEquals(client.getCrimeReportSummary("Avondale", day).getTotal(), reports.get("avondale").getTotal());
+      assertTrue(reports.get("avondale").getTotal() > 0);
+      assertTrue(reports.size() > Neighborhoods.getNeighborhoods().size() / 2);
+      assertTrue(reports.get("winton hills").isEmpty());
+    }
+  }
+
+  @Test
+  public void testPrecomputedAnswersComeFirst() throws Exception {
+    MemoryReportStore store = new MemoryReportStore();
+    Map<String, CrimeReportSummary> reports = new HashMap<String, CrimeReportSummary>();
+    reports.put("avondale", new CrimeReportSummary.Builder(CrimeField.OFFENSE).add(2, CrimeField.OFFENSE.encode("THEFT")).build());
+    store.putDay(LocalDate.of(2011, 9, 22), reports);
+
+    Socrata socrata = new PrecomputedSocrata(store, new FallbackSocrata(), CLOCK);
+
+    assertEquals(2, socrata.getCrimeReportSummary(" Avondale", null).getTotal());
+    assertEquals(2, socrata.getCrimeReportSummary("avondale", new String[] {"2011-09-22", "2011-09-22"}).getTotal());
+    assertNotNull(socrata.getCrimeReportSummary("oakley", null));
+  }
+
+  @Test
+  public void testMissPassesCityDatesDown() {
+    // 10pm on September 22nd in Cincinnati, already the 23rd in UTC
+    Clock evening = Clock.fixed(Instant.parse("2011-09-23T02:00:00Z"), DateStringUtil.ZONE);
+    FallbackSocrata fallback = new FallbackSocrata();
+    Socrata socrata = new PrecomputedSocrata(new MemoryReportStore(), fallback, evening);
+
+    socrata.getCrimeReportSummary("oakley", null);
+    assertArrayEquals(new String[] {"2011-09-21", "2011-09-21"}, fallback.dates);
+
+    socrata.getCrimeReportSummary("oakley", new String[] {"2011-09-01", null});
+    assertArrayEquals(new String[] {"2011-09-01", "2011-09-22"}, fallback.dates);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReportStoreRequiresSharedDirectory() {
+    CincyDataPrewarmHandler.createReportStore(null);
+  }
+
+  private static final class MemoryReportStore implements ReportStore {
+    private final Map<LocalDate, Map<String, CrimeReportSummary>> days = new HashMap<LocalDate, Map<String, CrimeReportSummary>>();
+
+    public CrimeReportSummary get(LocalDate day, String neighborhood) {
+      Map<String, CrimeReportSummary> summaries = days.get(day);
+
+      return (summaries != null) ? summaries.get(neighborhood) : null;
+    }
+
+    public void putDay(LocalDate day, Map<String, CrimeReportSummary> summaries) {
+      days.put(day, new HashMap<String, CrimeReportSummary>(summaries));
+    }
+  }
+
+  /**
+   * Answers only what wasn't precomputed, with an empty summary.
+   */
+  private static final class FallbackSocrata implements Socrata {
+    private String[] dates;
+
+    public List<CrimeReport> getCrimeReports() {
+      throw new AssertionError();
+    }
+
+    public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+      throw new AssertionError();
+    }
+
+    public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+      if("avondale".equalsIgnoreCase(neighborhood.trim())) {
+        throw new AssertionError("Should have been precomputed");
+      }
+      this.dates = dates;
+      return CrimeReportSummary.EMPTY;
+    }
+  }
+}
@@ -5,14 +5,51 @@ import com.codeamatic.exceptions.DateStringNotSupportedException;
 
 import org.junit.Test;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 public class DateStringUtilTest {
 
+  // Thursday 2017-06-15 in UTC, still Wednesday 2017-06-14 in Cincinnati
+  private static final Clock clock = Clock.fixed(Instant.parse("2017-06-15T03:00:00Z"), ZoneOffset.UTC);
+
   @Test
   public void testLastWeekFormatted() throws DateStringNotSupportedException, DateRangeException {
     assertNotNull(DateStringUtil.getFormattedDates("last week"));
   }
 
+  @Test
+  public void testRangesUseCincinnatiDay() throws DateStringNotSupportedException {
+    assertEquals(range("2017-06-04", "2017-06-10"), DateStringUtil.getDateRange("last week", clock));
+    assertEquals(range("2017-06-09", "2017-06-11"), DateStringUtil.getDateRange("last weekend", clock));
+    assertEquals(range("2017-05-01", "2017-05-31"), DateStringUtil.getDateRange("last month", clock));
+    assertEquals(range("2017-06-12", "2017-06-14"), DateStringUtil.getDateRange("since monday", clock));
+    assertEquals(range("2017-06-07", "2017-06-14"), DateStringUtil.getDateRange("since wednesday", clock));
+  }
+
+  @Test
+  public void testWeekends() throws DateStringNotSupportedException {
+    assertEquals(range("2017-06-16", "2017-06-18"), DateStringUtil.getDateRange("this weekend", clock));
+    assertEquals(range("2017-06-23", "2017-06-25"), DateStringUtil.getDateRange("next weekend", clock));
+  }
+
+  @Test
+  public void testSlotValuesAsSpoken() throws DateStringNotSupportedException {
+    assertEquals(DateStringUtil.getDateRange("last weekend", clock), DateStringUtil.getDateRange("Last Weeekend", clock));
+    assertEquals(DateStringUtil.getDateRange("since last year", clock), DateStringUtil.getDateRange(" Since Last Year", clock));
+  }
+
+  @Test(expected = DateStringNotSupportedException.class)
+  public void testNotSupported() throws DateStringNotSupportedException {
+    DateStringUtil.getDateRange("the day after tomorrow", clock);
+  }
+
+  private static DateRange range(String start, String end) {
+    return DateRange.of(LocalDate.parse(start), LocalDate.parse(end));
+  }
 }
@@ -0,0 +1,190 @@
+package com.codeamatic;
+
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.support.CachingSocrata;
+import com.codeamatic.socrata.support.CoalescingSocrata;
+import com.codeamatic.socrata.support.SocrataClient;
+import com.codeamatic.socrata.support.StubSocrataServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays Alexa request envelopes through {@link CincyDataSpeechletRequestStreamHandler}
+ * in-process against a {@link StubSocrataServer}, and reports latency percentiles and
+ * throughput.
+ *
+ * Arguments are key=value pairs, e.g.
+ * {@code requests=5000 threads=16 latency=80 jitter=40 errorRate=0.01 cache=false}
+ */
+public final class LoadDriver {
+
+  static final String[] ENVELOPES = {
+          "/envelopes/launch.json",
+          "/envelopes/crime-report.json",
+          "/envelopes/crime-report-neighborhood.json",
+          "/envelopes/help.json"
+  };
+
+  private LoadDriver() {}
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<String, String>();
+    for(String arg : args) {
+      String[] pair = arg.split("=", 2);
+      options.put(pair[0], (pair.length > 1) ? pair[1] : "true");
+    }
+
+    int requests = Integer.parseInt(option(options, "requests", "2000"));
+    int threads = Integer.parseInt(option(options, "threads", "8"));
+    int warmup = Integer.parseInt(option(options, "warmup", "200"));
+
+    try(StubSocrataServer server = new StubSocrataServer(
+            StubSocrataServer.generateFixture(LocalDate.now(DateStringUtil.ZONE).minusDays(1), 30, 200, 1))) {
+      server.setLatency(Long.parseLong(option(options, "latency", "50")), Long.parseLong(option(options, "jitter", "25")));
+      server.setErrorRate(Double.parseDouble(option(options, "errorRate", "0")));
+
+      Socrata socrata = new SocrataClient(null, server.getUrl());
+      if(Boolean.parseBoolean(option(options, "cache", "true"))) {
+        socrata = new CachingSocrata(new CoalescingSocrata(socrata));
+      }
+      CincyDataSpeechletRequestStreamHandler handler = new CincyDataSpeechletRequestStreamHandler(socrata);
+
+      run(handler, warmup, threads);
+      Result result = run(handler, requests, threads);
+
+      System.out.println(result);
+      System.out.println("Upstream requests: " + server.getRequestCount());
+    }
+  }
+
+  /**
+   * Sends requests round robin over the envelopes from a pool of threads.
+   *
+   * @param handler the handler under test
+   * @param requests int total number of requests
+   * @param threads int number of concurrent callers
+   * @return latencies and throughput
+   * @throws Exception if an envelope can't be loaded or a caller fails
+   */
+  static Result run(final CincyDataSpeechletRequestStreamHandler handler, final int requests, int threads)
+          throws Exception {
+    final byte[][] envelopes = loadEnvelopes();
+    final long[] latencies = new long[requests];
+    final AtomicInteger next = new AtomicInteger();
+    final AtomicInteger errors = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<Void>> callers = new ArrayList<Future<Void>>();
+
+    long started = System.nanoTime();
+    for(int t = 0; t < threads; t++) {
+      callers.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          for(int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long start = System.nanoTime();
+
+            handler.handleRequest(new ByteArrayInputStream(envelopes[i % envelopes.length]), out, null);
+            latencies[i] = System.nanoTime() - start;
+
+            if(! new String(out.toByteArray(), StandardCharsets.UTF_8).contains("\"outputSpeech\"")) {
+              errors.incrementAndGet();
+            }
+          }
+          return null;
+        }
+      }));
+    }
+    for(Future<Void> caller : callers) {
+      caller.get();
+    }
+    long elapsed = System.nanoTime() - started;
+    executor.shutdown();
+
+    return new Result(latencies, elapsed, errors.get());
+  }
+
+  private static byte[][] loadEnvelopes() throws IOException {
+    byte[][] envelopes = new byte[ENVELOPES.length][];
+
+    for(int i = 0; i < ENVELOPES.length; i++) {
+      try(InputStream in = LoadDriver.class.getResourceAsStream(ENVELOPES[i])) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for(int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+          out.write(buffer, 0, read);
+        }
+        envelopes[i] = out.toByteArray();
+      }
+    }
+
+    return envelopes;
+  }
+
+  private static String option(Map<String, String> options, String name, String defaultValue) {
+    return options.containsKey(name) ? options.get(name) : defaultValue;
+  }
+
+  /**
+   * Latency distribution and throughput of one run.
+   */
+  static final class Result {
+    private final long[] sortedLatencies;
+    private final long elapsedNanos;
+    private final int errors;
+
+    Result(long[] latencies, long elapsedNanos, int errors) {
+      this.sortedLatencies = latencies.clone();
+      this.elapsedNanos = elapsedNanos;
+      this.errors = errors;
+      Arrays.sort(sortedLatencies);
+    }
+
+    int getRequests() {
+      return sortedLatencies.length;
+    }
+
+    int getErrors() {
+      return errors;
+    }
+
+    /**
+     * @param percentile double between 0 and 100
+     * @return latency in milliseconds, nearest rank
+     */
+    double getPercentileMillis(double percentile) {
+      if(sortedLatencies.length == 0) {
+        return 0;
+      }
+
+      int rank = (int) Math.ceil(percentile / 100 * sortedLatencies.length);
+      return sortedLatencies[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    double getThroughput() {
+      return sortedLatencies.length / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("requests=%d errors=%d throughput=%.1f/s p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+              getRequests(), errors, getThroughput(), getPercentileMillis(50), getPercentileMillis(95),
+              getPercentileMillis(99), getPercentileMillis(100));
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.codeamatic;
+
+import com.codeamatic.socrata.support.SocrataClient;
+import com.codeamatic.socrata.support.StubSocrataServer;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadDriverTest {
+
+  @Test
+  public void testReplaysEnvelopes() throws Exception {
+    try(StubSocrataServer server = new StubSocrataServer(
+            StubSocrataServer.generateFixture(LocalDate.now(DateStringUtil.ZONE).minusDays(1), 2, 20, 1))) {
+      CincyDataSpeechletRequestStreamHandler handler =
+              new CincyDataSpeechletRequestStreamHandler(new SocrataClient(null, server.getUrl()));
+
+      LoadDriver.Result result = LoadDriver.run(handler, 40, 4);
+
+      assertEquals(40, result.getRequests());
+      assertEquals(0, result.getErrors());
+      assertTrue(result.getPercentileMillis(50) <= result.getPercentileMillis(99));
+      // Half of the envelopes are crime report intents
+      assertEquals(20, server.getRequestCount());
+    }
+  }
+}
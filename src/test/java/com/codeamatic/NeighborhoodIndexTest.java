@@ -0,0 +1,72 @@
+package com.codeamatic;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NeighborhoodIndexTest {
+
+  @Test
+  public void testNormalize() {
+    assertEquals("mountwashington", NeighborhoodIndex.normalize("Mt.  Washington"));
+    assertEquals("mountwashington", NeighborhoodIndex.normalize("mount washington"));
+    assertEquals("overtherhine", NeighborhoodIndex.normalize("Over-The-Rhine"));
+    assertEquals("obryonville", NeighborhoodIndex.normalize("O'Bryonville"));
+    assertEquals("southcumminsville", NeighborhoodIndex.normalize("S.. Cumminsville"));
+  }
+
+  @Test
+  public void testAbbreviationsAndAliases() {
+    assertEquals("Mt.  Lookout", Neighborhoods.getNeighborhood("Mt Lookout"));
+    assertEquals("Over-The-Rhine", Neighborhoods.getNeighborhood("OTR"));
+    assertEquals("Over-The-Rhine", Neighborhoods.getNeighborhood("overtherhine"));
+    assertEquals("Camp  Washington", Neighborhoods.getNeighborhood("camp washington"));
+  }
+
+  @Test
+  public void testNearMisses() {
+    assertEquals("Madisonville", Neighborhoods.getNeighborhood("Madisonvile"));
+    assertEquals("Corryville", Neighborhoods.getNeighborhood("Coryville"));
+    assertEquals("Sedamsville", Neighborhoods.getNeighborhood("Sedamsvill"));
+  }
+
+  @Test
+  public void testUnknown() {
+    assertNull(Neighborhoods.getNeighborhood(null));
+    assertNull(Neighborhoods.getNeighborhood(""));
+    assertNull(Neighborhoods.getNeighborhood("Blue Ash"));
+  }
+
+  @Test
+  public void testCandidatesAreRanked() {
+    List<NeighborhoodMatch> candidates = Neighborhoods.getCandidates("Westwod", 3);
+
+    assertTrue(candidates.size() > 1);
+    assertTrue(candidates.size() <= 3);
+    assertEquals("Westwood", candidates.get(0).getName());
+    for(int i = 1; i < candidates.size(); i++) {
+      assertTrue(candidates.get(i - 1).getConfidence() >= candidates.get(i).getConfidence());
+    }
+  }
+
+  @Test
+  public void testSharedNameOffersEveryNeighborhood() {
+    assertNull(Neighborhoods.getNeighborhood("Price Hill"));
+    assertEquals("West Price Hill", Neighborhoods.getNeighborhood("West Price Hill"));
+
+    List<NeighborhoodMatch> candidates = Neighborhoods.getCandidates("price hill", 5);
+    List<String> names = new ArrayList<String>();
+    for(NeighborhoodMatch candidate : candidates) {
+      names.add(candidate.getName());
+    }
+
+    assertTrue(names.containsAll(Arrays.asList("East Price Hill", "West Price Hill", "Lower Price  Hill")));
+    assertEquals(candidates.get(0).getConfidence(), candidates.get(2).getConfidence(), 0.0);
+  }
+}
@@ -0,0 +1,133 @@
+package com.codeamatic;
+
+import com.codeamatic.socrata.support.StubSocrataServer;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures cold starts: each run is a fresh JVM that initializes the handler and
+ * answers one crime report request against a {@link StubSocrataServer}.  Runs are
+ * repeated with the init phase warm up off and on, and optionally with a class data
+ * sharing archive, and the medians are reported.
+ *
+ * Usage: {@code StartupBenchmark [runs=5] [archive=build/cds/cincy-data.jsa]}.  The
+ * archive must have been dumped with the same class path the benchmark runs with.
+ */
+public final class StartupBenchmark {
+
+  private static final String PROBE = "probe";
+
+  private StartupBenchmark() {}
+
+  public static void main(String[] args) throws Exception {
+    if(args.length > 0 && PROBE.equals(args[0])) {
+      probe();
+      return;
+    }
+
+    int runs = 5;
+    String archive = null;
+    for(String arg : args) {
+      if(arg.startsWith("runs=")) {
+        runs = Integer.parseInt(arg.substring(5));
+      } else if(arg.startsWith("archive=")) {
+        archive = arg.substring(8);
+      }
+    }
+
+    // Empty, so every probe asks the stub server
+    Path reportStore = Files.createTempDirectory("cincy-reports");
+
+    try(StubSocrataServer server = new StubSocrataServer(
+            StubSocrataServer.generateFixture(LocalDate.now(DateStringUtil.ZONE).minusDays(1), 1, 200, 1))) {
+      System.out.println(measure("lazy", server, reportStore, runs, "-Dcincy.warmup=false"));
+      System.out.println(measure("warm up", server, reportStore, runs, "-Dcincy.warmup=true"));
+      if(archive != null) {
+        System.out.println(measure("warm up + CDS", server, reportStore, runs, "-Dcincy.warmup=true", "-Xshare:auto",
+                "-XX:SharedArchiveFile=" + archive));
+      }
+    }
+  }
+
+  private static String measure(String name, StubSocrataServer server, Path reportStore, int runs, String... jvmArgs)
+          throws Exception {
+    List<Double> init = new ArrayList<Double>();
+    List<Double> firstRequest = new ArrayList<Double>();
+    List<Double> total = new ArrayList<Double>();
+
+    for(int i = 0; i < runs; i++) {
+      List<String> command = new ArrayList<String>();
+      command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+      command.addAll(Arrays.asList(jvmArgs));
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(StartupBenchmark.class.getName());
+      command.add(PROBE);
+
+      ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+      builder.environment().put("SOCRATA_CINCY_CRIME_API", server.getUrl());
+      builder.environment().put("CINCY_REPORT_STORE_DIR", reportStore.toString());
+      Process process = builder.start();
+
+      String result = null;
+      try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+        for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+          if(line.startsWith(PROBE + " ")) {
+            result = line;
+          }
+        }
+      }
+      if(process.waitFor() != 0 || result == null) {
+        throw new IllegalStateException("Probe failed for " + name);
+      }
+
+      String[] values = result.split(" ");
+      init.add(Double.parseDouble(values[1]));
+      firstRequest.add(Double.parseDouble(values[2]));
+      total.add(Double.parseDouble(values[3]));
+    }
+
+    return String.format("%-14s init=%.1fms firstRequest=%.1fms sinceJvmStart=%.1fms (median of %d)",
+            name, median(init), median(firstRequest), median(total), runs);
+  }
+
+  private static double median(List<Double> values) {
+    Collections.sort(values);
+    return values.get(values.size() / 2);
+  }
+
+  /**
+   * Child JVM: prints "probe <init ms> <first request ms> <ms since JVM start>".
+   */
+  private static void probe() throws Exception {
+    long start = System.nanoTime();
+    CincyDataSpeechletRequestStreamHandler handler = new CincyDataSpeechletRequestStreamHandler();
+    long initialized = System.nanoTime();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try(InputStream request = StartupBenchmark.class.getResourceAsStream("/envelopes/crime-report.json")) {
+      handler.handleRequest(request, out, null);
+    }
+    long answered = System.nanoTime();
+
+    if(! new String(out.toByteArray(), StandardCharsets.UTF_8).contains("crimes reported")) {
+      throw new IllegalStateException("Unexpected response: " + out);
+    }
+
+    long sinceJvmStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    System.out.println(PROBE + " " + (initialized - start) / 1e6 + " " + (answered - initialized) / 1e6 + " " + sinceJvmStart);
+  }
+}
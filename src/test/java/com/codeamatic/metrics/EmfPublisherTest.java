@@ -0,0 +1,146 @@
+package com.codeamatic.metrics;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EmfPublisherTest {
+
+  @Before
+  public void setUp() {
+    // Other tests leave metrics behind in the registry
+    EmfPublisher.drain(0);
+  }
+
+  @Test
+  public void testNothingRecordedWritesNothing() {
+    assertTrue(EmfPublisher.drain(0).isEmpty());
+  }
+
+  @Test
+  public void testServiceAndIntentDocuments() {
+    Metrics.histogram(Metrics.SOCRATA_CONNECT).record(2000);
+    Metrics.counter(Metrics.SOCRATA_PAYLOAD_BYTES).add(512);
+    Metrics.counter(Metrics.CACHE_HITS).increment();
+    Metrics.intentLatency("CrimeReportIntent").record(40000);
+    Metrics.intentLatency("CrimeReportIntent").record(60000);
+
+    List<JsonObject> documents = parse(EmfPublisher.drain(1497000000000L));
+    assertEquals(2, documents.size());
+
+    JsonObject service = documents.get(0);
+    JsonObject directive = directive(service);
+    assertEquals(1497000000000L, service.getAsJsonObject("_aws").get("Timestamp").getAsLong());
+    assertEquals(EmfPublisher.NAMESPACE, directive.get("Namespace").getAsString());
+    assertEquals(0, directive.getAsJsonArray("Dimensions").get(0).getAsJsonArray().size());
+    assertEquals(2.0, values(service, Metrics.SOCRATA_CONNECT).get(0).getAsDouble(), 0.13);
+    assertEquals(1, counts(service, Metrics.SOCRATA_CONNECT).get(0).getAsLong());
+    assertEquals(512, service.get(Metrics.SOCRATA_PAYLOAD_BYTES).getAsLong());
+    assertEquals(1, service.get(Metrics.CACHE_HITS).getAsLong());
+    assertEquals("Bytes", unit(directive, Metrics.SOCRATA_PAYLOAD_BYTES));
+    assertEquals("Count", unit(directive, Metrics.CACHE_HITS));
+    assertEquals("Milliseconds", unit(directive, Metrics.SOCRATA_CONNECT));
+
+    JsonObject intent = documents.get(1);
+    assertEquals("CrimeReportIntent", intent.get("Intent").getAsString());
+    assertEquals("Intent", directive(intent).getAsJsonArray("Dimensions").get(0).getAsJsonArray().get(0).getAsString());
+    assertEquals(2, values(intent, Metrics.INTENT_LATENCY).size());
+    assertNull(intent.get(Metrics.SOCRATA_CONNECT));
+
+    // Everything was drained
+    assertTrue(EmfPublisher.drain(0).isEmpty());
+  }
+
+  @Test
+  public void testRepeatedValuesAreCounted() {
+    for(int i = 0; i < 250; i++) {
+      Metrics.intentLatency("AMAZON.HelpIntent").record(3000);
+    }
+    Metrics.intentLatency("AMAZON.HelpIntent").record(900000);
+
+    JsonObject intent = parse(EmfPublisher.drain(0)).get(0);
+    assertEquals(2, values(intent, Metrics.INTENT_LATENCY).size());
+    assertEquals(250, counts(intent, Metrics.INTENT_LATENCY).get(0).getAsLong());
+    assertEquals(900.0, values(intent, Metrics.INTENT_LATENCY).get(1).getAsDouble(), 900.0 / 16);
+  }
+
+  @Test
+  public void testValuesAreCappedWithoutDroppingTail() {
+    // Spread over a few hundred buckets, up to 6.2 seconds
+    for(int i = 0; i < 250; i++) {
+      Metrics.intentLatency("AMAZON.HelpIntent").record(100L * i * i);
+    }
+
+    JsonObject intent = parse(EmfPublisher.drain(0)).get(0);
+    JsonArray values = values(intent, Metrics.INTENT_LATENCY);
+    long total = 0;
+    for(int i = 0; i < counts(intent, Metrics.INTENT_LATENCY).size(); i++) {
+      total += counts(intent, Metrics.INTENT_LATENCY).get(i).getAsLong();
+    }
+
+    assertTrue(values.size() <= 100);
+    assertEquals(values.size(), counts(intent, Metrics.INTENT_LATENCY).size());
+    assertEquals(250, total);
+    assertEquals(6200.1, values.get(values.size() - 1).getAsDouble(), 6200.1 / 4);
+  }
+
+  @Test
+  public void testDisabledDiscards() {
+    Metrics.counter(Metrics.SOCRATA_ERRORS).increment();
+
+    EmfPublisher.setEnabled(false);
+    try {
+      EmfPublisher.flush();
+    } finally {
+      EmfPublisher.setEnabled(true);
+    }
+
+    assertFalse(EmfPublisher.drain(0).iterator().hasNext());
+  }
+
+  private static List<JsonObject> parse(List<String> documents) {
+    List<JsonObject> parsed = new ArrayList<JsonObject>();
+
+    for(String document : documents) {
+      parsed.add(new JsonParser().parse(document).getAsJsonObject());
+    }
+
+    return parsed;
+  }
+
+  private static JsonArray values(JsonObject document, String name) {
+    return document.getAsJsonObject(name).getAsJsonArray("Values");
+  }
+
+  private static JsonArray counts(JsonObject document, String name) {
+    return document.getAsJsonObject(name).getAsJsonArray("Counts");
+  }
+
+  private static JsonObject directive(JsonObject document) {
+    return document.getAsJsonObject("_aws").getAsJsonArray("CloudWatchMetrics").get(0).getAsJsonObject();
+  }
+
+  private static String unit(JsonObject directive, String name) {
+    JsonArray definitions = directive.getAsJsonArray("Metrics");
+
+    for(int i = 0; i < definitions.size(); i++) {
+      JsonObject definition = definitions.get(i).getAsJsonObject();
+      if(name.equals(definition.get("Name").getAsString())) {
+        return definition.get("Unit").getAsString();
+      }
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,62 @@
+package com.codeamatic.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+  @Test
+  public void testSmallValuesAreExact() {
+    for(int value = 0; value < 16; value++) {
+      assertEquals(value, Histogram.representative(Histogram.bucket(value)));
+    }
+  }
+
+  @Test
+  public void testBucketsStayWithinSixPercent() {
+    for(long value = 16; value < 10000000L; value = value * 3 / 2 + 7) {
+      long representative = Histogram.representative(Histogram.bucket(value));
+      assertTrue(value + " -> " + representative, Math.abs(representative - value) <= value / 16);
+    }
+
+    assertTrue(Histogram.bucket(Long.MAX_VALUE) < (Long.SIZE - 4) * 16);
+  }
+
+  @Test
+  public void testPercentiles() {
+    Histogram histogram = new Histogram();
+
+    for(int value = 1; value <= 100; value++) {
+      histogram.record(value * 1000);
+    }
+
+    Histogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(100, snapshot.getCount());
+    assertNear(50000, snapshot.getPercentile(50));
+    assertNear(99000, snapshot.getPercentile(99));
+    assertNear(1000, snapshot.getPercentile(0));
+    assertNear(5050000, snapshot.getSum());
+  }
+
+  @Test
+  public void testDrainResets() {
+    Histogram histogram = new Histogram();
+    histogram.record(3);
+    histogram.record(-5);
+
+    Histogram.Snapshot drained = histogram.drain();
+    assertEquals(2, drained.getCount());
+    assertArrayEquals(new long[] {0, 3}, drained.getValues());
+    assertArrayEquals(new long[] {1, 1}, drained.getCounts());
+
+    assertTrue(histogram.drain().isEmpty());
+    assertEquals(0, histogram.snapshot().getPercentile(50));
+  }
+
+  private static void assertNear(long expected, long actual) {
+    assertTrue(expected + " != " + actual, Math.abs(expected - actual) <= expected / 16);
+  }
+}
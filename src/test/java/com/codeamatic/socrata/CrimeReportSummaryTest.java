@@ -0,0 +1,65 @@
+package com.codeamatic.socrata;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CrimeReportSummaryTest {
+
+  @Test
+  public void testBuilderMergesRepeatedGroups() {
+    int theft = CrimeField.OFFENSE.encode("THEFT");
+    int assault = CrimeField.OFFENSE.encode("ASSAULT");
+
+    CrimeReportSummary summary = new CrimeReportSummary.Builder(CrimeField.OFFENSE)
+            .add(2, theft)
+            .add(5, assault)
+            .add(3, theft)
+            .build();
+
+    assertEquals(2, summary.size());
+    assertEquals(10, summary.getTotal());
+    assertEquals("THEFT", summary.getValue(CrimeField.OFFENSE, 0));
+    assertEquals(5, summary.getCount(0));
+  }
+
+  @Test
+  public void testFromCrimeReports() {
+    CrimeReport grouped = new CrimeReport();
+    grouped.setOffense("THEFT");
+    grouped.setNeighborhood("AVONDALE");
+    grouped.setCount("4");
+
+    CrimeReport incident = new CrimeReport();
+    incident.setOffense("THEFT");
+    incident.setNeighborhood("OAKLEY");
+
+    CrimeReportSummary summary = CrimeReportSummary.fromCrimeReports(Arrays.asList(grouped, incident),
+            CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE);
+
+    assertEquals(5, summary.getTotal());
+    assertEquals(1, summary.getCount(CrimeField.NEIGHBORHOOD, "OAKLEY"));
+
+    Map<String, Integer> offenses = summary.getCounts(CrimeField.OFFENSE);
+    assertEquals(Integer.valueOf(5), offenses.get("THEFT"));
+  }
+
+  @Test
+  public void testDictionaryCodesAreStable() {
+    Dictionary dictionary = new Dictionary();
+    int first = dictionary.encode("DISTRICT 1");
+
+    assertEquals(first, dictionary.encode(new String("DISTRICT 1")));
+    assertSame("DISTRICT 1", dictionary.decode(first));
+    assertEquals(-1, dictionary.find("DISTRICT 2"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotGroupedByField() {
+    CrimeReportSummary.EMPTY.getCount(CrimeField.BEAT, "1");
+  }
+}
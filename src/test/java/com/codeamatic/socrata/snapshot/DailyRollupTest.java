@@ -0,0 +1,90 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DailyRollupTest {
+
+  private static final String[] NEIGHBORHOODS = {"ROLLUP A", "ROLLUP B", "ROLLUP C"};
+  private static final String[] OFFENSES = {"ROLLUP THEFT", "ROLLUP ASSAULT"};
+  private static final int FIRST_DAY = (int) LocalDate.parse("2016-12-01").toEpochDay();
+
+  @Test
+  public void testMatchesScan() {
+    IncidentTable table = randomTable(new Random(42), 500, 60);
+    DailyRollup rollup = DailyRollup.build(table);
+
+    for(int start = FIRST_DAY - 2; start < FIRST_DAY + 62; start += 7) {
+      for(int end = start; end < FIRST_DAY + 64; end += 5) {
+        for(int neighborhood = -1; neighborhood < NEIGHBORHOODS.length; neighborhood++) {
+          int code = (neighborhood < 0) ? -1 : CrimeField.NEIGHBORHOOD.encode(NEIGHBORHOODS[neighborhood]);
+
+          assertArrayEquals(scan(table, code, start, end), rollup.countByOffense(code, start, end));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testIncrementalUpdateMatchesRebuild() {
+    Random random = new Random(7);
+    IncidentTable base = randomTable(random, 300, 30);
+    DailyRollup rollup = DailyRollup.build(base);
+
+    // New days arrive along with a late report for day 20
+    IncidentTable.Builder delta = new IncidentTable.Builder();
+    addRandom(delta, random, 100, 25, 45);
+    IncidentTable merged = IncidentTable.merge(base, delta.build());
+
+    DailyRollup updated = rollup.update(merged, FIRST_DAY + 25);
+    DailyRollup rebuilt = DailyRollup.build(merged);
+    int code = CrimeField.NEIGHBORHOOD.encode(NEIGHBORHOODS[1]);
+
+    assertEquals(rebuilt.getDays(), updated.getDays());
+    assertArrayEquals(rebuilt.countByOffense(-1, FIRST_DAY, FIRST_DAY + 70),
+            updated.countByOffense(-1, FIRST_DAY, FIRST_DAY + 70));
+    assertArrayEquals(rebuilt.countByOffense(code, FIRST_DAY + 10, FIRST_DAY + 40),
+            updated.countByOffense(code, FIRST_DAY + 10, FIRST_DAY + 40));
+  }
+
+  private static IncidentTable randomTable(Random random, int incidents, int days) {
+    IncidentTable.Builder builder = new IncidentTable.Builder();
+    addRandom(builder, random, incidents, 0, days);
+
+    return builder.build();
+  }
+
+  private static void addRandom(IncidentTable.Builder builder, Random random, int incidents, int fromDay, int toDay) {
+    int[] codes = new int[CrimeField.values().length];
+
+    for(int i = 0; i < incidents; i++) {
+      int minute = EpochMinutes.of(LocalDate.ofEpochDay(FIRST_DAY + fromDay + random.nextInt(toDay - fromDay)))
+              + random.nextInt(24 * 60);
+      codes[CrimeField.NEIGHBORHOOD.ordinal()] = CrimeField.NEIGHBORHOOD.encode(NEIGHBORHOODS[random.nextInt(NEIGHBORHOODS.length)]);
+      codes[CrimeField.OFFENSE.ordinal()] = CrimeField.OFFENSE.encode(OFFENSES[random.nextInt(OFFENSES.length)]);
+      builder.add("R-" + fromDay + "-" + i + "/1", minute, minute, codes);
+    }
+  }
+
+  private static int[] scan(IncidentTable table, int neighborhood, int startDay, int endDay) {
+    int[] counts = new int[CrimeField.OFFENSE.getDictionary().size()];
+
+    for(int row = 0; row < table.size(); row++) {
+      int day = EpochMinutes.toEpochDay(table.getOccurredOn(row));
+
+      if(day >= startDay && day <= endDay
+              && (neighborhood < 0 || table.getCode(CrimeField.NEIGHBORHOOD, row) == neighborhood)) {
+        counts[table.getCode(CrimeField.OFFENSE, row)]++;
+      }
+    }
+
+    return counts;
+  }
+}
@@ -0,0 +1,148 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IncidentAggregatorTest {
+
+  private static final String[] DISTRICTS = {"1", "2", "3", "4", "5"};
+  private static final String[] UCRS = {"500", "600", "800"};
+  private static final LocalDate FIRST_DAY = LocalDate.of(2015, 1, 1);
+  private static final int ROWS = 20000;
+
+  private ForkJoinPool pool;
+  private IncidentTable table;
+
+  @Before
+  public void setUp() {
+    pool = new ForkJoinPool(4);
+
+    Random random = new Random(42);
+    IncidentTable.Builder builder = new IncidentTable.Builder();
+    int firstMinute = EpochMinutes.of(FIRST_DAY);
+
+    for(int i = 0; i < ROWS; i++) {
+      int[] codes = new int[CrimeField.values().length];
+      codes[CrimeField.OFFENSE.ordinal()] = CrimeField.OFFENSE.encode(random.nextBoolean() ? "THEFT" : "ASSAULT");
+      codes[CrimeField.NEIGHBORHOOD.ordinal()] = CrimeField.NEIGHBORHOOD.encode(random.nextBoolean() ? "AVONDALE" : "OAKLEY");
+      codes[CrimeField.DISTRICT.ordinal()] = CrimeField.DISTRICT.encode(DISTRICTS[random.nextInt(DISTRICTS.length)]);
+      codes[CrimeField.BEAT.ordinal()] = CrimeField.BEAT.encode(Integer.toString(random.nextInt(20)));
+      codes[CrimeField.UCR.ordinal()] = CrimeField.UCR.encode(UCRS[random.nextInt(UCRS.length)]);
+
+      int minute = firstMinute + random.nextInt(3 * 365 * 24 * 60);
+      builder.add("case-" + i + "/1", minute, minute, codes);
+    }
+
+    table = builder.build();
+  }
+
+  @After
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Test
+  public void testParallelMatchesSequential() {
+    int from = EpochMinutes.of(LocalDate.of(2015, 6, 1));
+    int to = EpochMinutes.of(LocalDate.of(2017, 6, 1));
+    CrimeField[] groupBy = {CrimeField.DISTRICT, CrimeField.BEAT, CrimeField.UCR};
+
+    CrimeReportSummary parallel = new IncidentAggregator(pool, 100).aggregate(table, -1, from, to, groupBy);
+    CrimeReportSummary sequential = new IncidentAggregator(pool, Integer.MAX_VALUE).aggregate(table, -1, from, to, groupBy);
+
+    assertEquals(countRows(from, to, -1), parallel.getTotal());
+    assertEquals(rows(sequential, groupBy), rows(parallel, groupBy));
+  }
+
+  @Test
+  public void testNeighborhoodFilter() {
+    int avondale = CrimeField.NEIGHBORHOOD.getDictionary().find("AVONDALE");
+    int from = EpochMinutes.of(FIRST_DAY);
+    int to = EpochMinutes.of(FIRST_DAY.plusYears(3));
+
+    CrimeReportSummary summary = new IncidentAggregator(pool, 100).aggregate(table, avondale, from, to,
+            CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE);
+
+    assertEquals(countRows(from, to, avondale), summary.getTotal());
+    assertEquals(1, summary.getCounts(CrimeField.NEIGHBORHOOD).size());
+    assertEquals(2, summary.size());
+  }
+
+  @Test
+  public void testAscendingCounts() {
+    CrimeReportSummary summary = new IncidentAggregator(pool, 100).aggregate(table, -1, Integer.MIN_VALUE,
+            Integer.MAX_VALUE, CrimeField.DISTRICT);
+
+    assertEquals(ROWS, summary.getTotal());
+    for(int row = 1; row < summary.size(); row++) {
+      assertTrue(summary.getCount(row - 1) <= summary.getCount(row));
+    }
+  }
+
+  @Test
+  public void testUnknownNeighborhoodIsEmpty() {
+    assertTrue(new IncidentAggregator(pool, 100).aggregate(table, -2, Integer.MIN_VALUE, Integer.MAX_VALUE,
+            CrimeField.OFFENSE).isEmpty());
+  }
+
+  @Test
+  public void testGroupedCrimeReports() {
+    SnapshotSocrata socrata = new SnapshotSocrata(table, new IncidentAggregator(pool, 100),
+            Clock.systemDefaultZone());
+    List<CrimeReport> reports = socrata.getCrimeReports("Oakley", new String[] {"2015-01-01", "2017-12-31"},
+            CrimeField.DISTRICT, CrimeField.UCR);
+    int total = 0;
+
+    for(CrimeReport report : reports) {
+      assertTrue(report.getDistrict() != null && report.getUcr() != null);
+      total += report.getCountValue();
+    }
+
+    assertEquals(DISTRICTS.length * UCRS.length, reports.size());
+    assertEquals(countRows(Integer.MIN_VALUE, Integer.MAX_VALUE, CrimeField.NEIGHBORHOOD.getDictionary().find("OAKLEY")),
+            total);
+  }
+
+  private int countRows(int from, int to, int neighborhood) {
+    int count = 0;
+
+    for(int row = 0; row < table.size(); row++) {
+      if(table.getOccurredOn(row) >= from && table.getOccurredOn(row) < to
+              && (neighborhood == -1 || table.getCode(CrimeField.NEIGHBORHOOD, row) == neighborhood)) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  private static Map<String, Integer> rows(CrimeReportSummary summary, CrimeField[] groupBy) {
+    Map<String, Integer> rows = new HashMap<String, Integer>();
+
+    for(int row = 0; row < summary.size(); row++) {
+      StringBuilder key = new StringBuilder();
+      for(CrimeField field : groupBy) {
+        key.append(summary.getValue(field, row)).append('|');
+      }
+      rows.put(key.toString(), summary.getCount(row));
+    }
+
+    return rows;
+  }
+}
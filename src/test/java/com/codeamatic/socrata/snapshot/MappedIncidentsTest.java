@@ -0,0 +1,119 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReportSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedIncidentsTest {
+
+  private IncidentTable table;
+  private Path path;
+
+  @Before
+  public void setUp() throws IOException {
+    table = new IncidentTable.Builder()
+            .add("17-3/1", EpochMinutes.parse("2017-03-02T13:30:00.000"), EpochMinutes.parse("2017-03-02T14:00:00.000"),
+                    codes("BURGLARY", "AVONDALE", "4", "2", "500"))
+            .add("17-1/1", EpochMinutes.parse("2017-03-01T23:59:00.000"), EpochMinutes.parse("2017-03-02T08:00:00.000"),
+                    codes("THEFT", "AVONDALE", "4", "2", "600"))
+            .add("17-2/1", EpochMinutes.parse("2017-03-02T00:00:00.000"), EpochMinutes.parse("2017-03-02T00:00:00.000"),
+                    codes("THEFT", "OAKLEY", "2", "14", "600"))
+            .add("17-4/1", EpochMinutes.parse("2017-03-02T13:30:00.000"), EpochMinutes.parse("2017-03-03T09:00:00.000"),
+                    codes("THEFT", "AVONDALE", "4", "1", "600"))
+            .build();
+    path = Files.createTempFile("incidents", ".mapped");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  private static int[] codes(String offense, String neighborhood, String district, String beat, String ucr) {
+    int[] codes = new int[CrimeField.values().length];
+
+    codes[CrimeField.OFFENSE.ordinal()] = CrimeField.OFFENSE.encode(offense);
+    codes[CrimeField.NEIGHBORHOOD.ordinal()] = CrimeField.NEIGHBORHOOD.encode(neighborhood);
+    codes[CrimeField.DISTRICT.ordinal()] = CrimeField.DISTRICT.encode(district);
+    codes[CrimeField.BEAT.ordinal()] = CrimeField.BEAT.encode(beat);
+    codes[CrimeField.UCR.ordinal()] = CrimeField.UCR.encode(ucr);
+
+    return codes;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    MappedIncidents.write(table, path);
+    MappedIncidents mapped = MappedIncidents.open(path);
+
+    assertEquals(table.size(), mapped.size());
+    for(int row = 0; row < table.size(); row++) {
+      assertEquals(table.getOccurredOn(row), mapped.getOccurredOn(row));
+      assertEquals(table.getReportedOn(row), mapped.getReportedOn(row));
+      for(CrimeField field : CrimeField.values()) {
+        assertEquals(field.name(), table.getCode(field, row), mapped.getCode(field, row));
+      }
+    }
+  }
+
+  @Test
+  public void testLowerBound() throws IOException {
+    MappedIncidents.write(table, path);
+    MappedIncidents mapped = MappedIncidents.open(path);
+
+    for(String minute : new String[] {"2017-03-01T00:00", "2017-03-02T00:00", "2017-03-02T13:30", "2017-03-02T13:31"}) {
+      int epochMinute = EpochMinutes.of(LocalDateTime.parse(minute));
+      assertEquals(minute, table.lowerBound(epochMinute), mapped.lowerBound(epochMinute));
+    }
+  }
+
+  @Test
+  public void testAnswersLikeHeapTable() throws IOException {
+    MappedIncidents.write(table, path);
+    String[] dates = {"2017-03-02", "2017-03-02"};
+
+    CrimeReportSummary expected = new SnapshotSocrata(table).getCrimeReportSummary("Avondale", dates);
+    CrimeReportSummary actual = new SnapshotSocrata(MappedIncidents.open(path)).getCrimeReportSummary("Avondale", dates);
+
+    assertEquals(2, actual.getTotal());
+    assertEquals(expected.getCounts(CrimeField.OFFENSE), actual.getCounts(CrimeField.OFFENSE));
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    MappedIncidents.write(IncidentTable.EMPTY, path);
+    MappedIncidents mapped = MappedIncidents.open(path);
+
+    assertEquals(0, mapped.size());
+    assertEquals(0, mapped.lowerBound(0));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedFileRejected() throws IOException {
+    MappedIncidents.write(table, path);
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.truncate(60);
+    }
+
+    MappedIncidents.open(path);
+  }
+
+  @Test(expected = IOException.class)
+  public void testForeignFileRejected() throws IOException {
+    SnapshotFile.write(table, path);
+
+    MappedIncidents.open(path);
+  }
+}
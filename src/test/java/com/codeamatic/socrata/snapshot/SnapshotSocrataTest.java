@@ -0,0 +1,85 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.support.SocrataClient;
+import com.codeamatic.socrata.support.StubHttpTransport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotSocrataTest {
+
+  private static final String PAGE = "["
+          + row("17-1", "2017-03-01T23:59:00.000", "THEFT", "AVONDALE") + ","
+          + row("17-2", "2017-03-02T00:00:00.000", "THEFT", "OAKLEY") + ","
+          + row("17-3", "2017-03-02T13:30:00.000", "BURGLARY", "AVONDALE") + ","
+          + row("17-4", "2017-03-02T23:59:00.000", "THEFT", "AVONDALE") + ","
+          + row("17-5", "2017-03-03T00:00:00.000", "THEFT", "AVONDALE") + "]";
+
+  private IncidentTable table;
+
+  @Before
+  public void setUp() throws IOException {
+    StubHttpTransport transport = new StubHttpTransport(PAGE);
+    SnapshotIngest ingest = new SnapshotIngest(new SocrataClient(null, "http://localhost/", transport), 10);
+    IncidentTable.Builder builder = new IncidentTable.Builder();
+
+    assertEquals(5, ingest.ingest(null, builder));
+    assertEquals(1, transport.getRequestedUrls().size());
+
+    table = builder.build();
+  }
+
+  @Test
+  public void testSummaryForDay() {
+    SnapshotSocrata socrata = new SnapshotSocrata(table);
+    CrimeReportSummary summary = socrata.getCrimeReportSummary(null, new String[] {"2017-03-02", "2017-03-02"});
+
+    assertEquals(3, summary.getTotal());
+    assertEquals(2, summary.getCount(CrimeField.OFFENSE, "THEFT"));
+    // Ascending by count, like the live API
+    assertEquals("BURGLARY", summary.getValue(CrimeField.OFFENSE, 0));
+  }
+
+  @Test
+  public void testSummaryForNeighborhood() {
+    SnapshotSocrata socrata = new SnapshotSocrata(table);
+
+    assertEquals(4, socrata.getCrimeReportSummary("Avondale", new String[] {"2017-03-01", "2017-03-03"}).getTotal());
+    assertTrue(socrata.getCrimeReportSummary("Hyde Park", new String[] {"2017-03-01", "2017-03-03"}).isEmpty());
+  }
+
+  @Test
+  public void testFileRoundTrip() throws IOException {
+    Path path = Files.createTempFile("incidents", ".snapshot");
+
+    try {
+      SnapshotFile.write(table, path);
+      IncidentTable read = SnapshotFile.read(path);
+
+      assertEquals(table.size(), read.size());
+      for(int row = 0; row < table.size(); row++) {
+        assertEquals(table.getOccurredOn(row), read.getOccurredOn(row));
+        assertEquals(table.getReportedOn(row), read.getReportedOn(row));
+        assertEquals(table.getIncidentKey(row), read.getIncidentKey(row));
+        assertEquals(table.getCode(CrimeField.OFFENSE, row), read.getCode(CrimeField.OFFENSE, row));
+      }
+    } finally {
+      Files.deleteIfExists(path);
+    }
+  }
+
+  private static String row(String caseReportNo, String occurredOn, String offense, String neighborhood) {
+    return "{\"casereportno\":\"" + caseReportNo + "\",\"offenseno\":\"1\",\"occurredon\":\"" + occurredOn
+            + "\",\"reportedon\":\"" + occurredOn + "\",\"offense\":\"" + offense
+            + "\",\"neighborhood\":\"" + neighborhood + "\",\"district\":\"4\",\"beat\":\"2\",\"ucr\":\"600\"}";
+  }
+}
@@ -0,0 +1,93 @@
+package com.codeamatic.socrata.snapshot;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.support.SocrataClient;
+import com.codeamatic.socrata.support.StubHttpTransport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotSyncTest {
+
+  private Path directory;
+  private Path snapshot;
+  private StubHttpTransport transport;
+  private SnapshotSync sync;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("snapshot-sync");
+    snapshot = directory.resolve("incidents.snapshot");
+    transport = new StubHttpTransport("[]");
+    sync = new SnapshotSync(new SnapshotIngest(new SocrataClient(null, "http://localhost/", transport), 100), snapshot);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for(Path path : Files.newDirectoryStream(directory)) {
+      Files.delete(path);
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testFirstSyncIsFullIngest() throws IOException {
+    transport.setBody("[" + row("17-1", "2017-03-01T10:00:00.000", "2017-03-01T11:00:00.000", "THEFT") + "]");
+
+    assertNull(sync.readWatermark());
+    assertEquals(1, sync.sync().size());
+    assertTrue(! transport.getRequestedUrls().get(0).contains("$where"));
+    assertEquals(EpochMinutes.parse("2017-03-01T11:00:00.000"), sync.readWatermark().intValue());
+  }
+
+  @Test
+  public void testDeltaMergedAndDeduplicated() throws IOException {
+    transport.setBody("[" + row("17-1", "2017-03-01T10:00:00.000", "2017-03-01T11:00:00.000", "THEFT") + ","
+            + row("17-2", "2017-03-02T10:00:00.000", "2017-03-02T11:00:00.000", "THEFT") + "]");
+    sync.sync();
+
+    // The last incident is sent again (reported in the same minute) with a corrected offense
+    transport.setBody("[" + row("17-2", "2017-03-02T10:00:00.000", "2017-03-02T11:00:00.000", "BURGLARY") + ","
+            + row("17-3", "2017-02-28T09:00:00.000", "2017-03-03T08:00:00.000", "ASSAULT") + "]");
+    IncidentTable merged = sync.sync();
+
+    assertTrue(transport.getRequestedUrls().get(1).contains("reportedon%20%3E%3D%20%272017-03-02T11%3A00%3A00.000%27"));
+    assertEquals(3, merged.size());
+    // Late report lands in occurrence order
+    assertEquals("17-3/1", merged.getIncidentKey(0));
+    assertEquals("BURGLARY", CrimeField.OFFENSE.decode(merged.getCode(CrimeField.OFFENSE, 2)));
+    assertEquals(EpochMinutes.parse("2017-03-03T08:00:00.000"), sync.readWatermark().intValue());
+    assertEquals(3, SnapshotFile.read(snapshot).size());
+  }
+
+  @Test
+  public void testIncidentsWithoutNumbersKept() throws IOException {
+    String anonymous = "{\"occurredon\":\"2017-03-01T10:00:00.000\",\"reportedon\":\"2017-03-01T11:00:00.000\","
+            + "\"offense\":\"THEFT\",\"neighborhood\":\"AVONDALE\"}";
+    transport.setBody("[" + anonymous + "," + anonymous + "]");
+    assertEquals(2, sync.sync().size());
+
+    transport.setBody("[" + anonymous + "," + row("17-1", "2017-03-01T12:00:00.000", "2017-03-01T12:00:00.000", "THEFT") + "]");
+    IncidentTable merged = sync.sync();
+
+    // Can't be deduplicated, so the resent one is counted again rather than all of them collapsed
+    assertEquals(4, merged.size());
+    assertNull(merged.getIncidentKey(0));
+    assertEquals(4, SnapshotFile.read(snapshot).size());
+    assertNull(SnapshotFile.read(snapshot).getIncidentKey(0));
+  }
+
+  private static String row(String caseReportNo, String occurredOn, String reportedOn, String offense) {
+    return "{\"casereportno\":\"" + caseReportNo + "\",\"offenseno\":\"1\",\"occurredon\":\"" + occurredOn
+            + "\",\"reportedon\":\"" + reportedOn + "\",\"offense\":\"" + offense + "\",\"neighborhood\":\"AVONDALE\"}";
+  }
+}
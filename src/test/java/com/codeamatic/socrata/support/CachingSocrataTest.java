@@ -0,0 +1,185 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.SocrataException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CachingSocrataTest {
+
+  private static final String[] CLOSED_RANGE = {"2017-03-01", "2017-03-05"};
+  private static final String[] OPEN_RANGE = {"2017-03-01", "2017-03-10"};
+
+  private CountingSocrata delegate;
+  private MutableClock clock;
+  private CachingSocrata cache;
+
+  @Before
+  public void setUp() {
+    delegate = new CountingSocrata();
+    clock = new MutableClock(Instant.parse("2017-03-10T12:00:00Z"));
+    cache = new CachingSocrata(delegate, 2, 1000, clock);
+  }
+
+  @Test
+  public void testEquivalentQueriesShareEntry() {
+    List<CrimeReport> first = cache.getCrimeReports("Avondale", CLOSED_RANGE);
+    List<CrimeReport> second = cache.getCrimeReports(" avondale ", CLOSED_RANGE.clone());
+
+    assertSame(first, second);
+    assertEquals(1, delegate.calls);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void testAllAndNullNeighborhoodShareEntry() {
+    cache.getCrimeReports("all", null);
+    cache.getCrimeReports(null, null);
+
+    assertEquals(1, delegate.calls);
+  }
+
+  @Test
+  public void testSummariesCachedSeparately() {
+    CrimeReportSummary first = cache.getCrimeReportSummary("Avondale", CLOSED_RANGE);
+    cache.getCrimeReports("Avondale", CLOSED_RANGE);
+
+    assertSame(first, cache.getCrimeReportSummary("avondale", CLOSED_RANGE));
+    assertEquals(2, delegate.calls);
+  }
+
+  @Test
+  public void testOpenRangeExpires() {
+    cache.getCrimeReports(null, OPEN_RANGE);
+    clock.advance(999);
+    cache.getCrimeReports(null, OPEN_RANGE);
+    assertEquals(1, delegate.calls);
+
+    clock.advance(1);
+    cache.getCrimeReports(null, OPEN_RANGE);
+    assertEquals(2, delegate.calls);
+  }
+
+  @Test
+  public void testClosedRangeDoesNotExpire() {
+    cache.getCrimeReports(null, CLOSED_RANGE);
+    clock.advance(Integer.MAX_VALUE);
+    cache.getCrimeReports(null, CLOSED_RANGE);
+
+    assertEquals(1, delegate.calls);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEvicted() {
+    cache.getCrimeReports("avondale", CLOSED_RANGE);
+    cache.getCrimeReports("northside", CLOSED_RANGE);
+    cache.getCrimeReports("avondale", CLOSED_RANGE);
+    cache.getCrimeReports("oakley", CLOSED_RANGE);
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+
+    cache.getCrimeReports("avondale", CLOSED_RANGE);
+    assertEquals(3, delegate.calls);
+
+    cache.getCrimeReports("northside", CLOSED_RANGE);
+    assertEquals(4, delegate.calls);
+  }
+
+  @Test
+  public void testStaleSummaryWhenDelegateFails() {
+    Deadline deadline = Deadline.after(1, TimeUnit.SECONDS);
+    CrimeReportSummary fresh = cache.getCrimeReportSummary(null, OPEN_RANGE, deadline);
+    assertNull(fresh.getAsOf());
+
+    clock.advance(1000);
+    delegate.failure = new SocrataException("upstream down");
+    CrimeReportSummary stale = cache.getCrimeReportSummary(null, OPEN_RANGE, deadline);
+
+    assertEquals(Instant.parse("2017-03-10T12:00:00Z"), stale.getAsOf());
+    assertEquals(fresh.getTotal(), stale.getTotal());
+    assertEquals(2, delegate.calls);
+
+    // Recovers once the delegate does
+    delegate.failure = null;
+    assertNull(cache.getCrimeReportSummary(null, OPEN_RANGE, deadline).getAsOf());
+  }
+
+  @Test(expected = SocrataException.class)
+  public void testFailureWithoutStaleSummary() {
+    delegate.failure = new SocrataException("upstream down");
+    cache.getCrimeReportSummary(null, OPEN_RANGE, Deadline.after(1, TimeUnit.SECONDS));
+  }
+
+  private static final class CountingSocrata implements Socrata {
+    private int calls;
+    private SocrataException failure;
+
+    public List<CrimeReport> getCrimeReports() {
+      return getCrimeReports(null, null);
+    }
+
+    public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+      calls++;
+      return Collections.singletonList(new CrimeReport());
+    }
+
+    public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+      calls++;
+      return new CrimeReportSummary.Builder(CrimeField.OFFENSE).add(1, CrimeField.OFFENSE.encode("THEFT")).build();
+    }
+
+    public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates, Deadline deadline) {
+      if(failure != null) {
+        calls++;
+        throw failure;
+      }
+      return getCrimeReportSummary(neighborhood, dates);
+    }
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant instant;
+
+    private MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    private void advance(long millis) {
+      instant = instant.plusMillis(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
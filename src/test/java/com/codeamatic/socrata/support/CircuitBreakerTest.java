@@ -0,0 +1,100 @@
+package com.codeamatic.socrata.support;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+  private Instant now = Instant.parse("2017-06-10T12:00:00Z");
+
+  private final Clock clock = new Clock() {
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  };
+
+  @Test
+  public void testOpensAfterConsecutiveFailures() {
+    CircuitBreaker breaker = new CircuitBreaker(3, 1000, clock);
+
+    fail(breaker, 2);
+    breaker.recordSuccess();
+    fail(breaker, 2);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+    fail(breaker, 1);
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.allowRequest());
+  }
+
+  @Test
+  public void testSingleTrialAfterCoolDown() {
+    CircuitBreaker breaker = new CircuitBreaker(1, 1000, clock);
+    fail(breaker, 1);
+
+    now = now.plusMillis(999);
+    assertFalse(breaker.allowRequest());
+
+    now = now.plusMillis(1);
+    assertTrue(breaker.allowRequest());
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    assertFalse(breaker.allowRequest());
+
+    breaker.recordSuccess();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertTrue(breaker.allowRequest());
+  }
+
+  @Test
+  public void testFailedTrialReopens() {
+    CircuitBreaker breaker = new CircuitBreaker(5, 1000, clock);
+    fail(breaker, 5);
+
+    now = now.plusMillis(1000);
+    assertTrue(breaker.allowRequest());
+    breaker.recordFailure();
+
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.allowRequest());
+  }
+
+  @Test
+  public void testReleasedTrialNeitherClosesNorReopens() {
+    CircuitBreaker breaker = new CircuitBreaker(1, 1000, clock);
+    fail(breaker, 1);
+
+    now = now.plusMillis(1000);
+    assertTrue(breaker.allowRequest());
+    breaker.releaseRequest();
+
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    assertTrue(breaker.allowRequest());
+    assertFalse(breaker.allowRequest());
+  }
+
+  private static void fail(CircuitBreaker breaker, int times) {
+    for(int i = 0; i < times; i++) {
+      assertTrue(breaker.allowRequest());
+      breaker.recordFailure();
+    }
+  }
+}
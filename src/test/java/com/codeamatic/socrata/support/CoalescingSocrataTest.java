@@ -0,0 +1,157 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
+import com.codeamatic.socrata.Socrata;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CoalescingSocrataTest {
+
+  private static final int CALLERS = 8;
+
+  @Test
+  public void testConcurrentCallersShareOneFetch() throws Exception {
+    GatedSocrata delegate = new GatedSocrata(null);
+    final CoalescingSocrata socrata = new CoalescingSocrata(delegate);
+    List<Future<CrimeReportSummary>> results = startCallers(socrata, delegate);
+
+    delegate.release.countDown();
+    for(Future<CrimeReportSummary> result : results) {
+      assertSame(CrimeReportSummary.EMPTY, result.get(5, TimeUnit.SECONDS));
+    }
+
+    assertEquals(1, delegate.calls.get());
+    assertEquals(1, socrata.getUpstreamCallCount());
+    assertEquals(CALLERS - 1, socrata.getCoalescedCallCount());
+
+    // Nothing is retained once the call completes
+    socrata.getCrimeReportSummary("avondale", null);
+    assertEquals(2, delegate.calls.get());
+  }
+
+  @Test
+  public void testFailureIsShared() throws Exception {
+    GatedSocrata delegate = new GatedSocrata(new IllegalStateException("upstream down"));
+    CoalescingSocrata socrata = new CoalescingSocrata(delegate);
+    List<Future<CrimeReportSummary>> results = startCallers(socrata, delegate);
+
+    delegate.release.countDown();
+    for(Future<CrimeReportSummary> result : results) {
+      try {
+        result.get(5, TimeUnit.SECONDS);
+        fail("Expected failure");
+      } catch(ExecutionException ex) {
+        assertTrue(ex.getCause() instanceof IllegalStateException);
+      }
+    }
+
+    assertEquals(1, delegate.calls.get());
+  }
+
+  @Test
+  public void testDeadlineCallsDontShareEmptyOnFailureRequests() throws Exception {
+    GatedSocrata delegate = new GatedSocrata(null);
+    final CoalescingSocrata socrata = new CoalescingSocrata(delegate);
+    List<Future<CrimeReportSummary>> results = startCallers(socrata, delegate);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<CrimeReportSummary> deadlineResult = executor.submit(new Callable<CrimeReportSummary>() {
+      @Override
+      public CrimeReportSummary call() {
+        return socrata.getCrimeReportSummary("Avondale", null, Deadline.after(5, TimeUnit.SECONDS));
+      }
+    });
+    executor.shutdown();
+
+    // The deadline caller makes its own request rather than joining the one in flight
+    long deadline = System.currentTimeMillis() + 5000;
+    while(delegate.calls.get() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(2, delegate.calls.get());
+    assertEquals(CALLERS - 1, socrata.getCoalescedCallCount());
+
+    delegate.release.countDown();
+    deadlineResult.get(5, TimeUnit.SECONDS);
+    for(Future<CrimeReportSummary> result : results) {
+      result.get(5, TimeUnit.SECONDS);
+    }
+  }
+
+  private static List<Future<CrimeReportSummary>> startCallers(final CoalescingSocrata socrata, GatedSocrata delegate)
+          throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    List<Future<CrimeReportSummary>> results = new ArrayList<Future<CrimeReportSummary>>();
+
+    for(int i = 0; i < CALLERS; i++) {
+      results.add(executor.submit(new Callable<CrimeReportSummary>() {
+        @Override
+        public CrimeReportSummary call() {
+          return socrata.getCrimeReportSummary("Avondale", null);
+        }
+      }));
+    }
+    executor.shutdown();
+
+    // Wait until the leader is inside the delegate and everyone else is waiting on it
+    assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+    long deadline = System.currentTimeMillis() + 5000;
+    while(socrata.getCoalescedCallCount() < CALLERS - 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+
+    return results;
+  }
+
+  private static final class GatedSocrata implements Socrata {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final RuntimeException failure;
+
+    private GatedSocrata(RuntimeException failure) {
+      this.failure = failure;
+    }
+
+    public List<CrimeReport> getCrimeReports() {
+      return getCrimeReports(null, null);
+    }
+
+    public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+      return Collections.emptyList();
+    }
+
+    public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+      calls.incrementAndGet();
+      started.countDown();
+      try {
+        release.await();
+      } catch(InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      if(failure != null) {
+        throw failure;
+      }
+      return CrimeReportSummary.EMPTY;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.codeamatic.socrata.support;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import com.codeamatic.socrata.CrimeReport;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CrimeReportTypeAdapterTest {
+
+  private static final String JSON = "[{\"offense\":\"THEFT\",\"count\":\"12\",\"beat\":\"5\","
+          + "\"block_begin\":\"1XX\",\"unknown\":{\"nested\":[1,2]},\"ucr\":null}]";
+
+  @Test
+  public void testReadsAllFields() {
+    Gson gson = new GsonBuilder().registerTypeAdapter(CrimeReport.class, new CrimeReportTypeAdapter()).create();
+    CrimeReport crimeReport = gson.fromJson(JSON, CrimeReport[].class)[0];
+
+    assertEquals("THEFT", crimeReport.getOffense());
+    assertEquals(12, crimeReport.getCountValue());
+    assertEquals("5", crimeReport.getBeat());
+    assertEquals("1XX", crimeReport.getBlockBegin());
+    assertNull(crimeReport.getUcr());
+  }
+
+  @Test
+  public void testSkipsUnrequestedFields() {
+    Gson gson = new GsonBuilder()
+            .registerTypeAdapter(CrimeReport.class, new CrimeReportTypeAdapter("offense", "count"))
+            .create();
+    CrimeReport crimeReport = gson.fromJson(JSON, CrimeReport[].class)[0];
+
+    assertEquals("THEFT", crimeReport.getOffense());
+    assertEquals("12", crimeReport.getCount());
+    assertNull(crimeReport.getBeat());
+  }
+
+  @Test
+  public void testRoundTrip() {
+    Gson gson = new GsonBuilder().registerTypeAdapter(CrimeReport.class, new CrimeReportTypeAdapter()).create();
+    CrimeReport crimeReport = gson.fromJson(JSON, CrimeReport[].class)[0];
+    CrimeReport copy = gson.fromJson(gson.toJson(crimeReport), CrimeReport.class);
+
+    assertEquals(crimeReport.getOffense(), copy.getOffense());
+    assertEquals(crimeReport.getCountValue(), copy.getCountValue());
+    assertEquals(crimeReport.getBlockBegin(), copy.getBlockBegin());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownFieldRejected() {
+    new CrimeReportTypeAdapter("offense", "victim");
+  }
+}
@@ -0,0 +1,252 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.SocrataException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiskCachingSocrataTest {
+
+  private static final String[] CLOSED_RANGE = {"2017-03-01", "2017-03-05"};
+  private static final String[] OPEN_RANGE = {"2017-03-01", "2017-03-10"};
+  private static final Clock CLOCK = Clock.fixed(Instant.parse("2017-03-10T12:00:00Z"), ZoneOffset.UTC);
+
+  private Path directory;
+  private CountingSocrata delegate;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("disk-cache");
+    delegate = new CountingSocrata();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for(File file : directory.toFile().listFiles()) {
+      Files.delete(file.toPath());
+    }
+    Files.delete(directory);
+  }
+
+  private DiskCachingSocrata open(long maxBytes, long ttlMillis, Clock clock) throws IOException {
+    return new DiskCachingSocrata(delegate, directory, maxBytes, ttlMillis, clock);
+  }
+
+  @Test
+  public void testReopenedCacheAnswersWithoutDelegate() throws IOException {
+    DiskCachingSocrata cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, CLOCK);
+    CrimeReportSummary first = cache.getCrimeReportSummary("Avondale", CLOSED_RANGE);
+    cache.close();
+
+    cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, CLOCK);
+    CrimeReportSummary second = cache.getCrimeReportSummary(" avondale ", CLOSED_RANGE);
+    cache.close();
+
+    assertEquals(1, delegate.calls);
+    assertEquals(first.getTotal(), second.getTotal());
+    assertEquals(first.getCounts(CrimeField.OFFENSE), second.getCounts(CrimeField.OFFENSE));
+  }
+
+  @Test
+  public void testOpenRangeExpires() throws IOException {
+    DiskCachingSocrata cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, CLOCK);
+    cache.getCrimeReportSummary(null, OPEN_RANGE);
+    cache.getCrimeReportSummary(null, OPEN_RANGE);
+    cache.close();
+    assertEquals(1, delegate.calls);
+
+    cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, Clock.offset(CLOCK, Duration.ofSeconds(1)));
+    cache.getCrimeReportSummary(null, OPEN_RANGE);
+    cache.close();
+    assertEquals(2, delegate.calls);
+  }
+
+  @Test
+  public void testEmptySummaryNotWritten() throws IOException {
+    delegate.empty = true;
+    DiskCachingSocrata cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, CLOCK);
+    cache.getCrimeReportSummary(null, CLOSED_RANGE);
+
+    assertEquals(0, cache.size());
+    cache.close();
+  }
+
+  @Test
+  public void testTruncatedRecordDropped() throws IOException {
+    DiskCachingSocrata cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, CLOCK);
+    cache.getCrimeReportSummary("avondale", CLOSED_RANGE);
+    long intact = cache.getFileSize();
+    cache.getCrimeReportSummary("northside", CLOSED_RANGE);
+    long full = cache.getFileSize();
+    cache.close();
+
+    // As if the container were frozen half way through the second write
+    try(FileChannel channel = FileChannel.open(directory.resolve("summaries.log"), StandardOpenOption.WRITE)) {
+      channel.truncate(intact + (full - intact) / 2);
+    }
+
+    cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, CLOCK);
+    assertEquals(1, cache.size());
+    assertEquals(intact, cache.getFileSize());
+
+    cache.getCrimeReportSummary("avondale", CLOSED_RANGE);
+    assertEquals(2, delegate.calls);
+    cache.getCrimeReportSummary("northside", CLOSED_RANGE);
+    assertEquals(3, delegate.calls);
+
+    // Appends continue after the last intact record
+    cache.close();
+    cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, CLOCK);
+    assertEquals(2, cache.size());
+    cache.close();
+  }
+
+  @Test
+  public void testCorruptRecordDropped() throws IOException {
+    DiskCachingSocrata cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, CLOCK);
+    cache.getCrimeReportSummary("avondale", CLOSED_RANGE);
+    long size = cache.getFileSize();
+    cache.close();
+
+    try(FileChannel channel = FileChannel.open(directory.resolve("summaries.log"), StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {0x55}), size - 1);
+    }
+
+    cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, CLOCK);
+    assertEquals(0, cache.size());
+    cache.getCrimeReportSummary("avondale", CLOSED_RANGE);
+    assertEquals(2, delegate.calls);
+    cache.close();
+  }
+
+  @Test
+  public void testForeignFileStartedOver() throws IOException {
+    Files.write(directory.resolve("summaries.log"), "not a cache".getBytes("UTF-8"));
+
+    DiskCachingSocrata cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, CLOCK);
+    cache.getCrimeReportSummary(null, CLOSED_RANGE);
+    cache.getCrimeReportSummary(null, CLOSED_RANGE);
+
+    assertEquals(1, delegate.calls);
+    cache.close();
+  }
+
+  @Test
+  public void testCompactionKeepsRecentlyUsed() throws IOException {
+    DiskCachingSocrata cache = open(2048, 1000, CLOCK);
+
+    for(int i = 0; i < 40; i++) {
+      cache.getCrimeReportSummary("neighborhood " + i, CLOSED_RANGE);
+      // Keep the first one in use
+      cache.getCrimeReportSummary("neighborhood 0", CLOSED_RANGE);
+    }
+
+    assertTrue(cache.getFileSize() <= 2048);
+    assertTrue(cache.size() < 40);
+    int calls = delegate.calls;
+
+    cache.getCrimeReportSummary("neighborhood 0", CLOSED_RANGE);
+    cache.getCrimeReportSummary("neighborhood 39", CLOSED_RANGE);
+    assertEquals(calls, delegate.calls);
+
+    cache.getCrimeReportSummary("neighborhood 1", CLOSED_RANGE);
+    assertEquals(calls + 1, delegate.calls);
+    cache.close();
+  }
+
+  @Test
+  public void testStaleSummaryWhenDelegateFails() throws IOException {
+    DiskCachingSocrata cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, CLOCK);
+    Deadline deadline = Deadline.after(1, TimeUnit.SECONDS);
+    assertNull(cache.getCrimeReportSummary(null, OPEN_RANGE, deadline).getAsOf());
+    cache.close();
+
+    delegate.failure = new SocrataException("upstream down");
+    cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, Clock.offset(CLOCK, Duration.ofSeconds(1)));
+    CrimeReportSummary stale = cache.getCrimeReportSummary(null, OPEN_RANGE, deadline);
+    cache.close();
+
+    assertEquals(Instant.parse("2017-03-10T12:00:00Z"), stale.getAsOf());
+    assertEquals(1, stale.getTotal());
+  }
+
+  @Test
+  public void testInterruptedCallerLeavesCacheUsable() throws IOException {
+    DiskCachingSocrata cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, CLOCK);
+    cache.getCrimeReportSummary(null, OPEN_RANGE);
+    cache.close();
+
+    delegate.failure = new SocrataException("upstream down");
+    cache = open(DiskCachingSocrata.DEFAULT_MAX_BYTES, 1000, Clock.offset(CLOCK, Duration.ofSeconds(1)));
+    CrimeReportSummary stale;
+
+    // As if a cancelled shard or hedge fell back to the stale record
+    Thread.currentThread().interrupt();
+    try {
+      stale = cache.getCrimeReportSummary(null, OPEN_RANGE, Deadline.after(1, TimeUnit.SECONDS));
+      assertTrue(Thread.currentThread().isInterrupted());
+
+      delegate.failure = null;
+      cache.getCrimeReportSummary("avondale", CLOSED_RANGE);
+      assertTrue(Thread.currentThread().isInterrupted());
+    } finally {
+      Thread.interrupted();
+    }
+
+    assertEquals(Instant.parse("2017-03-10T12:00:00Z"), stale.getAsOf());
+    assertEquals(3, delegate.calls);
+
+    cache.getCrimeReportSummary("avondale", CLOSED_RANGE);
+    assertEquals(3, delegate.calls);
+    assertEquals(2, cache.size());
+    cache.close();
+  }
+
+  private static final class CountingSocrata implements Socrata {
+    private int calls;
+    private boolean empty;
+    private SocrataException failure;
+
+    public List<CrimeReport> getCrimeReports() {
+      return Collections.emptyList();
+    }
+
+    public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+      return Collections.emptyList();
+    }
+
+    public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+      calls++;
+      if(failure != null) {
+        throw failure;
+      }
+      return empty ? CrimeReportSummary.EMPTY
+              : new CrimeReportSummary.Builder(CrimeField.OFFENSE).add(1, CrimeField.OFFENSE.encode("THEFT")).build();
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Socrata;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExecutorSocrataTest {
+
+  private final BlockingSocrata delegate = new BlockingSocrata();
+  private ExecutorSocrata socrata;
+
+  @After
+  public void tearDown() {
+    delegate.release.countDown();
+    socrata.shutdown();
+  }
+
+  @Test
+  public void testCompletesWithResult() throws Exception {
+    socrata = new ExecutorSocrata(delegate, 2, 2);
+    delegate.release.countDown();
+
+    CrimeReportSummary summary = socrata.getCrimeReportSummaryAsync(null, null, 5, TimeUnit.SECONDS).get();
+
+    assertSame(CrimeReportSummary.EMPTY, summary);
+  }
+
+  @Test
+  public void testDeadlineInterruptsWorker() throws Exception {
+    socrata = new ExecutorSocrata(delegate, 1, 1);
+    CompletableFuture<CrimeReportSummary> future = socrata.getCrimeReportSummaryAsync(null, null, 50, TimeUnit.MILLISECONDS);
+
+    assertCause(future, TimeoutException.class);
+    assertTrue(delegate.interrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCancellationInterruptsWorker() throws Exception {
+    socrata = new ExecutorSocrata(delegate, 1, 1);
+    CompletableFuture<List<CrimeReport>> future = socrata.getCrimeReportsAsync(null, null, 0, TimeUnit.SECONDS);
+
+    assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+    future.cancel(true);
+
+    assertTrue(delegate.interrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testRejectsWhenSaturated() throws Exception {
+    socrata = new ExecutorSocrata(delegate, 1, 1);
+    socrata.getCrimeReportSummaryAsync(null, null, 0, TimeUnit.SECONDS);
+    assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+    socrata.getCrimeReportSummaryAsync(null, null, 0, TimeUnit.SECONDS);
+
+    assertEquals(2, socrata.getPendingCount());
+    assertCause(socrata.getCrimeReportSummaryAsync(null, null, 0, TimeUnit.SECONDS), RejectedExecutionException.class);
+  }
+
+  private static void assertCause(CompletableFuture<?> future, Class<? extends Throwable> type) throws InterruptedException {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("Expected " + type.getSimpleName());
+    } catch(ExecutionException ex) {
+      assertTrue(ex.getCause().toString(), type.isInstance(ex.getCause()));
+    } catch(TimeoutException ex) {
+      fail("Future never completed");
+    }
+  }
+
+  private static final class BlockingSocrata implements Socrata {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    public List<CrimeReport> getCrimeReports() {
+      return getCrimeReports(null, null);
+    }
+
+    public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+      await();
+      return Collections.emptyList();
+    }
+
+    public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+      await();
+      return CrimeReportSummary.EMPTY;
+    }
+
+    private void await() {
+      started.countDown();
+      try {
+        release.await();
+      } catch(InterruptedException ex) {
+        interrupted.countDown();
+      }
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReportSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileReportStoreTest {
+
+  private static final LocalDate DAY = LocalDate.of(2017, 6, 9);
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("report-store");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for(File file : directory.toFile().listFiles()) {
+      Files.delete(file.toPath());
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testRoundTripThroughFile() throws IOException {
+    Map<String, CrimeReportSummary> summaries = new HashMap<String, CrimeReportSummary>();
+    summaries.put("avondale", summary("THEFT", 3, "BURGLARY", 1));
+    summaries.put("oakley", CrimeReportSummary.EMPTY);
+    summaries.put(null, summary("THEFT", 7));
+
+    new FileReportStore(directory).putDay(DAY, summaries);
+
+    // A fresh store has to read the file
+    FileReportStore store = new FileReportStore(directory);
+    assertEquals(3, store.get(DAY, "avondale").getCount(CrimeField.OFFENSE, "THEFT"));
+    assertEquals(4, store.get(DAY, "avondale").getTotal());
+    assertTrue(store.get(DAY, "oakley").isEmpty());
+    assertEquals(7, store.get(DAY, null).getTotal());
+    assertNull(store.get(DAY, "northside"));
+    assertNull(store.get(DAY.minusDays(1), "avondale"));
+  }
+
+  @Test
+  public void testOldDaysExpire() throws IOException {
+    FileReportStore store = new FileReportStore(directory, 2);
+    Map<String, CrimeReportSummary> summaries = new HashMap<String, CrimeReportSummary>();
+    summaries.put(null, summary("THEFT", 1));
+
+    store.putDay(DAY, summaries);
+    store.putDay(DAY.plusDays(2), summaries);
+    assertTrue(Files.exists(directory.resolve("reports-2017-06-09.bin")));
+
+    store.putDay(DAY.plusDays(3), summaries);
+    assertFalse(Files.exists(directory.resolve("reports-2017-06-09.bin")));
+    assertNull(store.get(DAY, null));
+    assertEquals(1, store.get(DAY.plusDays(2), null).getTotal());
+  }
+
+  @Test
+  public void testMissesRememberedUntilTtl() throws IOException {
+    MutableClock clock = new MutableClock(Instant.parse("2017-06-10T12:00:00Z"));
+    FileReportStore store = new FileReportStore(directory, 2, 1000, clock);
+    Map<String, CrimeReportSummary> summaries = new HashMap<String, CrimeReportSummary>();
+    summaries.put(null, summary("THEFT", 2));
+
+    assertNull(store.get(DAY, null));
+
+    // Written by another process, e.g. the prewarm handler
+    new FileReportStore(directory).putDay(DAY, summaries);
+    assertNull(store.get(DAY, null));
+
+    clock.advance(1000);
+    assertEquals(2, store.get(DAY, null).getTotal());
+  }
+
+  @Test
+  public void testPutDayForgetsMiss() throws IOException {
+    MutableClock clock = new MutableClock(Instant.parse("2017-06-10T12:00:00Z"));
+    FileReportStore store = new FileReportStore(directory, 2, 1000, clock);
+    Map<String, CrimeReportSummary> summaries = new HashMap<String, CrimeReportSummary>();
+    summaries.put(null, summary("THEFT", 2));
+
+    assertNull(store.get(DAY, null));
+    store.putDay(DAY, summaries);
+
+    assertEquals(2, new FileReportStore(directory, 2, 1000, clock).get(DAY, null).getTotal());
+    assertEquals(2, store.get(DAY, null).getTotal());
+  }
+
+  private static CrimeReportSummary summary(Object... offenseCounts) {
+    CrimeReportSummary.Builder builder = new CrimeReportSummary.Builder(CrimeField.OFFENSE);
+
+    for(int i = 0; i < offenseCounts.length; i += 2) {
+      builder.add((Integer) offenseCounts[i + 1], CrimeField.OFFENSE.encode((String) offenseCounts[i]));
+    }
+
+    return builder.build();
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant instant;
+
+    private MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    private void advance(long millis) {
+      instant = instant.plusMillis(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.SocrataException;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HedgingSocrataTest {
+
+  private static final CrimeReportSummary SUMMARY =
+          new CrimeReportSummary.Builder(CrimeField.OFFENSE).add(3, CrimeField.OFFENSE.encode("THEFT")).build();
+
+  @Test
+  public void testSlowRequestIsHedged() {
+    SlowSocrata delegate = new SlowSocrata(5000, 10);
+    HedgingSocrata socrata = new HedgingSocrata(delegate, new CircuitBreaker(), 95, 50);
+
+    long start = System.nanoTime();
+    assertSame(SUMMARY, socrata.getCrimeReportSummary(null, null, Deadline.after(2, TimeUnit.SECONDS)));
+
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    assertEquals(1, socrata.getHedgedCallCount());
+    assertEquals(2, delegate.calls.get());
+  }
+
+  @Test
+  public void testFastRequestIsNotHedged() {
+    SlowSocrata delegate = new SlowSocrata(0);
+    HedgingSocrata socrata = new HedgingSocrata(delegate, new CircuitBreaker(), 95, 1000);
+
+    for(int i = 0; i < 10; i++) {
+      socrata.getCrimeReportSummary(null, null, Deadline.after(1, TimeUnit.SECONDS));
+    }
+
+    assertEquals(0, socrata.getHedgedCallCount());
+    assertEquals(10, delegate.calls.get());
+  }
+
+  @Test
+  public void testHedgeDelayFollowsPercentile() {
+    HedgingSocrata socrata = new HedgingSocrata(new SlowSocrata(0), new CircuitBreaker(), 95, 1000);
+    assertEquals(1000, socrata.hedgeDelayMillis());
+
+    for(int i = 0; i < HedgingSocrata.MIN_SAMPLES; i++) {
+      socrata.getCrimeReportSummary(null, null, Deadline.after(1, TimeUnit.SECONDS));
+    }
+
+    // Immediate answers, so only the floor is left
+    assertEquals(20, socrata.hedgeDelayMillis());
+  }
+
+  @Test
+  public void testDeadlineAndCircuitBreaker() {
+    SlowSocrata delegate = new SlowSocrata(5000, 5000, 5000, 5000);
+    CircuitBreaker breaker = new CircuitBreaker(2, 60000, Clock.systemUTC());
+    HedgingSocrata socrata = new HedgingSocrata(delegate, breaker, 95, 20);
+
+    for(int i = 0; i < 2; i++) {
+      long start = System.nanoTime();
+      try {
+        socrata.getCrimeReportSummary(null, null, Deadline.after(100, TimeUnit.MILLISECONDS));
+        fail("Expected timeout");
+      } catch(SocrataException expected) {
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+      }
+    }
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    int calls = delegate.calls.get();
+    try {
+      socrata.getCrimeReportSummary(null, null, Deadline.after(100, TimeUnit.MILLISECONDS));
+      fail("Expected rejection");
+    } catch(SocrataException expected) {
+      assertEquals(calls, delegate.calls.get());
+    }
+  }
+
+  @Test
+  public void testCallerGivingUpIsNotAFailure() {
+    SlowSocrata delegate = new SlowSocrata(5000);
+    CircuitBreaker breaker = new CircuitBreaker(1, 60000, Clock.systemUTC());
+    HedgingSocrata socrata = new HedgingSocrata(delegate, breaker, 95, 1000);
+
+    // As if ShardedSocrata had cancelled the month
+    Thread.currentThread().interrupt();
+    try {
+      socrata.getCrimeReportSummary(null, null, Deadline.after(1, TimeUnit.SECONDS));
+      fail("Expected interruption");
+    } catch(SocrataException expected) {
+      assertTrue(Thread.interrupted());
+    }
+
+    try {
+      socrata.getCrimeReportSummary(null, null, Deadline.after(0, TimeUnit.MILLISECONDS));
+      fail("Expected expired deadline");
+    } catch(SocrataException expected) {
+      // the deadline had passed before the call
+    }
+
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertSame(SUMMARY, socrata.getCrimeReportSummary(null, null, Deadline.after(1, TimeUnit.SECONDS)));
+  }
+
+  @Test
+  public void testFailureFallsBackToEmptyWithoutDeadline() {
+    HedgingSocrata socrata = new HedgingSocrata(new SlowSocrata(-1), new CircuitBreaker(), 95, 1000);
+
+    assertSame(CrimeReportSummary.EMPTY, socrata.getCrimeReportSummary(null, null));
+  }
+
+  /**
+   * Answers after the next of the given delays, or fails for a negative delay;
+   * once they run out, answers immediately.
+   */
+  private static final class SlowSocrata implements Socrata {
+    private final ConcurrentLinkedQueue<Long> delays = new ConcurrentLinkedQueue<Long>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private SlowSocrata(long... delays) {
+      for(long delay : delays) {
+        this.delays.add(delay);
+      }
+    }
+
+    public List<CrimeReport> getCrimeReports() {
+      return Collections.emptyList();
+    }
+
+    public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+      return Collections.emptyList();
+    }
+
+    public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+      calls.incrementAndGet();
+      Long delay = delays.poll();
+
+      if(delay != null && delay < 0) {
+        throw new SocrataException("upstream down");
+      }
+      if(delay != null && delay > 0) {
+        try {
+          Thread.sleep(delay);
+        } catch(InterruptedException ex) {
+          throw new SocrataException("cancelled", ex);
+        }
+      }
+
+      return SUMMARY;
+    }
+  }
+}
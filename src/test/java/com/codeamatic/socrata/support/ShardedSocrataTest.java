@@ -0,0 +1,257 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.socrata.CrimeField;
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.Deadline;
+import com.codeamatic.socrata.Socrata;
+import com.codeamatic.socrata.SocrataException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedSocrataTest {
+
+  private static final String[] LONG_RANGE = {"2016-11-15", "2017-03-10"};
+  private static final Instant NOW = Instant.parse("2017-03-10T12:00:00Z");
+
+  private RecordingSocrata delegate;
+  private ShardedSocrata sharded;
+
+  @Before
+  public void setUp() {
+    delegate = new RecordingSocrata();
+    // Always split up, whatever the deadline
+    sharded = new ShardedSocrata(delegate, 4, ShardedSocrata.DEFAULT_MIN_SHARDED_DAYS, 0,
+            Clock.fixed(NOW, ZoneOffset.UTC));
+  }
+
+  @After
+  public void tearDown() {
+    sharded.shutdown();
+  }
+
+  @Test
+  public void testMonthShardsAcrossYearBoundary() {
+    List<LocalDate[]> shards = ShardedSocrata.monthShards(LocalDate.parse("2016-11-15"), LocalDate.parse("2017-02-03"));
+
+    assertEquals(4, shards.size());
+    assertEquals(LocalDate.parse("2016-11-15"), shards.get(0)[0]);
+    assertEquals(LocalDate.parse("2016-11-30"), shards.get(0)[1]);
+    assertEquals(LocalDate.parse("2016-12-01"), shards.get(1)[0]);
+    assertEquals(LocalDate.parse("2016-12-31"), shards.get(1)[1]);
+    assertEquals(LocalDate.parse("2017-01-31"), shards.get(2)[1]);
+    assertEquals(LocalDate.parse("2017-02-01"), shards.get(3)[0]);
+    assertEquals(LocalDate.parse("2017-02-03"), shards.get(3)[1]);
+  }
+
+  @Test
+  public void testShortRangeNotSharded() {
+    sharded.getCrimeReportSummary(null, new String[] {"2017-02-20", "2017-03-05"});
+
+    assertEquals(Collections.singletonList("2017-02-20/2017-03-05"), delegate.ranges);
+  }
+
+  @Test
+  public void testLongRangeMerged() {
+    CrimeReportSummary summary = sharded.getCrimeReportSummary(null, LONG_RANGE);
+
+    assertEquals(5, delegate.ranges.size());
+    assertEquals(ChronoUnit.DAYS.between(LocalDate.parse(LONG_RANGE[0]), LocalDate.parse(LONG_RANGE[1])) + 1,
+            summary.getTotal());
+    assertEquals(1, summary.size());
+  }
+
+  @Test
+  public void testStaleMonthMakesTotalStale() {
+    delegate.staleFrom = LocalDate.parse("2017-01-01");
+    CrimeReportSummary summary = sharded.getCrimeReportSummary(null, LONG_RANGE, Deadline.after(1, TimeUnit.SECONDS));
+
+    assertEquals(RecordingSocrata.AS_OF, summary.getAsOf());
+  }
+
+  @Test
+  public void testFreshMonthsAreCurrent() {
+    assertNull(sharded.getCrimeReportSummary(null, LONG_RANGE, Deadline.after(1, TimeUnit.SECONDS)).getAsOf());
+  }
+
+  @Test(expected = SocrataException.class)
+  public void testFailedMonthFailsRange() {
+    delegate.failing = "2016-12-01/2016-12-31";
+    sharded.getCrimeReportSummary(null, LONG_RANGE, Deadline.after(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testFailedMonthEmptiesRangeWithoutDeadline() {
+    delegate.failing = "2016-12-01/2016-12-31";
+
+    assertTrue(sharded.getCrimeReportSummary(null, LONG_RANGE).isEmpty());
+  }
+
+  @Test
+  public void testColdRangeAskedForInOnePieceAndFilledInBackground() throws InterruptedException {
+    ShardedSocrata budgeted = new ShardedSocrata(delegate, 4, ShardedSocrata.DEFAULT_MIN_SHARDED_DAYS,
+            Clock.fixed(NOW, ZoneOffset.UTC));
+
+    try {
+      CrimeReportSummary summary = budgeted.getCrimeReportSummary(null, LONG_RANGE, Deadline.after(5, TimeUnit.SECONDS));
+
+      assertEquals(ChronoUnit.DAYS.between(LocalDate.parse(LONG_RANGE[0]), LocalDate.parse(LONG_RANGE[1])) + 1,
+              summary.getTotal());
+      assertEquals("2016-11-15/2017-03-10", delegate.ranges.get(0));
+
+      // The four months that are over, but not the one in progress
+      awaitRanges(5);
+      assertTrue(delegate.ranges.contains("2016-12-01/2016-12-31"));
+      assertTrue(delegate.ranges.contains("2017-02-01/2017-02-28"));
+      assertFalse(delegate.ranges.contains("2017-03-01/2017-03-10"));
+
+      delegate.ranges.clear();
+      budgeted.getCrimeReportSummary(null, LONG_RANGE, Deadline.after(5, TimeUnit.SECONDS));
+
+      assertEquals(5, delegate.ranges.size());
+      assertFalse(delegate.ranges.contains("2016-11-15/2017-03-10"));
+    } finally {
+      budgeted.shutdown();
+    }
+  }
+
+  @Test
+  public void testFailedBackgroundMonthStaysCold() throws InterruptedException {
+    ShardedSocrata budgeted = new ShardedSocrata(delegate, 4, ShardedSocrata.DEFAULT_MIN_SHARDED_DAYS,
+            Clock.fixed(NOW, ZoneOffset.UTC));
+    delegate.failing = "2016-12-01/2016-12-31";
+
+    try {
+      budgeted.getCrimeReportSummary(null, LONG_RANGE, Deadline.after(5, TimeUnit.SECONDS));
+      awaitRanges(5);
+      Thread.sleep(50);
+
+      delegate.ranges.clear();
+      budgeted.getCrimeReportSummary(null, LONG_RANGE, Deadline.after(5, TimeUnit.SECONDS));
+
+      assertEquals("2016-11-15/2017-03-10", delegate.ranges.get(0));
+    } finally {
+      budgeted.shutdown();
+    }
+  }
+
+  @Test
+  public void testOnlyOpenMonthRefetched() {
+    MutableClock clock = new MutableClock(Instant.parse("2017-03-10T12:00:00Z"));
+    ShardedSocrata cached = new ShardedSocrata(new CachingSocrata(delegate, 100, 1000, clock), 4,
+            ShardedSocrata.DEFAULT_MIN_SHARDED_DAYS, clock);
+
+    try {
+      int first = cached.getCrimeReportSummary("Avondale", LONG_RANGE).getTotal();
+      assertEquals(5, delegate.ranges.size());
+
+      clock.advance(1000);
+      delegate.ranges.clear();
+
+      assertEquals(first, cached.getCrimeReportSummary("Avondale", LONG_RANGE).getTotal());
+      assertEquals(Collections.singletonList("2017-03-01/2017-03-10"), delegate.ranges);
+    } finally {
+      cached.shutdown();
+    }
+  }
+
+  private void awaitRanges(int count) throws InterruptedException {
+    long giveUp = System.currentTimeMillis() + 5000;
+
+    while(delegate.ranges.size() < count && System.currentTimeMillis() < giveUp) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, delegate.ranges.size());
+  }
+
+  /**
+   * Answers one incident per day and records the ranges it was asked for.  Like the
+   * client, the failing range comes back empty without a deadline and throws with one.
+   */
+  private static final class RecordingSocrata implements Socrata {
+    private static final Instant AS_OF = Instant.parse("2017-03-10T11:00:00Z");
+
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+    private volatile LocalDate staleFrom;
+    private volatile String failing;
+
+    public List<CrimeReport> getCrimeReports() {
+      return Collections.emptyList();
+    }
+
+    public List<CrimeReport> getCrimeReports(String neighborhood, String[] dates) {
+      return Collections.emptyList();
+    }
+
+    public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates) {
+      try {
+        return summarize(dates);
+      } catch(SocrataException ex) {
+        return CrimeReportSummary.EMPTY;
+      }
+    }
+
+    public CrimeReportSummary getCrimeReportSummary(String neighborhood, String[] dates, Deadline deadline) {
+      CrimeReportSummary summary = summarize(dates);
+
+      return (staleFrom != null && ! LocalDate.parse(dates[0]).isBefore(staleFrom)) ? summary.withAsOf(AS_OF) : summary;
+    }
+
+    private CrimeReportSummary summarize(String[] dates) {
+      String range = dates[0] + "/" + dates[1];
+      ranges.add(range);
+
+      if(range.equals(failing)) {
+        throw new SocrataException("upstream down");
+      }
+
+      int days = (int) ChronoUnit.DAYS.between(LocalDate.parse(dates[0]), LocalDate.parse(dates[1])) + 1;
+      return new CrimeReportSummary.Builder(CrimeField.OFFENSE).add(days, CrimeField.OFFENSE.encode("THEFT")).build();
+    }
+  }
+
+  private static final class MutableClock extends Clock {
+    private volatile Instant instant;
+
+    private MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    private void advance(long millis) {
+      instant = instant.plusMillis(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -1,12 +1,23 @@
 package com.codeamatic.socrata.support;
 
+import com.google.gson.stream.JsonReader;
+
+import com.codeamatic.DateStringUtil;
+import com.codeamatic.socrata.CrimeField;
 import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.snapshot.IncidentTable;
 
 import junit.framework.TestCase;
 
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class SocrataClientTest extends TestCase {
 
@@ -15,6 +26,11 @@ public class SocrataClientTest extends TestCase {
   private String[] sameDayDatesArray = new String[2];
   private String[] diffDateDateArray = new String[2];
 
+  // The live dataset is gone, so queries go to a local stand-in serving the fixture
+  // days plus generated incidents for yesterday
+  private StubSocrataServer server;
+  private String serviceUrl;
+
   @Override
   protected void setUp() throws Exception {
     sameDayDatesArray[0] ="2011-09-22";
@@ -22,10 +38,22 @@ public class SocrataClientTest extends TestCase {
 
     diffDateDateArray[0] = "2011-09-22";
     diffDateDateArray[1] = "2011-09-24";
+
+    List<Map<String, String>> rows = new ArrayList<Map<String, String>>();
+    rows.addAll(StubSocrataServer.loadFixture("/socrata/crime-fixture.json"));
+    rows.addAll(StubSocrataServer.generateFixture(LocalDate.now(DateStringUtil.ZONE).minusDays(1), 1, 50, 42));
+
+    server = new StubSocrataServer(rows);
+    serviceUrl = server.getUrl();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.close();
   }
 
   public void testCrimeReportBase() {
-    SocrataClient socrataClient = new SocrataClient(API_TOKEN, API_URL);
+    SocrataClient socrataClient = new SocrataClient(API_TOKEN, serviceUrl);
     List<CrimeReport> crimeReportList = socrataClient.getCrimeReports();
 
     assertTrue(crimeReportList.size() > 0);
@@ -33,7 +61,7 @@ public class SocrataClientTest extends TestCase {
 
   @Test
   public void testCrimeReportAll() {
-    SocrataClient socrataClient = new SocrataClient(API_TOKEN, API_URL);
+    SocrataClient socrataClient = new SocrataClient(API_TOKEN, serviceUrl);
     List<CrimeReport> crimeReportList = socrataClient.getCrimeReports("all", null);
 
     assertTrue(crimeReportList.size() > 0);
@@ -41,7 +69,7 @@ public class SocrataClientTest extends TestCase {
 
   @Test
   public void testCrimeReportNeighborhood() {
-    SocrataClient socrataClient = new SocrataClient(API_TOKEN, API_URL);
+    SocrataClient socrataClient = new SocrataClient(API_TOKEN, serviceUrl);
     List<CrimeReport> crimeReportList = socrataClient.getCrimeReports("avondale", null);
 
     assertNotNull(crimeReportList);
@@ -49,7 +77,7 @@ public class SocrataClientTest extends TestCase {
 
   @Test
   public void testCrimeReportSingleDate() {
-    SocrataClient socrataClient = new SocrataClient(API_TOKEN, API_URL);
+    SocrataClient socrataClient = new SocrataClient(API_TOKEN, serviceUrl);
     List<CrimeReport> crimeReportList = socrataClient.getCrimeReports(null, sameDayDatesArray);
 
     assertTrue(crimeReportList.size() > 0);
@@ -57,7 +85,7 @@ public class SocrataClientTest extends TestCase {
 
   @Test
   public void testCrimeReportDateRange() {
-    SocrataClient socrataClient = new SocrataClient(API_TOKEN, API_URL);
+    SocrataClient socrataClient = new SocrataClient(API_TOKEN, serviceUrl);
     List<CrimeReport> crimeReportList = socrataClient.getCrimeReports(null, diffDateDateArray);
 
     assertTrue(crimeReportList.size() > 0);
@@ -65,7 +93,7 @@ public class SocrataClientTest extends TestCase {
 
   @Test
   public void testCrimeReportNeighborhoodDate() {
-    SocrataClient socrataClient = new SocrataClient(API_TOKEN, API_URL);
+    SocrataClient socrataClient = new SocrataClient(API_TOKEN, serviceUrl);
     List<CrimeReport> crimeReportList = socrataClient.getCrimeReports("northside", sameDayDatesArray);
 
     assertTrue(crimeReportList.size() > 0);
@@ -73,14 +101,107 @@ public class SocrataClientTest extends TestCase {
 
   @Test
   public void testCrimeReportNeighborhoodDateRange() {
-    SocrataClient socrataClient = new SocrataClient(API_TOKEN, API_URL);
+    SocrataClient socrataClient = new SocrataClient(API_TOKEN, serviceUrl);
     List<CrimeReport> crimeReportList = socrataClient.getCrimeReports("avondale", diffDateDateArray);
 
     assertTrue(crimeReportList.size() > 0);
   }
 
+  public void testReadSummary() throws IOException {
+    String json = "[{\"offense\":\"THEFT\",\"count\":\"3\",\"beat\":\"1\"},"
+            + "{\"count\":\"2\",\"offense\":\"BURGLARY\"},"
+            + "{\"offense\":\"THEFT\",\"count\":4},"
+            + "{\"offense\":null,\"count\":\"1\"}]";
+    CrimeReportSummary summary = SocrataClient.readSummary(new JsonReader(new StringReader(json)));
+
+    assertEquals(10, summary.getTotal());
+    assertEquals(3, summary.size());
+    assertEquals(7, summary.getCount(CrimeField.OFFENSE, "THEFT"));
+    assertEquals(2, summary.getCount(CrimeField.OFFENSE, "BURGLARY"));
+    assertEquals(1, summary.getCount(CrimeField.OFFENSE, CrimeField.UNKNOWN));
+  }
+
+  public void testReadSummaryMultipleGroups() throws IOException {
+    String json = "[{\"neighborhood\":\"AVONDALE\",\"offense\":\"THEFT\",\"count\":\"3\"},"
+            + "{\"neighborhood\":\"OAKLEY\",\"offense\":\"THEFT\",\"count\":\"2\"}]";
+    CrimeReportSummary summary = SocrataClient.readSummary(new JsonReader(new StringReader(json)),
+            CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE);
+
+    assertEquals(2, summary.size());
+    assertEquals(5, summary.getCount(CrimeField.OFFENSE, "THEFT"));
+    assertEquals("OAKLEY", summary.getValue(CrimeField.NEIGHBORHOOD, 1));
+  }
+
+  public void testSummaryOverTransport() {
+    StubHttpTransport transport = new StubHttpTransport("[{\"offense\":\"THEFT\",\"count\":\"3\"}]");
+    SocrataClient socrataClient = new SocrataClient("token", API_URL, transport);
+    CrimeReportSummary summary = socrataClient.getCrimeReportSummary("avondale", sameDayDatesArray);
+
+    assertEquals(3, summary.getTotal());
+    assertTrue(transport.getRequestedUrls().get(0).startsWith(API_URL + "?"));
+    assertTrue(transport.getRequestedUrls().get(0).contains("neighborhood%20%3D%20%27AVONDALE%27"));
+  }
+
+  public void testTransportFailureReturnsEmpty() {
+    StubHttpTransport transport = new StubHttpTransport(null);
+    transport.setFailure(new IOException("timeout"));
+    SocrataClient socrataClient = new SocrataClient(API_TOKEN, API_URL, transport);
+
+    assertTrue(socrataClient.getCrimeReportSummary(null, null).isEmpty());
+    assertTrue(socrataClient.getCrimeReports(null, null).isEmpty());
+  }
+
+  public void testMalformedSummaryReturnsEmpty() {
+    SocrataClient objectBody = new SocrataClient(API_TOKEN, API_URL, new StubHttpTransport("{\"error\":true}"));
+    SocrataClient textCount = new SocrataClient(API_TOKEN, API_URL,
+            new StubHttpTransport("[{\"offense\":\"THEFT\",\"count\":\"many\"}]"));
+
+    assertTrue(objectBody.getCrimeReportSummary(null, null).isEmpty());
+    assertTrue(textCount.getCrimeReportSummary(null, null).isEmpty());
+  }
+
+  public void testMalformedGroupedSummaryThrowsIOException() {
+    SocrataClient socrataClient = new SocrataClient(API_TOKEN, API_URL, new StubHttpTransport("{\"error\":true}"));
+
+    try {
+      socrataClient.getGroupedSummary(null, CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE);
+      fail("Expected IOException");
+    } catch(IOException ex) {
+      // expected
+    }
+  }
+
+  public void testGroupedSummaryPagesPastShortPage() throws IOException {
+    SocrataClient socrataClient = new SocrataClient(API_TOKEN, serviceUrl);
+    CrimeReportSummary whole = socrataClient.getGroupedSummary(diffDateDateArray, CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE);
+    CrimeReportSummary paged = socrataClient.getGroupedSummary(diffDateDateArray, 2, CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE);
+
+    assertTrue(whole.size() > 2);
+    assertEquals(whole.size(), paged.size());
+    assertEquals(whole.getTotal(), paged.getTotal());
+  }
+
+  public void testGroupedSummaryRequestsExplicitLimit() throws IOException {
+    StubHttpTransport transport = new StubHttpTransport("[]");
+    SocrataClient socrataClient = new SocrataClient(API_TOKEN, API_URL, transport);
+
+    socrataClient.getGroupedSummary(null, CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE);
+
+    assertEquals(1, transport.getRequestedUrls().size());
+    assertTrue(transport.getRequestedUrls().get(0).contains("$limit=" + SocrataClient.GROUPED_PAGE_ROWS));
+  }
+
+  public void testMalformedIncidentsThrowIOException() {
+    try {
+      SocrataClient.readIncidents(new JsonReader(new StringReader("{\"error\":true}")), new IncidentTable.Builder());
+      fail("Expected IOException");
+    } catch(IOException ex) {
+      // expected
+    }
+  }
+
   public void testFilterCrimeReportNeighborhoodDateRange() {
-    SocrataClient socrataClient = new SocrataClient(API_TOKEN, API_URL);
+    SocrataClient socrataClient = new SocrataClient(API_TOKEN, serviceUrl);
     List<CrimeReport> crimeReportList = socrataClient.getCrimeReports("avondale", diffDateDateArray);
 
     assertTrue(crimeReportList.size() > 0);
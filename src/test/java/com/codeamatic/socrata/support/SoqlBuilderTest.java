@@ -0,0 +1,89 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.socrata.CrimeField;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SoqlBuilderTest {
+
+  @Test
+  public void testEncodesEachParameterOnce() {
+    String query = new SoqlBuilder()
+            .select(CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE).selectCount("offense", "count")
+            .whereBetween("occurredon", "2017-06-09T00:00:00.000", "2017-06-09T23:59:59.999")
+            .group(CrimeField.NEIGHBORHOOD, CrimeField.OFFENSE)
+            .havingAtLeast("count", 2)
+            .orderByDescending("count")
+            .limit(50)
+            .appToken("abc")
+            .build();
+
+    assertEquals("?$select=neighborhood%2Coffense%2CCOUNT%28offense%29%20AS%20count"
+            + "&$where=occurredon%20%3E%3D%20%272017-06-09T00%3A00%3A00.000%27%20AND%20occurredon%20%3C%3D%20%272017-06-09T23%3A59%3A59.999%27"
+            + "&$group=neighborhood%2Coffense&$having=count%20%3E%3D%202&$order=count%20DESC&$limit=50&$$app_token=abc", query);
+
+    Map<String, String> parameters = decode(query);
+    assertEquals("occurredon >= '2017-06-09T00:00:00.000' AND occurredon <= '2017-06-09T23:59:59.999'", parameters.get("$where"));
+    assertEquals("count >= 2", parameters.get("$having"));
+  }
+
+  @Test
+  public void testQuotesCannotEscapeLiterals() {
+    String query = new SoqlBuilder().whereEquals(CrimeField.NEIGHBORHOOD, "O'BRYONVILLE' OR '1'='1").build();
+
+    assertEquals("neighborhood = 'O''BRYONVILLE'' OR ''1''=''1'", decode(query).get("$where"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsExpressionsAsColumns() {
+    new SoqlBuilder().whereEquals("neighborhood = 'X' OR offense", "THEFT");
+  }
+
+  @Test
+  public void testEmptyQuery() {
+    assertEquals("", new SoqlBuilder().appToken(null).build());
+  }
+
+  @Test
+  public void testRunsAgainstSoqlEngine() throws Exception {
+    String query = new SoqlBuilder()
+            .select(CrimeField.NEIGHBORHOOD).selectCount("offense", "count")
+            .whereEquals("offense", "THEFT")
+            .group(CrimeField.NEIGHBORHOOD)
+            .havingAtLeast("count", 2)
+            .build();
+
+    List<Map<String, String>> rows = new SoqlQuery(decode(query))
+            .execute(StubSocrataServer.loadFixture("/socrata/crime-fixture.json"));
+
+    assertTrue(! rows.isEmpty());
+    for(Map<String, String> row : rows) {
+      assertTrue(Integer.parseInt(row.get("count")) >= 2);
+      assertEquals(2, row.size());
+    }
+  }
+
+  private static Map<String, String> decode(String query) {
+    Map<String, String> parameters = new HashMap<String, String>();
+
+    try {
+      for(String pair : query.substring(1).split("&")) {
+        int equals = pair.indexOf('=');
+        parameters.put(pair.substring(0, equals), URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+      }
+    } catch(UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+
+    return parameters;
+  }
+}
@@ -0,0 +1,397 @@
+package com.codeamatic.socrata.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough SoQL to answer the queries this skill sends: {@code $select} with plain
+ * columns and {@code COUNT(...)} with optional aliases, {@code $where} with comparisons,
+ * {@code AND}, {@code OR} and parentheses, {@code $group}, {@code $having} on output
+ * columns, {@code $order} (ASC/DESC), {@code $limit} and {@code $offset}.  String
+ * literals may contain doubled quotes.  Values are compared as numbers when both sides
+ * are numeric and as strings otherwise, which orders ISO timestamps correctly.
+ */
+final class SoqlQuery {
+
+  private static final int DEFAULT_LIMIT = 1000;
+
+  private final List<String[]> select = new ArrayList<String[]>();
+  private final Condition where;
+  private final List<String> group = new ArrayList<String>();
+  private final Condition having;
+  private final List<String[]> order = new ArrayList<String[]>();
+  private final int limit;
+  private final int offset;
+
+  /**
+   * @param parameters decoded query parameters, e.g. "$where" => "offense = 'THEFT'"
+   * @throws IllegalArgumentException if the query can't be parsed
+   */
+  SoqlQuery(Map<String, String> parameters) {
+    String selectClause = parameters.get("$select");
+    if(selectClause != null) {
+      for(String item : splitList(selectClause)) {
+        select.add(parseSelectItem(item));
+      }
+    }
+
+    String whereClause = parameters.get("$where");
+    where = (whereClause != null) ? new Parser(whereClause).parse() : null;
+
+    String groupClause = parameters.get("$group");
+    if(groupClause != null) {
+      group.addAll(splitList(groupClause));
+    }
+
+    String havingClause = parameters.get("$having");
+    having = (havingClause != null) ? new Parser(havingClause).parse() : null;
+
+    String orderClause = parameters.get("$order");
+    if(orderClause != null) {
+      for(String item : splitList(orderClause)) {
+        String[] parts = item.split("\\s+");
+        boolean descending = parts.length > 1 && "desc".equalsIgnoreCase(parts[1]);
+        order.add(new String[] { parts[0], descending ? "desc" : "asc" });
+      }
+    }
+
+    limit = parameters.containsKey("$limit") ? Integer.parseInt(parameters.get("$limit")) : DEFAULT_LIMIT;
+    offset = parameters.containsKey("$offset") ? Integer.parseInt(parameters.get("$offset")) : 0;
+  }
+
+  /**
+   * @param rows the dataset
+   * @return the result rows, each a map of output column to value
+   */
+  List<Map<String, String>> execute(List<Map<String, String>> rows) {
+    List<Map<String, String>> matching = new ArrayList<Map<String, String>>();
+
+    for(Map<String, String> row : rows) {
+      if(where == null || where.matches(row)) {
+        matching.add(row);
+      }
+    }
+
+    List<Map<String, String>> result;
+    if(! group.isEmpty() || hasAggregate()) {
+      result = aggregate(matching);
+      if(having != null) {
+        List<Map<String, String>> kept = new ArrayList<Map<String, String>>();
+        for(Map<String, String> row : result) {
+          if(having.matches(row)) {
+            kept.add(row);
+          }
+        }
+        result = kept;
+      }
+      sort(result);
+    } else {
+      sort(matching);
+      result = new ArrayList<Map<String, String>>(matching.size());
+      for(Map<String, String> row : matching) {
+        result.add(project(row));
+      }
+    }
+
+    int from = Math.min(offset, result.size());
+    int to = Math.min(from + limit, result.size());
+    return result.subList(from, to);
+  }
+
+  private boolean hasAggregate() {
+    for(String[] item : select) {
+      if(item[0] != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private List<Map<String, String>> aggregate(List<Map<String, String>> rows) {
+    Map<List<String>, Map<String, String>> groups = new LinkedHashMap<List<String>, Map<String, String>>();
+    Map<List<String>, int[]> counts = new LinkedHashMap<List<String>, int[]>();
+
+    for(Map<String, String> row : rows) {
+      List<String> key = new ArrayList<String>(group.size());
+      for(String column : group) {
+        key.add(row.get(column));
+      }
+
+      if(! groups.containsKey(key)) {
+        groups.put(key, row);
+        counts.put(key, new int[select.size()]);
+      }
+
+      int[] groupCounts = counts.get(key);
+      for(int i = 0; i < select.size(); i++) {
+        String argument = select.get(i)[1];
+        if(select.get(i)[0] != null && ("*".equals(argument) || row.get(argument) != null)) {
+          groupCounts[i]++;
+        }
+      }
+    }
+
+    List<Map<String, String>> result = new ArrayList<Map<String, String>>(groups.size());
+    for(Map.Entry<List<String>, Map<String, String>> entry : groups.entrySet()) {
+      Map<String, String> output = new LinkedHashMap<String, String>();
+      int[] groupCounts = counts.get(entry.getKey());
+
+      for(int i = 0; i < select.size(); i++) {
+        String[] item = select.get(i);
+        String value = (item[0] != null) ? Integer.toString(groupCounts[i]) : entry.getValue().get(item[1]);
+        if(value != null) {
+          output.put(item[2], value);
+        }
+      }
+      result.add(output);
+    }
+
+    return result;
+  }
+
+  private Map<String, String> project(Map<String, String> row) {
+    if(select.isEmpty()) {
+      return row;
+    }
+
+    Map<String, String> output = new LinkedHashMap<String, String>();
+    for(String[] item : select) {
+      String value = row.get(item[1]);
+      if(value != null) {
+        output.put(item[2], value);
+      }
+    }
+    return output;
+  }
+
+  private void sort(List<Map<String, String>> rows) {
+    if(order.isEmpty()) {
+      return;
+    }
+
+    Collections.sort(rows, new Comparator<Map<String, String>>() {
+      @Override
+      public int compare(Map<String, String> a, Map<String, String> b) {
+        for(String[] item : order) {
+          int result = compareValues(a.get(item[0]), b.get(item[0]));
+          if(result != 0) {
+            return "desc".equals(item[1]) ? -result : result;
+          }
+        }
+        return 0;
+      }
+    });
+  }
+
+  /**
+   * @return {aggregate function or null, column, output name}
+   */
+  private static String[] parseSelectItem(String item) {
+    String[] parts = item.trim().split("(?i)\\s+as\\s+");
+    String expression = parts[0].trim();
+    String function = null;
+    String column = expression;
+
+    int open = expression.indexOf('(');
+    if(open > 0 && expression.endsWith(")")) {
+      function = expression.substring(0, open).trim().toLowerCase();
+      column = expression.substring(open + 1, expression.length() - 1).trim();
+      if(! "count".equals(function)) {
+        throw new IllegalArgumentException("Unsupported function: " + function);
+      }
+    }
+
+    String name = (parts.length > 1) ? parts[1].trim() : (function != null ? function + "_" + column : column);
+    return new String[] { function, column, name };
+  }
+
+  private static List<String> splitList(String clause) {
+    List<String> items = new ArrayList<String>();
+    for(String item : clause.split(",")) {
+      if(! item.trim().isEmpty()) {
+        items.add(item.trim());
+      }
+    }
+    return items;
+  }
+
+  static int compareValues(String a, String b) {
+    if(a == null || b == null) {
+      return (a == null) ? ((b == null) ? 0 : -1) : 1;
+    }
+
+    try {
+      return Double.compare(Double.parseDouble(a), Double.parseDouble(b));
+    } catch(NumberFormatException ex) {
+      return a.compareTo(b);
+    }
+  }
+
+  private interface Condition {
+    boolean matches(Map<String, String> row);
+  }
+
+  /**
+   * Recursive descent parser for where clauses.
+   */
+  private static final class Parser {
+    private final List<String> tokens = new ArrayList<String>();
+    private int position;
+
+    private Parser(String clause) {
+      int i = 0;
+      while(i < clause.length()) {
+        char c = clause.charAt(i);
+
+        if(Character.isWhitespace(c)) {
+          i++;
+        } else if(c == '\'') {
+          int end = clause.indexOf('\'', i + 1);
+          while(end >= 0 && end + 1 < clause.length() && clause.charAt(end + 1) == '\'') {
+            end = clause.indexOf('\'', end + 2);
+          }
+          if(end < 0) {
+            throw new IllegalArgumentException("Unterminated string in: " + clause);
+          }
+          tokens.add(clause.substring(i, end + 1));
+          i = end + 1;
+        } else if(c == '(' || c == ')') {
+          tokens.add(String.valueOf(c));
+          i++;
+        } else if(c == '<' || c == '>' || c == '=' || c == '!') {
+          int end = (i + 1 < clause.length() && clause.charAt(i + 1) == '=') || (c == '<' && i + 1 < clause.length() && clause.charAt(i + 1) == '>') ? i + 2 : i + 1;
+          tokens.add(clause.substring(i, end));
+          i = end;
+        } else {
+          int end = i;
+          while(end < clause.length() && (Character.isLetterOrDigit(clause.charAt(end)) || "_.:-".indexOf(clause.charAt(end)) >= 0)) {
+            end++;
+          }
+          if(end == i) {
+            throw new IllegalArgumentException("Unexpected '" + c + "' in: " + clause);
+          }
+          tokens.add(clause.substring(i, end));
+          i = end;
+        }
+      }
+    }
+
+    private Condition parse() {
+      Condition condition = parseOr();
+      if(position != tokens.size()) {
+        throw new IllegalArgumentException("Unexpected token: " + tokens.get(position));
+      }
+      return condition;
+    }
+
+    private Condition parseOr() {
+      final Condition left = parseAnd();
+      if(! acceptKeyword("or")) {
+        return left;
+      }
+      final Condition right = parseOr();
+      return new Condition() {
+        @Override
+        public boolean matches(Map<String, String> row) {
+          return left.matches(row) || right.matches(row);
+        }
+      };
+    }
+
+    private Condition parseAnd() {
+      final Condition left = parsePrimary();
+      if(! acceptKeyword("and")) {
+        return left;
+      }
+      final Condition right = parseAnd();
+      return new Condition() {
+        @Override
+        public boolean matches(Map<String, String> row) {
+          return left.matches(row) && right.matches(row);
+        }
+      };
+    }
+
+    private Condition parsePrimary() {
+      if("(".equals(peek())) {
+        position++;
+        Condition condition = parseOr();
+        expect(")");
+        return condition;
+      }
+
+      final String column = next();
+      final String operator = next();
+
+      if("between".equalsIgnoreCase(operator)) {
+        final String low = literal(next());
+        if(! acceptKeyword("and")) {
+          throw new IllegalArgumentException("Expected AND in BETWEEN");
+        }
+        final String high = literal(next());
+        return new Condition() {
+          @Override
+          public boolean matches(Map<String, String> row) {
+            String value = row.get(column);
+            return value != null && compareValues(value, low) >= 0 && compareValues(value, high) <= 0;
+          }
+        };
+      }
+
+      final String operand = literal(next());
+      return new Condition() {
+        @Override
+        public boolean matches(Map<String, String> row) {
+          String value = row.get(column);
+          if(value == null) {
+            return false;
+          }
+
+          int result = compareValues(value, operand);
+          switch(operator) {
+            case "=": return result == 0;
+            case "!=": case "<>": return result != 0;
+            case "<": return result < 0;
+            case "<=": return result <= 0;
+            case ">": return result > 0;
+            case ">=": return result >= 0;
+            default: throw new IllegalArgumentException("Unsupported operator: " + operator);
+          }
+        }
+      };
+    }
+
+    private static String literal(String token) {
+      return (token.startsWith("'") && token.endsWith("'")) ? token.substring(1, token.length() - 1).replace("''", "'") : token;
+    }
+
+    private boolean acceptKeyword(String keyword) {
+      if(keyword.equalsIgnoreCase(peek())) {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    private void expect(String token) {
+      if(! token.equals(next())) {
+        throw new IllegalArgumentException("Expected " + token);
+      }
+    }
+
+    private String peek() {
+      return (position < tokens.size()) ? tokens.get(position) : null;
+    }
+
+    private String next() {
+      if(position >= tokens.size()) {
+        throw new IllegalArgumentException("Unexpected end of where clause");
+      }
+      return tokens.get(position++);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package com.codeamatic.socrata.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link HttpTransport} for tests that answers every request with a canned body
+ * (or failure) and records the requested urls.
+ */
+public class StubHttpTransport implements HttpTransport {
+
+  private final List<String> requestedUrls = Collections.synchronizedList(new ArrayList<String>());
+  private volatile String body;
+  private volatile IOException failure;
+
+  public StubHttpTransport(String body) {
+    this.body = body;
+  }
+
+  public void setBody(String body) {
+    this.body = body;
+    this.failure = null;
+  }
+
+  public void setFailure(IOException failure) {
+    this.failure = failure;
+  }
+
+  public List<String> getRequestedUrls() {
+    return requestedUrls;
+  }
+
+  @Override
+  public InputStream get(String url) throws IOException {
+    requestedUrls.add(url);
+
+    if(failure != null) {
+      throw failure;
+    }
+
+    return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,216 @@
+package com.codeamatic.socrata.support;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded stand-in for the Socrata crime dataset endpoint, serving {@link SoqlQuery}
+ * results over a fixture dataset.  Latency and server errors can be injected to see how
+ * the client behaves when the real endpoint is slow or failing.
+ */
+public class StubSocrataServer implements Closeable {
+
+  private static final String PATH = "/resource/crime.json";
+
+  private static final String[] OFFENSES = {
+          "THEFT", "BURGLARY/BREAKING ENTERING", "CRIMINAL DAMAGING/ENDANGERING", "ASSAULT",
+          "AGGRAVATED ASSAULT", "ROBBERY", "MENACING", "UNAUTHORIZED USE", "RECEIVING STOLEN PROPERTY"
+  };
+  private static final String[] NEIGHBORHOODS = {
+          "AVONDALE", "WESTWOOD", "OVER-THE-RHINE", "NORTHSIDE", "WEST PRICE HILL", "CLIFTON", "OAKLEY"
+  };
+
+  private final List<Map<String, String>> rows;
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final AtomicInteger requestCount = new AtomicInteger();
+
+  private volatile long latencyMillis;
+  private volatile long jitterMillis;
+  private volatile double errorRate;
+
+  /**
+   * Starts a server on an ephemeral local port.
+   *
+   * @param rows the dataset, one map of column to value per incident
+   * @throws IOException if the server can't be started
+   */
+  public StubSocrataServer(List<Map<String, String>> rows) throws IOException {
+    this.rows = Collections.unmodifiableList(new ArrayList<Map<String, String>>(rows));
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.executor = Executors.newCachedThreadPool();
+
+    server.createContext(PATH, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        respond(exchange);
+      }
+    });
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /**
+   * Reads a fixture dataset from a JSON array on the classpath.
+   *
+   * @param resource String classpath resource
+   * @return the rows
+   * @throws IOException if the resource can't be read
+   */
+  public static List<Map<String, String>> loadFixture(String resource) throws IOException {
+    try(InputStream in = StubSocrataServer.class.getResourceAsStream(resource);
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      return new Gson().fromJson(reader, new TypeToken<List<Map<String, String>>>() {}.getType());
+    }
+  }
+
+  /**
+   * Generates a reproducible dataset of incidents on the days up to and including a given day.
+   *
+   * @param lastDay LocalDate last day with incidents
+   * @param days int number of days
+   * @param incidentsPerDay int incidents on each day
+   * @param seed long random seed
+   * @return the rows
+   */
+  public static List<Map<String, String>> generateFixture(LocalDate lastDay, int days, int incidentsPerDay, long seed) {
+    Random random = new Random(seed);
+    List<Map<String, String>> rows = new ArrayList<Map<String, String>>(days * incidentsPerDay);
+    int caseNumber = 0;
+
+    for(LocalDate day = lastDay.minusDays(days - 1); ! day.isAfter(lastDay); day = day.plusDays(1)) {
+      for(int i = 0; i < incidentsPerDay; i++) {
+        LocalDateTime occurred = day.atStartOfDay().plusMinutes(random.nextInt(24 * 60));
+        int district = 1 + random.nextInt(5);
+        Map<String, String> row = new LinkedHashMap<String, String>();
+
+        row.put("casereportno", String.format("F%08d", caseNumber++));
+        row.put("offenseno", "1");
+        row.put("occurredon", occurred + ":00.000");
+        row.put("reportedon", occurred.plusMinutes(random.nextInt(600)) + ":00.000");
+        row.put("offense", OFFENSES[random.nextInt(OFFENSES.length)]);
+        row.put("neighborhood", NEIGHBORHOODS[random.nextInt(NEIGHBORHOODS.length)]);
+        row.put("district", Integer.toString(district));
+        row.put("beat", "P" + district + (1 + random.nextInt(4)));
+        row.put("ucr", Integer.toString(100 * (1 + random.nextInt(14))));
+        rows.add(row);
+      }
+    }
+
+    return rows;
+  }
+
+  /**
+   * @return the URL to hand to {@link SocrataClient} as its service URL
+   */
+  public String getUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+  }
+
+  /**
+   * Delays every response by a fixed time plus a uniformly random extra.
+   *
+   * @param latencyMillis long minimum delay
+   * @param jitterMillis long maximum extra delay
+   */
+  public void setLatency(long latencyMillis, long jitterMillis) {
+    this.latencyMillis = latencyMillis;
+    this.jitterMillis = jitterMillis;
+  }
+
+  /**
+   * @param errorRate double fraction of requests, between 0 and 1, answered with a 500
+   */
+  public void setErrorRate(double errorRate) {
+    this.errorRate = errorRate;
+  }
+
+  public int getRequestCount() {
+    return requestCount.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void respond(HttpExchange exchange) throws IOException {
+    requestCount.incrementAndGet();
+
+    try {
+      long delay = latencyMillis + ((jitterMillis > 0) ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+      if(delay > 0) {
+        Thread.sleep(delay);
+      }
+
+      if(errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+        send(exchange, 500, "{\"error\":true,\"message\":\"Injected failure\"}");
+        return;
+      }
+
+      SoqlQuery query = new SoqlQuery(parseQuery(exchange.getRequestURI().getRawQuery()));
+      send(exchange, 200, new Gson().toJson(query.execute(rows)));
+    } catch(IllegalArgumentException ex) {
+      send(exchange, 400, "{\"error\":true,\"message\":\"" + ex.getMessage().replace("\"", "'") + "\"}");
+    } catch(InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      exchange.close();
+    }
+  }
+
+  private static void send(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+    exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try(OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+    Map<String, String> parameters = new HashMap<String, String>();
+
+    if(rawQuery == null) {
+      return parameters;
+    }
+
+    for(String pair : rawQuery.split("&")) {
+      int equals = pair.indexOf('=');
+      if(equals > 0) {
+        parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+      }
+    }
+
+    return parameters;
+  }
+}
@@ -0,0 +1,76 @@
+package com.codeamatic.socrata.support;
+
+import com.codeamatic.socrata.CrimeReport;
+import com.codeamatic.socrata.CrimeReportSummary;
+import com.codeamatic.socrata.CrimeField;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StubSocrataServerTest {
+
+  private static final String[] FIXTURE_DAYS = {"2011-09-22", "2011-09-24"};
+
+  private List<Map<String, String>> rows;
+  private StubSocrataServer server;
+
+  @Before
+  public void setUp() throws IOException {
+    rows = StubSocrataServer.loadFixture("/socrata/crime-fixture.json");
+    server = new StubSocrataServer(rows);
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void testGroupedCounts() {
+    SocrataClient client = new SocrataClient(null, server.getUrl());
+    CrimeReportSummary summary = client.getCrimeReportSummary("avondale", FIXTURE_DAYS);
+
+    // The 2011-09-25 theft falls outside the range
+    assertEquals(4, summary.getTotal());
+    assertEquals(2, summary.getCount(CrimeField.OFFENSE, "THEFT"));
+
+    List<CrimeReport> crimeReports = client.getCrimeReports(null, FIXTURE_DAYS);
+    assertEquals("THEFT", crimeReports.get(crimeReports.size() - 1).getOffense());
+    assertEquals(4, crimeReports.get(crimeReports.size() - 1).getCountValue());
+  }
+
+  @Test
+  public void testWhereOrderLimitOffset() {
+    Map<String, String> parameters = new HashMap<String, String>();
+    parameters.put("$select", "casereportno,neighborhood");
+    parameters.put("$where", "(neighborhood = 'NORTHSIDE' OR neighborhood = 'OAKLEY') AND occurredon < '2011-09-24'");
+    parameters.put("$order", "casereportno DESC");
+    parameters.put("$limit", "2");
+    parameters.put("$offset", "1");
+
+    List<Map<String, String>> result = new SoqlQuery(parameters).execute(rows);
+
+    assertEquals(2, result.size());
+    assertEquals("110000004", result.get(0).get("casereportno"));
+    assertEquals("110000003", result.get(1).get("casereportno"));
+    assertEquals(2, result.get(0).size());
+  }
+
+  @Test
+  public void testErrorInjection() {
+    server.setErrorRate(1.0);
+    SocrataClient client = new SocrataClient(null, server.getUrl());
+
+    assertTrue(client.getCrimeReportSummary(null, FIXTURE_DAYS).isEmpty());
+    assertEquals(1, server.getRequestCount());
+  }
+}
@@ -0,0 +1,92 @@
+package com.codeamatic.socrata.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class UrlConnectionTransportTest {
+
+  private static final String BODY = "[{\"offense\":\"THEFT\",\"count\":\"3\"}]";
+
+  private HttpServer server;
+  private String baseUrl;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/ok", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        byte[] bytes = BODY.getBytes(StandardCharsets.UTF_8);
+
+        if("gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"))) {
+          ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+          try(GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+          }
+          bytes = compressed.toByteArray();
+          exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+
+        exchange.sendResponseHeaders(200, bytes.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+          out.write(bytes);
+        }
+      }
+    });
+    server.createContext("/error", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(500, -1);
+        exchange.close();
+      }
+    });
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testGzipResponseDecompressed() throws IOException {
+    UrlConnectionTransport transport = new UrlConnectionTransport();
+
+    try(InputStream body = transport.get(baseUrl + "/ok")) {
+      assertEquals(BODY, read(body));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testErrorStatusThrows() throws IOException {
+    new UrlConnectionTransport().get(baseUrl + "/error");
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[256];
+    int read;
+
+    while((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}